@@ -39,6 +39,7 @@ import java.util.regex.Pattern;
 public class ExtensionField {
 
     private static final String XSD_DATE_TIME_PATTERN="^\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}.*$";
+    private static final Pattern XSD_DATE_TIME=Pattern.compile(XSD_DATE_TIME_PATTERN);
 
     private String name;
     private boolean multiValued;
@@ -63,8 +64,7 @@ public class ExtensionField {
             case DATE:
                 //Dates are stored and read as strings indeed (no usage of Date-related classes take place)
                 if (val instanceof String) {
-                    Pattern p = Pattern.compile(XSD_DATE_TIME_PATTERN);
-                    if (p.matcher(val.toString()).find())
+                    if (XSD_DATE_TIME.matcher(val.toString()).find())
                         value=val;
                 }
                 break;
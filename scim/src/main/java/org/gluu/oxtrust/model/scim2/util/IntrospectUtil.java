@@ -28,6 +28,7 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Provides miscelaneous routines to query classes/objects properties using reflection mechanisms. Additionally, this
@@ -41,8 +42,80 @@ public class IntrospectUtil {
 
     private static Logger log = LogManager.getLogger(IntrospectUtil.class);
 
+    /**
+     * Per class tables of fields (including inherited ones) indexed by name. Built once per class
+     */
+    private static final Map<Class, Map<String, Field>> fieldTables=new ConcurrentHashMap<Class, Map<String, Field>>();
+
+    /**
+     * Per class tables of bean property accessors. Built once per class
+     */
+    private static final Map<Class, BeanAccessors> accessorTables=new ConcurrentHashMap<Class, BeanAccessors>();
+
+    /**
+     * Per class cache of fields successfully resolved from a path. Unresolvable paths are not stored, so that arbitrary
+     * paths coming from requests cannot make this grow unbounded
+     */
+    private static final Map<Class, Map<String, Field>> pathFields=new ConcurrentHashMap<Class, Map<String, Field>>();
+
     private IntrospectUtil() {}
 
+    private static class BeanAccessors {
+
+        private final Map<String, Method> getters;
+        private final Map<String, Method> setters;
+
+        private BeanAccessors(Class clazz) throws Exception {
+
+            Map<String, Method> getters=new HashMap<String, Method>();
+            Map<String, Method> setters=new HashMap<String, Method>();
+
+            for (PropertyDescriptor p : Introspector.getBeanInfo(clazz).getPropertyDescriptors()) {
+                if (p.getReadMethod()!=null)
+                    getters.put(p.getName(), p.getReadMethod());
+                if (p.getWriteMethod()!=null)
+                    setters.put(p.getName(), p.getWriteMethod());
+            }
+            this.getters=Collections.unmodifiableMap(getters);
+            this.setters=Collections.unmodifiableMap(setters);
+
+        }
+
+    }
+
+    private static BeanAccessors getAccessors(Class clazz) throws Exception{
+
+        BeanAccessors accessors=accessorTables.get(clazz);
+        if (accessors==null) {
+            accessors=new BeanAccessors(clazz);
+            accessorTables.put(clazz, accessors);
+        }
+        return accessors;
+
+    }
+
+    private static Map<String, Field> getFieldTable(Class<?> cls){
+
+        Map<String, Field> table=fieldTables.get(cls);
+        if (table==null) {
+            Map<String, Field> fields=new HashMap<String, Field>();
+            Class<?> currentClass = cls;
+
+            while(currentClass != null){
+                for (Field field : currentClass.getDeclaredFields()){
+                    //Fields of subclasses hide those of super classes
+                    if (!fields.containsKey(field.getName()))
+                        fields.put(field.getName(), field);
+                }
+                currentClass = currentClass.getSuperclass();
+            }
+            table=Collections.unmodifiableMap(fields);
+            fieldTables.put(cls, table);
+        }
+        return table;
+
+    }
+
     /**
      * This method will find a java Field with a particular name. If needed, this method will search through super classes.
      * The field does not need to be public.
@@ -53,19 +126,7 @@ public class IntrospectUtil {
      * @return A Field object, or null if no field was found
      */
     private static Field findField(final Class<?> cls, final String fieldName){
-
-        Class<?> currentClass = cls;
-
-        while(currentClass != null){
-            Field fields[] = currentClass.getDeclaredFields();
-            for (Field field : fields){
-                if(field.getName().equals(fieldName))
-                    return field;
-            }
-            currentClass = currentClass.getSuperclass();
-        }
-        return null;
-
+        return getFieldTable(cls).get(fieldName);
     }
 
     /**
@@ -83,6 +144,24 @@ public class IntrospectUtil {
      */
     public static Field findFieldFromPath(Class<?> initcls, String path){
 
+        Map<String, Field> resolved=pathFields.get(initcls);
+        if (resolved==null) {
+            resolved=new ConcurrentHashMap<String, Field>();
+            pathFields.put(initcls, resolved);
+        }
+
+        Field f=resolved.get(path);
+        if (f==null) {
+            f=resolveFieldFromPath(initcls, path);
+            if (f!=null)
+                resolved.put(path, f);
+        }
+        return f;
+
+    }
+
+    private static Field resolveFieldFromPath(Class<?> initcls, String path){
+
         Class cls=initcls;
         Field f=null;
 
@@ -189,11 +268,7 @@ public class IntrospectUtil {
      * @throws Exception Upon introspection error
      */
     public static Method getSetter(String fieldName, Class clazz) throws Exception{
-        PropertyDescriptor[] props = Introspector.getBeanInfo(clazz).getPropertyDescriptors();
-        for (PropertyDescriptor p : props)
-            if (p.getName().equals(fieldName))
-                return p.getWriteMethod();
-        return null;
+        return getAccessors(clazz).setters.get(fieldName);
     }
 
     /**
@@ -205,11 +280,7 @@ public class IntrospectUtil {
      * @throws Exception Upon introspection error
      */
     public static Method getGetter(String fieldName, Class clazz) throws Exception{
-        PropertyDescriptor[] props = Introspector.getBeanInfo(clazz).getPropertyDescriptors();
-        for (PropertyDescriptor p : props)
-            if (p.getName().equals(fieldName))
-                return p.getReadMethod();
-        return null;
+        return getAccessors(clazz).getters.get(fieldName);
     }
 
     /**
@@ -170,6 +170,8 @@ public class ScimResourceUtil {
 
     private static ObjectMapper mapper=new ObjectMapper();
 
+    private static final TypeReference<Map<String,Object>> MAP_TYPE=new TypeReference<Map<String,Object>>(){};
+
     private ScimResourceUtil() {}
 
     private static void attachExtensionInfo(Map<String, Object> source, Map<String, Object> destination, List<Extension> extensions, boolean replacing){
@@ -240,8 +242,8 @@ public class ScimResourceUtil {
 
         log.debug("transferToResource. Processing {} operation", replacing ? "replace" : "add");
 
-        Map<String, Object> fromMap = mapper.convertValue(origin, new TypeReference<Map<String,Object>>(){});
-        Map<String, Object> toMap = mapper.convertValue(destination, new TypeReference<Map<String,Object>>(){});
+        Map<String, Object> fromMap = mapper.convertValue(origin, MAP_TYPE);
+        Map<String, Object> toMap = mapper.convertValue(destination, MAP_TYPE);
 
         log.debug("transferToResource. Recursive traversal of resource is taking place");
         traversalClass tclass=new traversalClass(origin.getClass());
@@ -329,7 +331,7 @@ public class ScimResourceUtil {
                 throw new InvalidAttributeValueException("Cannot remove read-only or required attribute " + path);
         }
 
-        Map<String, Object> map = mapper.convertValue(origin, new TypeReference<Map<String,Object>>(){});
+        Map<String, Object> map = mapper.convertValue(origin, MAP_TYPE);
         traversalClass tclass=new traversalClass(origin.getClass());
 
         if (f==null)    //Extensions stuff
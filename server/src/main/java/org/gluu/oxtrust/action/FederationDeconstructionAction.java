@@ -210,7 +210,7 @@ public class FederationDeconstructionAction implements Serializable {
 						updateNameInProgress = true;
 						updateDescrInProgress = true;
 					}
-					setSelectedTR(trust);
+					setSelectedTR(trustService.copyTrustRelationship(trust));
 					break;
 				}
 			}
@@ -30,26 +30,21 @@ import org.apache.commons.lang.RandomStringUtils;
 import org.gluu.jsf2.message.FacesMessages;
 import org.gluu.jsf2.service.ConversationService;
 import org.gluu.oxtrust.ldap.load.conf.ImportPersonConfiguration;
-import org.gluu.oxtrust.ldap.service.AttributeService;
 import org.gluu.oxtrust.ldap.service.ExcelService;
 import org.gluu.oxtrust.ldap.service.IPersonService;
 import org.gluu.oxtrust.ldap.service.OrganizationService;
-import org.gluu.oxtrust.model.GluuCustomAttribute;
+import org.gluu.oxtrust.ldap.service.PersonImportService;
+import org.gluu.oxtrust.ldap.service.PersonImportService.PersonImportJob;
 import org.gluu.oxtrust.model.GluuCustomPerson;
-import org.gluu.oxtrust.model.table.Table;
-import org.gluu.oxtrust.service.external.ExternalUpdateUserService;
 import org.gluu.oxtrust.util.OxTrustConstants;
-import org.gluu.persist.exception.mapping.EntryPersistenceException;
 import org.gluu.persist.model.AttributeData;
 import org.gluu.persist.model.base.GluuBoolean;
 import org.gluu.persist.model.base.GluuStatus;
 import org.richfaces.event.FileUploadEvent;
 import org.richfaces.model.UploadedFile;
 import org.slf4j.Logger;
-import org.xdi.config.oxtrust.AppConfiguration;
 import org.xdi.model.GluuAttribute;
 import org.xdi.model.GluuAttributeDataType;
-import org.xdi.model.GluuUserRole;
 import org.xdi.service.security.Secure;
 import org.xdi.util.StringHelper;
 
@@ -78,16 +73,10 @@ public class PersonImportAction implements Serializable {
 	private IPersonService personService;
 	
 	@Inject
-	private AttributeService attributeService;
-	
-	@Inject
-	private AppConfiguration appConfiguration;
-	
-	@Inject
-	private ExternalUpdateUserService externalUpdateUserService;
+	private ExcelService excelService;
 
 	@Inject
-	private ExcelService excelService;
+	private PersonImportService personImportService;
 
 	@Inject
 	private FacesMessages facesMessages;
@@ -98,9 +87,6 @@ public class PersonImportAction implements Serializable {
 	@Inject
 	private transient ImportPersonConfiguration importPersonConfiguration;
 	
-	@Inject
-	private CustomAttributeAction customAttributeAction;
-
 	private UploadedFile uploadedFile;
 	private FileDataToImport fileDataToImport;
 	private List<GluuAttribute> attributes;
@@ -109,9 +95,7 @@ public class PersonImportAction implements Serializable {
 
 	private boolean isInitialized;
 
-	private GluuCustomPerson person;
-
-	private String inum;
+	private PersonImportJob importJob;
 
 	public String init() {
 		if (this.isInitialized) {
@@ -134,32 +118,13 @@ public class PersonImportAction implements Serializable {
 			return OxTrustConstants.RESULT_FAILURE;
 		}
 
-		log.info("Attempting to add {} persons", fileDataToImport.getPersons().size());
-		try {
-			for (GluuCustomPerson person : fileDataToImport.getPersons()) {
-				
-				this.person=person;
-				String result = initializePerson();
-				if(result.equals(OxTrustConstants.RESULT_SUCCESS)){
-					result = save();
-				}
-				if(result.equals(OxTrustConstants.RESULT_SUCCESS)){
-					log.debug("Added new person: {}", person.getUid());
-				}
-				else{
-					log.debug("Failed to add new person: {}", person.getUid());
-					facesMessages.add(FacesMessage.SEVERITY_ERROR, "Failed to add new person: '%s'", person.getUid());
-				}
-			}
-		} catch (EntryPersistenceException ex) {
-			log.error("Failed to add new person", ex);
+		if (!organizationService.isAllowPersonModification()) {
 			facesMessages.add(FacesMessage.SEVERITY_ERROR, "Failed to import users");
-
 			return OxTrustConstants.RESULT_FAILURE;
 		}
 
-		log.info("All {} persons added successfully", fileDataToImport.getPersons().size());
-		facesMessages.add(FacesMessage.SEVERITY_INFO, "Users successfully imported");
+		this.importJob = personImportService.startImport(fileDataToImport.getPersons());
+		facesMessages.add(FacesMessage.SEVERITY_INFO, "Users import started");
 
 		removeFileToImport();
 
@@ -173,24 +138,22 @@ public class PersonImportAction implements Serializable {
 			return;
 		}
 
-		Table table;
+		String fileName = FilenameUtils.getName(uploadedFile.getName());
+		PersonRowHandler rowHandler = new PersonRowHandler();
+
+		boolean read;
 		InputStream is = new ByteArrayInputStream(this.fileData);
 		try {
-			table = excelService.readExcelFile(is);
+			read = excelService.readRows(is, fileName, rowHandler);
 		} finally {
 			IOUtils.closeQuietly(is);
 		}
 
-		this.fileDataToImport.setTable(table);
-
-		if (table != null) {
-			this.fileDataToImport.setFileName(FilenameUtils.getName(uploadedFile.getName()));
-			this.fileDataToImport.setImportAttributes(getAttributesForImport(table));
-			this.fileDataToImport.setReady(true);
-		}
+		if (read) {
+			this.fileDataToImport.setFileName(fileName);
+			this.fileDataToImport.setImportAttributes(rowHandler.getImportAttributes());
 
-		if (this.fileDataToImport.isReady()) {
-			boolean valid = prepareAndValidateImportData(this.fileDataToImport.getTable(), this.fileDataToImport.getImportAttributes());
+			boolean valid = prepareAndValidateImportData(rowHandler);
 			this.fileDataToImport.setReady(valid);
 
 			if (!valid) {
@@ -250,30 +213,17 @@ public class PersonImportAction implements Serializable {
 		removeFileDataToImport();
 	}
 
-	private boolean prepareAndValidateImportData(Table table, List<ImportAttribute> importAttributes) throws Exception {
-		String attributesString = getAttributesString(this.attributes);
-		if ((table == null) || (importAttributes == null)) {
-			facesMessages.add(FacesMessage.SEVERITY_ERROR, "Import failed. Missing columns: %s", attributesString);
+	private boolean prepareAndValidateImportData(PersonRowHandler rowHandler) throws Exception {
+		if (!rowHandler.isValid()) {
 			return false;
 		}
 
-		List<GluuAttribute> mandatoryAttributes = getMandatoryAttributes(this.attributes);
-		List<ImportAttribute> mandatoryImportAttributes = getMandatoryImportAttributes(importAttributes);
-		if (mandatoryAttributes.size() != mandatoryImportAttributes.size()) {
-			facesMessages.add(FacesMessage.SEVERITY_ERROR, "Import failed. Required columns: %s", attributesString);
-			return false;
-		}
-
-		if (table.getCountRows() < 1) {
+		List<GluuCustomPerson> persons = rowHandler.getPersons();
+		if (persons.size() < 1) {
 			facesMessages.add(FacesMessage.SEVERITY_ERROR, "Import failed. No data found");
 			return false;
 		}
-
-		// Convert Excel table to GluuCustomPersons
-		List<GluuCustomPerson> persons = convertTableToPersons(table, importAttributes);
-		if (persons == null) {
-			return false;
-		}
+		log.info("Found {} persons in input file", persons.size());
 
 		// Check if person already exist
 		if (!validatePersons(persons)) {
@@ -281,7 +231,7 @@ public class PersonImportAction implements Serializable {
 		}
 
 		// Fill persons with default values
-		if (!setDefaultPersonAttributes(persons, importAttributes)) {
+		if (!setDefaultPersonAttributes(persons, rowHandler.getImportAttributes())) {
 			return false;
 		}
 
@@ -292,6 +242,23 @@ public class PersonImportAction implements Serializable {
 		return true;
 	}
 
+	private boolean validateImportAttributes(List<ImportAttribute> importAttributes) {
+		String attributesString = getAttributesString(this.attributes);
+		if (importAttributes == null) {
+			facesMessages.add(FacesMessage.SEVERITY_ERROR, "Import failed. Missing columns: %s", attributesString);
+			return false;
+		}
+
+		List<GluuAttribute> mandatoryAttributes = getMandatoryAttributes(this.attributes);
+		List<ImportAttribute> mandatoryImportAttributes = getMandatoryImportAttributes(importAttributes);
+		if (mandatoryAttributes.size() != mandatoryImportAttributes.size()) {
+			facesMessages.add(FacesMessage.SEVERITY_ERROR, "Import failed. Required columns: %s", attributesString);
+			return false;
+		}
+
+		return true;
+	}
+
 	private List<ImportAttribute> getMandatoryImportAttributes(List<ImportAttribute> importAttributes) {
 		List<ImportAttribute> result = new ArrayList<ImportAttribute>();
 		for (ImportAttribute importAttribute : importAttributes) {
@@ -381,80 +348,59 @@ public class PersonImportAction implements Serializable {
 		return true;
 	}
 
-	protected List<GluuCustomPerson> convertTableToPersons(Table table, List<ImportAttribute> importAttributes) throws Exception {
-		// Prepare for conversion to list of GluuCustomPerson and check data
-		// type
-		Map<String, List<AttributeData>> entriesAttributes = new HashMap<String, List<AttributeData>>();
-		int rows = table.getCountRows();
-		boolean validTable = true;
-		for (int i = 1; i <= rows; i++) {
-			List<AttributeData> attributeDataList = new ArrayList<AttributeData>();
-			for (ImportAttribute importAttribute : importAttributes) {
-				if (importAttribute.getCol() == -1) {
-					continue;
-				}
+	/**
+	 * Convert row to GluuCustomPerson
+	 *
+	 * @return Person or null if row contains invalid values
+	 */
+	protected GluuCustomPerson convertRowToPerson(int row, List<String> values, List<ImportAttribute> importAttributes) throws Exception {
+		List<AttributeData> attributeDataList = new ArrayList<AttributeData>();
+		boolean validRow = true;
+		for (ImportAttribute importAttribute : importAttributes) {
+			if (importAttribute.getCol() == -1) {
+				continue;
+			}
 
-				GluuAttribute attribute = importAttribute.getAttribute();
-				String cellValue = table.getCellValue(importAttribute.getCol(), i);
-				if (StringHelper.isEmpty(cellValue)) {
-					if (attribute.isRequred()) {
-						facesMessages.add(FacesMessage.SEVERITY_ERROR, "Import failed. Empty '%s' not allowed", attribute.getDisplayName());
-						validTable = false;
-					}
-					continue;
-				}
-				
-				String ldapValue = getTypedValue(attribute, cellValue);
-				if (StringHelper.isEmpty(ldapValue)) {
-					facesMessages.add(FacesMessage.SEVERITY_ERROR, "Invalid value '%s' in column '%s' at row %s were specified", cellValue,
-							attribute.getDisplayName(), i + 1);
-					validTable = false;
-					continue;
+			GluuAttribute attribute = importAttribute.getAttribute();
+			String cellValue = importAttribute.getCol() < values.size() ? values.get(importAttribute.getCol()) : null;
+			if (StringHelper.isEmpty(cellValue)) {
+				if (attribute.isRequred()) {
+					facesMessages.add(FacesMessage.SEVERITY_ERROR, "Import failed. Empty '%s' not allowed", attribute.getDisplayName());
+					validRow = false;
 				}
+				continue;
+			}
 
-				AttributeData attributeData = new AttributeData(attribute.getName(), ldapValue);
-				attributeDataList.add(attributeData);
+			String ldapValue = getTypedValue(attribute, cellValue);
+			if (StringHelper.isEmpty(ldapValue)) {
+				facesMessages.add(FacesMessage.SEVERITY_ERROR, "Invalid value '%s' in column '%s' at row %s were specified", cellValue,
+						attribute.getDisplayName(), row + 1);
+				validRow = false;
+				continue;
 			}
-			entriesAttributes.put(Integer.toString(i), attributeDataList);
+
+			AttributeData attributeData = new AttributeData(attribute.getName(), ldapValue);
+			attributeDataList.add(attributeData);
 		}
 
-		if (!validTable) {
+		if (!validRow) {
 			return null;
 		}
 
-		// Convert to GluuCustomPerson and set right DN
-		List<GluuCustomPerson> persons = personService.createEntities(entriesAttributes);
-		log.info("Found {} persons in input Excel file", persons.size());
-		
-		for(GluuCustomPerson person  : persons){
-			for (String key : entriesAttributes.keySet()){
-				boolean flag = false;
-				for(AttributeData AttributeData : entriesAttributes.get(key) ){
-					if(AttributeData.getName().equalsIgnoreCase("uid")){
-						if(person.getUid().equalsIgnoreCase(AttributeData.getValue())){
-							for(AttributeData AttributeData1 : entriesAttributes.get(key) ){
-								if(AttributeData1.getName().equalsIgnoreCase("userPassword")){
-									person.setUserPassword(AttributeData1.getValue());
-									flag=true;
-									break;
-								} else if(AttributeData1.getName().equalsIgnoreCase("gluuStatus")){
-									
-									person.setStatus(GluuStatus.getByValue(AttributeData1.getValue()));
-									flag=true;
-									break;
-								}
-							}						
-						}
-					}else{
-						if(flag)break;
-					}
-				}
-				if(flag)break;
+		// Convert to GluuCustomPerson
+		Map<String, List<AttributeData>> entriesAttributes = new HashMap<String, List<AttributeData>>();
+		entriesAttributes.put(Integer.toString(row), attributeDataList);
+		GluuCustomPerson person = personService.createEntities(entriesAttributes).get(0);
+
+		for (AttributeData attributeData : attributeDataList) {
+			if (attributeData.getName().equalsIgnoreCase(PERSON_PASSWORD_ATTRIBUTE)) {
+				person.setUserPassword(attributeData.getValue());
+			} else if (attributeData.getName().equalsIgnoreCase("gluuStatus")) {
+				person.setStatus(GluuStatus.getByValue(attributeData.getValue()));
 			}
-			
 		}
 
-		return persons;
+		return person;
 	}
 
 	private String getTypedValue(GluuAttribute attribute, String value) {
@@ -488,16 +434,15 @@ public class PersonImportAction implements Serializable {
 		return sb.toString();
 	}
 
-	private List<ImportAttribute> getAttributesForImport(Table table) {
+	private List<ImportAttribute> getAttributesForImport(List<String> headers) {
 		List<ImportAttribute> importAttributes = new ArrayList<ImportAttribute>();
-		if ((table == null) || (table.getCountCols() < 1) || (table.getCountRows() < 1)) {
+		if ((headers == null) || headers.isEmpty()) {
 			return importAttributes;
 		}
 
-		int cols = table.getCountCols();
 		List<String> addedAttributes = new ArrayList<String>(this.attributes.size());
-		for (int i = 0; i <= cols; i++) {
-			String cellValue = table.getCellValue(i, 0);
+		for (int i = 0; i < headers.size(); i++) {
+			String cellValue = headers.get(i);
 			if (StringHelper.isEmpty(cellValue)) {
 				continue;
 			}
@@ -530,99 +475,59 @@ public class PersonImportAction implements Serializable {
 		return result;
 	}
 	
-	private void initAttributes() {
-		List<GluuAttribute> attributes = attributeService.getAllPersonAttributes(GluuUserRole.ADMIN);
-		List<String> origins = attributeService.getAllAttributeOrigins(attributes);
+	public PersonImportJob getImportJob() {
+		return importJob;
+	}
 
-		List<GluuCustomAttribute> customAttributes = this.person.getCustomAttributes();
-		boolean newPerson = (customAttributes == null) || customAttributes.isEmpty();
-		if (newPerson) {
-			customAttributes = new ArrayList<GluuCustomAttribute>();
-			this.person.setCustomAttributes(customAttributes);
-		}
+	/**
+	 * Converts rows to persons while file is being read. Persons are kept till
+	 * whole file is read, because uniqueness of uids and mails is checked for
+	 * whole import before it starts
+	 */
+	private class PersonRowHandler implements ExcelService.RowHandler {
 
-		customAttributeAction.initCustomAttributes(attributes, customAttributes, origins, appConfiguration
-				.getPersonObjectClassTypes(), appConfiguration.getPersonObjectClassDisplayNames());
+		private List<ImportAttribute> importAttributes;
+		private List<GluuCustomPerson> persons = new ArrayList<GluuCustomPerson>();
+		private boolean valid = true;
 
-		if (newPerson) {
-			customAttributeAction.addCustomAttributes(personService.getMandatoryAtributes());
-		}
-	}
-	
-	public String save() {
-		if (!organizationService.isAllowPersonModification()) {
-			return OxTrustConstants.RESULT_FAILURE;
-		}
+		@Override
+		public boolean handleRow(int row, List<String> values) throws Exception {
+			if (row == 0) {
+				this.importAttributes = getAttributesForImport(values);
+				this.valid = validateImportAttributes(importAttributes);
 
-		personService.addCustomObjectClass(this.person);
-		
-			if (personService.getPersonByUid(this.person.getUid()) != null) {
-				return OxTrustConstants.RESULT_DUPLICATE;
+				return valid;
 			}
 
-			this.inum = personService.generateInumForNewPerson();
-			String iname = personService.generateInameForNewPerson(this.person.getUid());
-			String dn = personService.getDnForPerson(this.inum);
-
-			// Save person
-			this.person.setDn(dn);
-			this.person.setInum(this.inum);
-			this.person.setIname(iname);
-
-			List<GluuCustomAttribute> personAttributes = this.person.getCustomAttributes();
-			if (!personAttributes.contains(new GluuCustomAttribute("cn", ""))) {
-				List<GluuCustomAttribute> changedAttributes = new ArrayList<GluuCustomAttribute>();
-				changedAttributes.addAll(personAttributes);
-				changedAttributes.add(new GluuCustomAttribute("cn", this.person.getGivenName() + " " + this.person.getDisplayName()));
-				this.person.setCustomAttributes(changedAttributes);
-			} else {
-				this.person.setCommonName(this.person.getCommonName() + " " + this.person.getGivenName());
+			GluuCustomPerson person = convertRowToPerson(row, values, importAttributes);
+			if (person == null) {
+				this.valid = false;
+			} else if (valid) {
+				persons.add(person);
 			}
 
-			try {
-				boolean runScript = externalUpdateUserService.isEnabled();
-				if (runScript) {
-					externalUpdateUserService.executeExternalAddUserMethods(this.person);
-                }
-
-				personService.addPerson(this.person);
-
-				if (runScript) {
-					externalUpdateUserService.executeExternalPostAddUserMethods(this.person);
-                }
-			} catch (Exception ex) {
-				log.error("Failed to add new person {}", this.person.getInum(), ex);
-
-				return OxTrustConstants.RESULT_FAILURE;
-			}
-		return OxTrustConstants.RESULT_SUCCESS;
-	}
+			return true;
+		}
 
-	
-	public String initializePerson() {
-		if (!organizationService.isAllowPersonModification()) {
-			return OxTrustConstants.RESULT_FAILURE;
+		public List<ImportAttribute> getImportAttributes() {
+			return importAttributes;
 		}
 
-		if (this.person != null) {
-			return OxTrustConstants.RESULT_SUCCESS;
+		public List<GluuCustomPerson> getPersons() {
+			return persons;
 		}
-		this.person = new GluuCustomPerson();
 
-		initAttributes();
+		public boolean isValid() {
+			return valid && (importAttributes != null);
+		}
 
-		return OxTrustConstants.RESULT_SUCCESS;
 	}
 
-	
-	
-
 	public static class FileDataToImport implements Serializable {
 
 		private static final long serialVersionUID = 7334362213305310293L;
 
 		private String fileName;
-		private Table table;
 		private List<ImportAttribute> importAttributes;
 		private List<GluuCustomPerson> persons;
 		private boolean ready;
@@ -630,10 +535,6 @@ public class PersonImportAction implements Serializable {
 		public FileDataToImport() {
 		}
 
-		public FileDataToImport(Table table) {
-			this.table = table;
-		}
-
 		public List<ImportAttribute> getImportAttributes() {
 			return importAttributes;
 		}
@@ -642,14 +543,6 @@ public class PersonImportAction implements Serializable {
 			this.importAttributes = importAttributes;
 		}
 
-		public Table getTable() {
-			return table;
-		}
-
-		public void setTable(Table table) {
-			this.table = table;
-		}
-
 		public String getFileName() {
 			return fileName;
 		}
@@ -676,7 +569,6 @@ public class PersonImportAction implements Serializable {
 
 		public void reset() {
 			this.fileName = null;
-			this.table = null;
 			this.importAttributes = null;
 			this.persons = null;
 			this.ready = false;
@@ -21,6 +21,7 @@ import org.gluu.jsf2.service.ConversationService;
 import org.gluu.oxtrust.ldap.service.IPersonService;
 import org.gluu.oxtrust.model.GluuCustomPerson;
 import org.gluu.oxtrust.util.OxTrustConstants;
+import org.gluu.persist.model.ListViewResponse;
 import org.slf4j.Logger;
 import org.xdi.service.security.Secure;
 import org.xdi.util.Util;
@@ -54,6 +55,10 @@ public class SearchPersonAction implements Serializable {
 
 	private List<GluuCustomPerson> personList;
 
+	private int startIndex = 1;
+
+	private int totalResults;
+
 	@Inject
 	private IPersonService personService;
 
@@ -66,8 +71,40 @@ public class SearchPersonAction implements Serializable {
 			return OxTrustConstants.RESULT_SUCCESS;
 		}
 
+		this.startIndex = 1;
+
+		return loadPage();
+	}
+
+	public String nextPage() {
+		// Pages are counted for previous search, start new search from first page
+		if (!Util.equals(this.oldSearchPattern, this.searchPattern)) {
+			return search();
+		}
+
+		if (isHasNextPage()) {
+			this.startIndex += OxTrustConstants.searchPersonsSizeLimit;
+		}
+
+		return loadPage();
+	}
+
+	public String previousPage() {
+		if (!Util.equals(this.oldSearchPattern, this.searchPattern)) {
+			return search();
+		}
+
+		this.startIndex = Math.max(1, this.startIndex - OxTrustConstants.searchPersonsSizeLimit);
+
+		return loadPage();
+	}
+
+	private String loadPage() {
 		try {
-			this.personList = personService.searchPersons(this.searchPattern);
+			ListViewResponse<GluuCustomPerson> page = personService.searchPersons(this.searchPattern, this.startIndex,
+					OxTrustConstants.searchPersonsSizeLimit);
+			this.personList = page.getResult();
+			this.totalResults = page.getTotalResults();
 			this.oldSearchPattern = this.searchPattern;
 		} catch (Exception ex) {
 			log.error("Failed to find persons", ex);
@@ -93,4 +130,24 @@ public class SearchPersonAction implements Serializable {
 		return personList;
 	}
 
+	public int getStartIndex() {
+		return startIndex;
+	}
+
+	public int getEndIndex() {
+		return startIndex + personList.size() - 1;
+	}
+
+	public int getTotalResults() {
+		return totalResults;
+	}
+
+	public boolean isHasPreviousPage() {
+		return startIndex > 1;
+	}
+
+	public boolean isHasNextPage() {
+		return (personList != null) && (startIndex + personList.size() <= totalResults);
+	}
+
 }
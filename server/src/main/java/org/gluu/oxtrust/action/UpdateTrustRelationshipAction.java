@@ -71,8 +71,10 @@ import org.gluu.oxtrust.model.GluuCustomAttribute;
 import org.gluu.oxtrust.model.GluuEntityType;
 import org.gluu.oxtrust.model.GluuMetadataSourceType;
 import org.gluu.oxtrust.model.GluuSAMLTrustRelationship;
+import org.gluu.oxtrust.model.GluuValidationStatus;
 import org.gluu.oxtrust.model.OxAuthClient;
 import org.gluu.oxtrust.security.Identity;
+import org.gluu.oxtrust.util.EntityIdIndex;
 import org.gluu.oxtrust.util.OxTrustConstants;
 import org.gluu.persist.exception.mapping.BaseMappingException;
 import org.gluu.persist.model.base.GluuStatus;
@@ -102,6 +104,8 @@ public class UpdateTrustRelationshipAction implements Serializable {
 
 	private static final long serialVersionUID = -1032167044333943680L;
 
+	private static final int ENTITIES_PAGE_SIZE = 100;
+
 	@Inject
 	private Logger log;
 
@@ -176,8 +180,10 @@ public class UpdateTrustRelationshipAction implements Serializable {
 
 	private List<GluuSAMLTrustRelationship> federatedSites;
 
-	private List<String> availableEntities;
+	private String containerFederationDn;
+	private EntityIdIndex containerFederationEntityIds;
 	private List<String> filteredEntities;
+	private int entitiesStartIndex;
 
 	private String filterString;
 /*
@@ -191,7 +197,6 @@ public class UpdateTrustRelationshipAction implements Serializable {
 	}
 */
 
-	private List<String> availableEntitiesFiltered;
 	//private GluuEntityType entityType;	
 
 
@@ -488,8 +493,9 @@ public class UpdateTrustRelationshipAction implements Serializable {
 
 		this.federatedSites = new ArrayList<GluuSAMLTrustRelationship>();
 		for (GluuSAMLTrustRelationship deconstructedTrustRelationship : trustService.getDeconstructedTrustRelationships(trustRelationship)) {
-			initTrustRelationship(deconstructedTrustRelationship, attributes);
-			this.federatedSites.add(deconstructedTrustRelationship);
+			GluuSAMLTrustRelationship federatedSite = trustService.copyTrustRelationship(deconstructedTrustRelationship);
+			initTrustRelationship(federatedSite, attributes);
+			this.federatedSites.add(federatedSite);
 		}
 	}
 
@@ -829,7 +835,12 @@ public class UpdateTrustRelationshipAction implements Serializable {
 			spMetadataFileName = shibboleth3ConfService.getSpNewMetadataFileName(this.trustRelationship);
 		}
 
-		String result = shibboleth3ConfService.saveSpMetadataFile(trustRelationship.getSpMetaDataURL(), spMetadataFileName);
+		boolean validated = GluuValidationStatus.VALIDATION_SUCCESS.equals(trustRelationship.getValidationStatus());
+		String result = shibboleth3ConfService.saveSpMetadataFile(trustRelationship.getSpMetaDataURL(), spMetadataFileName, validated);
+		if (Shibboleth3ConfService.SP_METADATA_NOT_MODIFIED.equals(result)) {
+			// Current metadata was validated already
+			return true;
+		}
 		if (StringHelper.isNotEmpty(result)) {
 			metadataValidationTimer.queue(result);
 		} else {
@@ -1290,9 +1301,8 @@ public class UpdateTrustRelationshipAction implements Serializable {
 	}
 
 	public SelectItem getContainerFederation() {
-		return new SelectItem(trustService.getTrustContainerFederation(trustRelationship) ,
-				trustService.getTrustContainerFederation(trustRelationship) == null ? "Select Federation" : trustService.getTrustContainerFederation(trustRelationship) 
-						.getDisplayName());
+		GluuSAMLTrustRelationship containerFederation = trustService.getTrustContainerFederation(trustRelationship);
+		return new SelectItem(containerFederation, containerFederation == null ? "Select Federation" : containerFederation.getDisplayName());
 	}
 
 	public ArrayList<SelectItem> getAllFederations() {
@@ -1340,47 +1350,91 @@ public class UpdateTrustRelationshipAction implements Serializable {
 
 	public void filterEntities() {
 		filteredEntities = null;
-		if (StringHelper.isNotEmpty(getFilterString())) {
-			filteredEntities = new ArrayList<String>();
-			for (String entity : trustService.getTrustContainerFederation(trustRelationship).getGluuEntityId()) {
-				if (entity.toLowerCase().contains(getFilterString().toLowerCase())) {
-					filteredEntities.add(entity);
-				}
-			}
+		entitiesStartIndex = 0;
+	}
+
+	public void nextEntitiesPage() {
+		if (isHasNextEntitiesPage()) {
+			entitiesStartIndex += ENTITIES_PAGE_SIZE;
 		}
 	}
 
-	public void setAvailableEntities(List<String> availableEntities) {
+	public void previousEntitiesPage() {
+		entitiesStartIndex = Math.max(0, entitiesStartIndex - ENTITIES_PAGE_SIZE);
+	}
 
-		this.availableEntities.removeAll(availableEntitiesFiltered);
-		this.availableEntities.addAll(availableEntities);
+	public boolean isHasPreviousEntitiesPage() {
+		return entitiesStartIndex > 0;
+	}
+
+	public boolean isHasNextEntitiesPage() {
+		return entitiesStartIndex + ENTITIES_PAGE_SIZE < getFilteredEntitiesCount();
+	}
+
+	public int getEntitiesStartIndex() {
+		return Math.min(entitiesStartIndex + 1, getFilteredEntitiesCount());
+	}
+
+	public int getEntitiesEndIndex() {
+		return Math.min(entitiesStartIndex + ENTITIES_PAGE_SIZE, getFilteredEntitiesCount());
+	}
+
+	public int getFilteredEntitiesCount() {
+		List<String> entities = getFilteredEntities();
+		return entities == null ? 0 : entities.size();
 	}
 
 	public List<String> getAvailableEntities() {
-		if (trustService.getTrustContainerFederation(trustRelationship) == null) {
+		EntityIdIndex entityIds = getContainerFederationEntityIds();
+		if (entityIds == null) {
 			return null;
-		} else {
-			if (!trustService.getTrustContainerFederation(trustRelationship).getGluuEntityId().contains(trustRelationship.getEntityId())) {
-				trustRelationship.setEntityId(null);
-				availableEntities = null;
-			}
 		}
 
-		if (availableEntities == null) {
-			availableEntities = new ArrayList<String>();
-			if (trustService.getTrustContainerFederation(trustRelationship) != null) {
-				availableEntities.addAll(trustService.getTrustContainerFederation(trustRelationship).getGluuEntityId());
-			}
+		if (!entityIds.contains(trustRelationship.getEntityId())) {
+			trustRelationship.setEntityId(null);
+		}
+
+		List<String> entities = getFilteredEntities();
+		int fromIndex = Math.min(entitiesStartIndex, entities.size());
+		return entities.subList(fromIndex, Math.min(fromIndex + ENTITIES_PAGE_SIZE, entities.size()));
+	}
 
+	private List<String> getFilteredEntities() {
+		EntityIdIndex entityIds = getContainerFederationEntityIds();
+		if (entityIds == null) {
+			return null;
+		}
+
+		if (filteredEntities == null) {
+			filteredEntities = entityIds.find(getFilterString());
 		}
-		availableEntitiesFiltered = new ArrayList<String>();
-		availableEntitiesFiltered.addAll(availableEntities);
 
-		if (filteredEntities != null) {
-			availableEntitiesFiltered.retainAll(filteredEntities);
+		return filteredEntities;
+	}
 
+	/**
+	 * Load entity IDs of container federation once and rebuild index only when
+	 * other federation is selected
+	 */
+	private EntityIdIndex getContainerFederationEntityIds() {
+		String federationDn = trustRelationship.getGluuContainerFederation();
+		if (federationDn == null) {
+			return null;
+		}
+
+		if (!federationDn.equals(containerFederationDn)) {
+			GluuSAMLTrustRelationship containerFederation = trustService.getTrustContainerFederation(trustRelationship);
+			if (containerFederation == null) {
+				return null;
+			}
+
+			containerFederationEntityIds = new EntityIdIndex(containerFederation.getGluuEntityId());
+			containerFederationDn = federationDn;
+			filteredEntities = null;
+			entitiesStartIndex = 0;
 		}
-		return availableEntitiesFiltered;
+
+		return containerFederationEntityIds;
 	}
 
 	public void setFilterString(String filterString) {
@@ -9,8 +9,12 @@ package org.gluu.oxtrust.action;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,6 +24,7 @@ import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.filefilter.AndFileFilter;
 import org.apache.commons.io.filefilter.FileFileFilter;
 import org.apache.commons.io.filefilter.WildcardFileFilter;
@@ -47,6 +52,8 @@ public class ViewLogFileAction implements Serializable {
 
 	private static final long serialVersionUID = -3310340481895022468L;
 
+	private static final int MAX_FOLLOW_BYTES = 64 * 1024; // 64 KB per poll
+
 	@Inject
 	private Logger log;
 	
@@ -70,6 +77,13 @@ public class ViewLogFileAction implements Serializable {
 
 	private int displayLastLinesCount;
 
+	private String tailOfLogFile;
+
+	private boolean follow;
+	private long followOffset;
+	private String followFileKey;
+	private String appendedLogData;
+
 	public String init() {
 		if (this.logViewerConfiguration != null) {
 			return OxTrustConstants.RESULT_SUCCESS;
@@ -158,7 +172,25 @@ public class ViewLogFileAction implements Serializable {
 			return "";
 		}
 
-		File activeLogFile = new File(this.logFiles.get(activeLogFileIndex));
+		if (this.tailOfLogFile == null) {
+			this.tailOfLogFile = readTailOfLogFile();
+		}
+
+		return this.tailOfLogFile;
+	}
+
+	private String readTailOfLogFile() {
+		String logFile = this.logFiles.get(activeLogFileIndex);
+		File activeLogFile = new File(logFile);
+
+		// Follow mode continues from the end of file which tail was read from
+		try {
+			this.followFileKey = getFileKey(logFile);
+		} catch (IOException ex) {
+			log.error("Failed to read attributes of log file '{}'", logFile, ex);
+		}
+		this.followOffset = activeLogFile.length();
+
 		ReverseLineReader reverseLineReader = new ReverseLineReader(activeLogFile, Charset.defaultCharset().name());
 		try {
 			List<String> logFileLastLines = reverseLineReader.readLastLines(this.displayLastLinesCount);
@@ -171,8 +203,8 @@ public class ViewLogFileAction implements Serializable {
 			
 			return sb.toString();
 		} catch (IOException ex) {
-			log.error("Failed to read log file '{}'", this.logFiles.get(activeLogFileIndex), ex);
-			String result = String.format("Failed to read log file '%s'", this.logFiles.get(activeLogFileIndex));
+			log.error("Failed to read log file '{}'", logFile, ex);
+			String result = String.format("Failed to read log file '%s'", logFile);
 			
 			return result;
 		} finally {
@@ -184,20 +216,123 @@ public class ViewLogFileAction implements Serializable {
 		}
 	}
 
+	/**
+	 * Read lines appended to active log file since previous poll. Result is
+	 * available via getAppendedLogData(). Log file is read from beginning if
+	 * it was rotated or truncated. Not more than MAX_FOLLOW_BYTES are returned
+	 * per poll, older appended lines are skipped
+	 */
+	public void pollLogFile() {
+		this.appendedLogData = null;
+		if (!this.follow || (this.activeLogFileIndex == -1) || (this.tailOfLogFile == null)) {
+			return;
+		}
+
+		String logFile = this.logFiles.get(activeLogFileIndex);
+		RandomAccessFile activeLogFile = null;
+		try {
+			String fileKey = getFileKey(logFile);
+			activeLogFile = new RandomAccessFile(logFile, "r");
+
+			long length = activeLogFile.length();
+			if (!StringHelper.equals(fileKey, this.followFileKey) || (length < this.followOffset)) {
+				log.debug("Log file '{}' was rotated, reading it from beginning", logFile);
+				this.followFileKey = fileKey;
+				this.followOffset = 0;
+			}
+
+			if (length == this.followOffset) {
+				return;
+			}
+
+			long readFrom = Math.max(this.followOffset, length - MAX_FOLLOW_BYTES);
+			byte[] buffer = new byte[(int) (length - readFrom)];
+			activeLogFile.seek(readFrom);
+			activeLogFile.readFully(buffer);
+
+			int start = 0;
+			if (readFrom > this.followOffset) {
+				// Skip partial first line
+				start = indexOf(buffer, 0, (byte) '\n') + 1;
+			}
+
+			// Leave incomplete last line till next poll unless it fills whole buffer
+			int end = lastIndexOf(buffer, start, (byte) '\n') + 1;
+			if (end == 0) {
+				end = (buffer.length == MAX_FOLLOW_BYTES) ? buffer.length : start;
+			}
+
+			StringBuilder sb = new StringBuilder();
+			if (readFrom + start > this.followOffset) {
+				sb.append(String.format("... skipped %d bytes ...\n", readFrom + start - this.followOffset));
+			}
+			sb.append(new String(buffer, start, end - start, Charset.defaultCharset()));
+
+			this.followOffset = readFrom + end;
+			this.appendedLogData = sb.toString();
+		} catch (IOException ex) {
+			log.error("Failed to follow log file '{}'", logFile, ex);
+		} finally {
+			IOUtils.closeQuietly(activeLogFile);
+		}
+	}
+
+	private String getFileKey(String logFile) throws IOException {
+		Object fileKey = Files.readAttributes(Paths.get(logFile), BasicFileAttributes.class).fileKey();
+
+		return (fileKey == null) ? null : fileKey.toString();
+	}
+
+	private int indexOf(byte[] buffer, int from, byte value) {
+		for (int i = from; i < buffer.length; i++) {
+			if (buffer[i] == value) {
+				return i;
+			}
+		}
+
+		return buffer.length - 1;
+	}
+
+	private int lastIndexOf(byte[] buffer, int from, byte value) {
+		for (int i = buffer.length - 1; i >= from; i--) {
+			if (buffer[i] == value) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
 	public int getActiveLogFileIndex() {
 		return activeLogFileIndex;
 	}
 
 	public void setActiveLogFileIndex(int activeLogFileIndex) {
 		this.activeLogFileIndex = activeLogFileIndex;
+		this.tailOfLogFile = null;
+		this.appendedLogData = null;
 	}
 
+	public boolean isFollow() {
+		return follow;
+	}
+
+	public void setFollow(boolean follow) {
+		this.follow = follow;
+	}
+
+	public String getAppendedLogData() {
+		return appendedLogData;
+	}
 
 	public int getDisplayLastLinesCount() {
 		return displayLastLinesCount;
 	}
 
 	public void setDisplayLastLinesCount(int displayLinesCount) {
+		if (this.displayLastLinesCount != displayLinesCount) {
+			this.tailOfLogFile = null;
+		}
 		this.displayLastLinesCount = displayLinesCount;
 	}
 
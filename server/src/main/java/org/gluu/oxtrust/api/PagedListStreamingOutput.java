@@ -0,0 +1,253 @@
+/*
+ * oxTrust is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2018, Gluu
+ */
+package org.gluu.oxtrust.api;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.FileUtils;
+import org.gluu.oxtrust.ldap.service.PagedSearchService.EntryHandler;
+import org.gluu.persist.model.ListViewResponse;
+import org.xdi.util.StringHelper;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Writes LDAP entries as JSON array. Whole list is loaded with single LDAP
+ * paged search and every entry is written to temporary file as soon as it
+ * arrives, so whole list is never held in memory. File is sent to client after
+ * search ends, so LDAP connection is not held while client reads response.
+ * X-Total-Count is not known in advance in this case and it's not returned.
+ *
+ * If count is specified, entries are loaded page by page ordered by inum and
+ * paging state is passed to client as opaque cursor in X-Next-Cursor header.
+ */
+public abstract class PagedListStreamingOutput<T> implements StreamingOutput {
+
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    public static final int PAGE_SIZE = 200;
+    public static final int MAX_COUNT = 1000;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final ObjectMapper mapper;
+    private final int startIndex;
+    private final int count;
+    private final Set<String> properties;
+
+    private ListViewResponse<T> firstPage;
+
+    /**
+     * @param cursor
+     *            Cursor returned with previous page or null to start from
+     *            first entry
+     * @param count
+     *            Maximum number of entries to return or null to return all
+     *            entries
+     * @param attributes
+     *            Comma separated list of properties to include in every
+     *            entry or null to include all properties
+     */
+    public PagedListStreamingOutput(String cursor, Integer count, String attributes) {
+        this(MAPPER, cursor, count, attributes);
+    }
+
+    /**
+     * @param mapper
+     *            Mapper to serialize entries with
+     */
+    public PagedListStreamingOutput(ObjectMapper mapper, String cursor, Integer count, String attributes) {
+        this.mapper = mapper;
+        this.startIndex = decodeCursor(cursor);
+        this.count = count == null ? -1 : Math.max(1, Math.min(count, MAX_COUNT));
+        this.properties = parseProperties(attributes);
+    }
+
+    /**
+     * Load page of entries
+     *
+     * @param startIndex
+     *            1-based index of first entry
+     * @param count
+     *            Page size
+     */
+    protected abstract ListViewResponse<T> loadPage(int startIndex, int count);
+
+    /**
+     * Pass all entries to handler as they arrive
+     */
+    protected abstract void loadAll(EntryHandler<T> entryHandler) throws Exception;
+
+    /**
+     * Load first page and set paging headers. Should be called before
+     * response is committed
+     */
+    public PagedListStreamingOutput<T> prepare(HttpServletResponse response) {
+        if (isFullList()) {
+            return this;
+        }
+
+        this.firstPage = loadPage(startIndex, pageSize(0));
+
+        int totalResults = firstPage.getTotalResults();
+        response.setHeader(TOTAL_COUNT_HEADER, String.valueOf(totalResults));
+
+        if (count > 0) {
+            int nextIndex = startIndex + firstPage.getResult().size();
+            if ((firstPage.getResult().size() > 0) && (nextIndex <= totalResults)) {
+                response.setHeader(NEXT_CURSOR_HEADER, encodeCursor(nextIndex));
+            }
+        }
+
+        return this;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException, WebApplicationException {
+        if (isFullList()) {
+            writeAll(output);
+            return;
+        }
+
+        JsonGenerator generator = createGenerator(output);
+        try {
+            generator.writeStartArray();
+
+            int written = 0;
+            ListViewResponse<T> page = firstPage;
+            while (true) {
+                if (page == null) {
+                    page = loadPage(startIndex + written, pageSize(written));
+                }
+
+                List<T> entries = page.getResult();
+                for (T entry : entries) {
+                    writeEntry(generator, entry);
+                }
+                generator.flush();
+                written += entries.size();
+
+                if (entries.isEmpty() || (written == count) || (startIndex + written > page.getTotalResults())) {
+                    break;
+                }
+                page = null;
+            }
+
+            generator.writeEndArray();
+        } finally {
+            generator.close();
+        }
+    }
+
+    private void writeAll(OutputStream output) throws IOException {
+        File file = File.createTempFile("list", ".json");
+        try {
+            final JsonGenerator generator = createGenerator(FileUtils.openOutputStream(file));
+            try {
+                generator.writeStartArray();
+                loadAll(new EntryHandler<T>() {
+                    @Override
+                    public void handle(T entry) throws IOException {
+                        writeEntry(generator, entry);
+                    }
+                });
+                generator.writeEndArray();
+            } catch (IOException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new WebApplicationException(ex);
+            } finally {
+                generator.close();
+            }
+
+            // Search is finished and LDAP connection is released at this point
+            FileUtils.copyFile(file, output);
+            output.flush();
+        } finally {
+            FileUtils.deleteQuietly(file);
+        }
+    }
+
+    private JsonGenerator createGenerator(OutputStream output) throws IOException {
+        JsonGenerator generator = mapper.getFactory().createGenerator(output);
+        if (mapper.isEnabled(SerializationFeature.INDENT_OUTPUT)) {
+            generator.useDefaultPrettyPrinter();
+        }
+
+        return generator;
+    }
+
+    private void writeEntry(JsonGenerator generator, T entry) throws IOException {
+        if (properties == null) {
+            mapper.writeValue(generator, entry);
+            return;
+        }
+
+        // Only root properties are projected, their values are written as is
+        ObjectNode node = mapper.valueToTree(entry);
+        node.retain(properties);
+        mapper.writeTree(generator, node);
+    }
+
+    private boolean isFullList() {
+        return (count < 0) && (startIndex == 1);
+    }
+
+    private int pageSize(int written) {
+        if (count < 0) {
+            return PAGE_SIZE;
+        }
+
+        return Math.min(PAGE_SIZE, count - written);
+    }
+
+    private Set<String> parseProperties(String attributes) {
+        if (StringHelper.isEmpty(attributes)) {
+            return null;
+        }
+
+        Set<String> properties = new HashSet<String>();
+        for (String attribute : attributes.split(",")) {
+            if (StringHelper.isNotEmpty(attribute.trim())) {
+                properties.add(attribute.trim());
+            }
+        }
+
+        return properties;
+    }
+
+    public static String encodeCursor(int startIndex) {
+        return Base64.encodeBase64URLSafeString(String.valueOf(startIndex).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static int decodeCursor(String cursor) {
+        if (StringHelper.isEmpty(cursor)) {
+            return 1;
+        }
+
+        try {
+            return Math.max(1, Integer.parseInt(new String(Base64.decodeBase64(cursor), StandardCharsets.UTF_8)));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+}
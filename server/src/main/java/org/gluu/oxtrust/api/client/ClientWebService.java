@@ -7,8 +7,6 @@ package org.gluu.oxtrust.api.client;
 
 import javax.inject.Inject;
 
-import java.util.List;
-
 import javax.annotation.security.DeclareRoles;
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.Consumes;
@@ -19,14 +17,19 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
+import org.gluu.oxtrust.api.PagedListStreamingOutput;
 import org.gluu.oxtrust.ldap.service.ClientService;
 import org.gluu.oxtrust.ldap.service.IGroupService;
+import org.gluu.oxtrust.ldap.service.PagedSearchService.EntryHandler;
 import org.gluu.oxtrust.model.GluuGroup;
 import org.gluu.oxtrust.model.OxAuthClient;
 import org.gluu.oxtrust.util.OxTrustConstants;
+import org.gluu.persist.model.ListViewResponse;
 import org.slf4j.Logger;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -122,19 +125,30 @@ public class ClientWebService {
     @GET
     @Path("/list")
     @Produces(MediaType.APPLICATION_JSON)
-    public String list(@Context HttpServletResponse response) {
+    public Response list(@QueryParam("cursor") String cursor, @QueryParam("count") Integer count,
+            @QueryParam("attributes") String attributes, @Context HttpServletResponse response) {
         try {
-        	
-            List<OxAuthClient> clientList = clientService.getAllClients();
-            ObjectMapper mapper = new ObjectMapper();
-            String clientListJson = mapper.writeValueAsString(clientList);
-            response.setStatus(HttpServletResponse.SC_OK);
-            return clientListJson;
-            
+            PagedListStreamingOutput<OxAuthClient> output = new PagedListStreamingOutput<OxAuthClient>(cursor, count, attributes) {
+                @Override
+                protected ListViewResponse<OxAuthClient> loadPage(int startIndex, int pageSize) {
+                    return clientService.getClients(startIndex, pageSize);
+                }
+
+                @Override
+                protected void loadAll(EntryHandler<OxAuthClient> entryHandler) throws Exception {
+                    clientService.streamClients(entryHandler);
+                }
+            };
+
+            return Response.ok(output.prepare(response)).build();
+        } catch (IllegalArgumentException e) {
+            logger.debug("list() Invalid request", e);
+            try { response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage()); } catch (Exception ex) {}
+            return null;
         } catch (Exception e) {
-            logger.error("delete() Exception", e);
+            logger.error("list() Exception", e);
             try { response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "INTERNAL SERVER ERROR"); } catch (Exception ex) {}
-            return OxTrustConstants.RESULT_FAILURE;
+            return null;
         }
     }
     
@@ -7,8 +7,6 @@ package org.gluu.oxtrust.api.group;
 
 import javax.inject.Inject;
 
-import java.util.List;
-
 import javax.annotation.security.DeclareRoles;
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.Consumes;
@@ -19,12 +17,17 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
+import org.gluu.oxtrust.api.PagedListStreamingOutput;
 import org.gluu.oxtrust.ldap.service.IGroupService;
+import org.gluu.oxtrust.ldap.service.PagedSearchService.EntryHandler;
 import org.gluu.oxtrust.model.GluuGroup;
 import org.gluu.oxtrust.util.OxTrustConstants;
+import org.gluu.persist.model.ListViewResponse;
 import org.slf4j.Logger;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -112,19 +115,30 @@ public class GroupWebService {
     @GET
     @Path("/list")
     @Produces(MediaType.APPLICATION_JSON)
-    public String list(@Context HttpServletResponse response) {
+    public Response list(@QueryParam("cursor") String cursor, @QueryParam("count") Integer count,
+            @QueryParam("attributes") String attributes, @Context HttpServletResponse response) {
         try {
-        	
-            List <GluuGroup> groupList = groupService.getAllGroups();
-            ObjectMapper mapper = new ObjectMapper();
-            String gluuList = mapper.writeValueAsString(groupList);
-            response.setStatus(HttpServletResponse.SC_OK);
-            return gluuList;
-            
+            PagedListStreamingOutput<GluuGroup> output = new PagedListStreamingOutput<GluuGroup>(cursor, count, attributes) {
+                @Override
+                protected ListViewResponse<GluuGroup> loadPage(int startIndex, int pageSize) {
+                    return groupService.getGroups(startIndex, pageSize);
+                }
+
+                @Override
+                protected void loadAll(EntryHandler<GluuGroup> entryHandler) throws Exception {
+                    groupService.streamGroups(entryHandler);
+                }
+            };
+
+            return Response.ok(output.prepare(response)).build();
+        } catch (IllegalArgumentException e) {
+            logger.debug("list() Invalid request", e);
+            try { response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage()); } catch (Exception ex) {}
+            return null;
         } catch (Exception e) {
-            logger.error("delete() Exception", e);
+            logger.error("list() Exception", e);
             try { response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "INTERNAL SERVER ERROR"); } catch (Exception ex) {}
-            return OxTrustConstants.RESULT_FAILURE;
+            return null;
         }
     }
     
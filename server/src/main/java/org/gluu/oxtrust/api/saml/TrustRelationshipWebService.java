@@ -32,8 +32,10 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.input.CharSequenceInputStream;
@@ -46,18 +48,22 @@ import org.bouncycastle.openssl.PEMWriter;
 import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 import org.bouncycastle.util.encoders.Base64;
 import org.gluu.oxtrust.action.TrustContactsAction;
+import org.gluu.oxtrust.api.PagedListStreamingOutput;
 import org.gluu.oxtrust.ldap.service.ClientService;
 import org.gluu.oxtrust.ldap.service.MetadataValidationTimer;
+import org.gluu.oxtrust.ldap.service.PagedSearchService.EntryHandler;
 import org.gluu.oxtrust.ldap.service.Shibboleth3ConfService;
 import org.gluu.oxtrust.ldap.service.SvnSyncTimer;
 import org.gluu.oxtrust.ldap.service.TrustService;
 import org.gluu.oxtrust.model.GluuMetadataSourceType;
 import org.gluu.oxtrust.model.GluuSAMLTrustRelationship;
+import org.gluu.oxtrust.model.GluuValidationStatus;
 import org.gluu.oxtrust.model.OxAuthClient;
 import org.gluu.oxtrust.security.Identity;
 import org.gluu.oxtrust.service.uma.annotations.UmaSecure;
 import org.gluu.oxtrust.util.OxTrustConstants;
 import org.gluu.persist.exception.mapping.BaseMappingException;
+import org.gluu.persist.model.ListViewResponse;
 import org.gluu.persist.model.base.GluuStatus;
 import org.gluu.saml.metadata.SAMLMetadataParser;
 import org.slf4j.Logger;
@@ -193,17 +199,32 @@ public class TrustRelationshipWebService {
     @GET
     @Path("/list")
     @Produces(MediaType.APPLICATION_JSON)
-    public String list(@Context HttpServletResponse response) {
+    public Response list(@QueryParam("cursor") String cursor, @QueryParam("count") Integer count,
+            @QueryParam("attributes") String attributes, @Context HttpServletResponse response) {
         try {
-            List<GluuSAMLTrustRelationship> trustRelationships = trustService.getAllTrustRelationships();
-            //convert to JSON
-            return objectMapper.writeValueAsString(trustRelationships);
+            PagedListStreamingOutput<GluuSAMLTrustRelationship> output = new PagedListStreamingOutput<GluuSAMLTrustRelationship>(objectMapper, cursor, count, attributes) {
+                @Override
+                protected ListViewResponse<GluuSAMLTrustRelationship> loadPage(int startIndex, int pageSize) {
+                    return trustService.getTrustRelationships(startIndex, pageSize);
+                }
+
+                @Override
+                protected void loadAll(EntryHandler<GluuSAMLTrustRelationship> entryHandler) throws Exception {
+                    trustService.streamTrustRelationships(entryHandler);
+                }
+            };
+
+            return Response.ok(output.prepare(response)).build();
+        } catch (IllegalArgumentException e) {
+            logger.debug("list() Invalid request", e);
+            try { response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage()); } catch (Exception ex) {}
+            return null;
         } catch (Exception e) {
             logger.error("list() Exception", e);
             try { response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "INTERNAL SERVER ERROR"); } catch (Exception ex) {}
-            return OxTrustConstants.RESULT_FAILURE;
-        } 
-   }
+            return null;
+        }
+    }
     
     @GET
     @Path("/list_all_federations")
@@ -633,7 +654,12 @@ public class TrustRelationshipWebService {
                 spMetadataFileName = shibboleth3ConfService.getSpNewMetadataFileName(trustRelationship);
         }
 
-        String result = shibboleth3ConfService.saveSpMetadataFile(trustRelationship.getSpMetaDataURL(), spMetadataFileName);
+        boolean validated = GluuValidationStatus.VALIDATION_SUCCESS.equals(trustRelationship.getValidationStatus());
+        String result = shibboleth3ConfService.saveSpMetadataFile(trustRelationship.getSpMetaDataURL(), spMetadataFileName, validated);
+        if (Shibboleth3ConfService.SP_METADATA_NOT_MODIFIED.equals(result)) {
+                // Current metadata was validated already
+                return true;
+        }
         if (StringHelper.isNotEmpty(result)) {
                 metadataValidationTimer.queue(result);
         } else {
@@ -0,0 +1,226 @@
+/*
+ * oxTrust is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxtrust.ldap.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.gluu.persist.model.base.GluuStatus;
+import org.xdi.model.GluuAttribute;
+import org.xdi.model.GluuUserRole;
+import org.xdi.util.StringHelper;
+
+/**
+ * Immutable view of all attributes with hash indexes by inum, name, DN and
+ * origin and with person and contact attribute lists precomputed for every
+ * user role. Catalog is built once after each attributes change
+ */
+public final class AttributeCatalog {
+
+	private final List<GluuAttribute> attributes;
+
+	private final Map<String, GluuAttribute> byInum;
+	private final Map<String, GluuAttribute> byName;
+	private final Map<String, GluuAttribute> byLowerCaseName;
+	private final Map<String, GluuAttribute> byDn;
+	private final Map<String, List<GluuAttribute>> byOrigin;
+
+	private final List<String> origins;
+	private final List<GluuAttribute> customAttributes;
+	private final List<GluuAttribute> scimCustomAttributes;
+
+	private final Map<GluuUserRole, List<GluuAttribute>> personAttributes;
+	private final Map<GluuUserRole, List<GluuAttribute>> activePersonAttributes;
+	private final Map<GluuUserRole, List<GluuAttribute>> contactAttributes;
+
+	/**
+	 * @param attributes
+	 *            All attributes
+	 * @param customOrigin
+	 *            Origin of custom person attributes
+	 * @param personObjectClassTypes
+	 *            Person object classes
+	 * @param contactObjectClassTypes
+	 *            Contact object classes
+	 */
+	public AttributeCatalog(List<GluuAttribute> attributes, String customOrigin, String[] personObjectClassTypes,
+			String[] contactObjectClassTypes) {
+		Map<String, GluuAttribute> byInum = new HashMap<String, GluuAttribute>();
+		Map<String, GluuAttribute> byName = new HashMap<String, GluuAttribute>();
+		Map<String, GluuAttribute> byLowerCaseName = new HashMap<String, GluuAttribute>();
+		Map<String, GluuAttribute> byDn = new HashMap<String, GluuAttribute>();
+		Map<String, List<GluuAttribute>> byOrigin = new HashMap<String, List<GluuAttribute>>();
+		Set<String> origins = new LinkedHashSet<String>();
+		List<GluuAttribute> customAttributes = new ArrayList<GluuAttribute>();
+		List<GluuAttribute> scimCustomAttributes = new ArrayList<GluuAttribute>();
+
+		for (GluuAttribute attribute : attributes) {
+			if (StringHelper.isNotEmpty(attribute.getInum())) {
+				byInum.put(attribute.getInum(), attribute);
+			}
+			if (StringHelper.isNotEmpty(attribute.getName()) && !byName.containsKey(attribute.getName())) {
+				byName.put(attribute.getName(), attribute);
+				if (!byLowerCaseName.containsKey(attribute.getName().toLowerCase())) {
+					byLowerCaseName.put(attribute.getName().toLowerCase(), attribute);
+				}
+			}
+			if (StringHelper.isNotEmpty(attribute.getDn())) {
+				byDn.put(normalizeDn(attribute.getDn()), attribute);
+			}
+
+			String origin = attribute.getOrigin();
+			origins.add(origin);
+			List<GluuAttribute> originAttributes = byOrigin.get(origin);
+			if (originAttributes == null) {
+				originAttributes = new ArrayList<GluuAttribute>();
+				byOrigin.put(origin, originAttributes);
+			}
+			originAttributes.add(attribute);
+
+			if (attribute.isCustom()) {
+				customAttributes.add(attribute);
+			}
+
+			if ((attribute.getOxSCIMCustomAttribute() != null)
+					&& attribute.getOxSCIMCustomAttribute().getValue().equalsIgnoreCase("true")) {
+				scimCustomAttributes.add(attribute);
+			}
+		}
+		origins.add(customOrigin);
+
+		Map<GluuUserRole, List<GluuAttribute>> personAttributes = new EnumMap<GluuUserRole, List<GluuAttribute>>(GluuUserRole.class);
+		Map<GluuUserRole, List<GluuAttribute>> activePersonAttributes = new EnumMap<GluuUserRole, List<GluuAttribute>>(GluuUserRole.class);
+		Map<GluuUserRole, List<GluuAttribute>> contactAttributes = new EnumMap<GluuUserRole, List<GluuAttribute>>(GluuUserRole.class);
+		for (GluuUserRole gluuUserRole : GluuUserRole.values()) {
+			List<GluuAttribute> rolePersonAttributes = getRoleAttributes(attributes, gluuUserRole, customOrigin, personObjectClassTypes);
+			personAttributes.put(gluuUserRole, Collections.unmodifiableList(rolePersonAttributes));
+
+			List<GluuAttribute> roleActivePersonAttributes = new ArrayList<GluuAttribute>();
+			for (GluuAttribute attribute : rolePersonAttributes) {
+				if (GluuStatus.ACTIVE.equals(attribute.getStatus())) {
+					roleActivePersonAttributes.add(attribute);
+				}
+			}
+			activePersonAttributes.put(gluuUserRole, Collections.unmodifiableList(roleActivePersonAttributes));
+
+			contactAttributes.put(gluuUserRole,
+					Collections.unmodifiableList(getRoleAttributes(attributes, gluuUserRole, customOrigin, contactObjectClassTypes)));
+		}
+
+		for (Map.Entry<String, List<GluuAttribute>> entry : byOrigin.entrySet()) {
+			entry.setValue(Collections.unmodifiableList(entry.getValue()));
+		}
+
+		this.attributes = Collections.unmodifiableList(new ArrayList<GluuAttribute>(attributes));
+		this.byInum = Collections.unmodifiableMap(byInum);
+		this.byName = Collections.unmodifiableMap(byName);
+		this.byLowerCaseName = Collections.unmodifiableMap(byLowerCaseName);
+		this.byDn = Collections.unmodifiableMap(byDn);
+		this.byOrigin = Collections.unmodifiableMap(byOrigin);
+		this.origins = Collections.unmodifiableList(new ArrayList<String>(origins));
+		this.customAttributes = Collections.unmodifiableList(customAttributes);
+		this.scimCustomAttributes = Collections.unmodifiableList(scimCustomAttributes);
+		this.personAttributes = Collections.unmodifiableMap(personAttributes);
+		this.activePersonAttributes = Collections.unmodifiableMap(activePersonAttributes);
+		this.contactAttributes = Collections.unmodifiableMap(contactAttributes);
+	}
+
+	private static List<GluuAttribute> getRoleAttributes(List<GluuAttribute> attributes, GluuUserRole gluuUserRole, String customOrigin,
+			String[] objectClassTypes) {
+		List<GluuAttribute> result = new ArrayList<GluuAttribute>();
+		for (GluuAttribute attribute : attributes) {
+			if (StringHelper.equalsIgnoreCase(attribute.getOrigin(), customOrigin) && (GluuUserRole.ADMIN == gluuUserRole)) {
+				attribute.setCustom(true);
+				result.add(attribute);
+				continue;
+			}
+
+			for (String objectClassType : objectClassTypes) {
+				if (attribute.getOrigin().equals(objectClassType)
+						&& (attribute.allowViewBy(gluuUserRole) || attribute.allowEditBy(gluuUserRole))) {
+					result.add(attribute);
+					break;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	private static String normalizeDn(String dn) {
+		return dn.toLowerCase().replaceAll("\\s*,\\s*", ",");
+	}
+
+	public List<GluuAttribute> getAttributes() {
+		return attributes;
+	}
+
+	public GluuAttribute getByInum(String inum) {
+		return byInum.get(inum);
+	}
+
+	public GluuAttribute getByName(String name) {
+		if (name == null) {
+			return null;
+		}
+
+		GluuAttribute attribute = byName.get(name);
+		if (attribute == null) {
+			attribute = byLowerCaseName.get(name.toLowerCase());
+		}
+
+		return attribute;
+	}
+
+	public GluuAttribute getByDn(String dn) {
+		if (StringHelper.isEmpty(dn)) {
+			return null;
+		}
+
+		return byDn.get(normalizeDn(dn));
+	}
+
+	public List<GluuAttribute> getByOrigin(String origin) {
+		List<GluuAttribute> result = byOrigin.get(origin);
+		if (result == null) {
+			return Collections.emptyList();
+		}
+
+		return result;
+	}
+
+	public List<String> getOrigins() {
+		return origins;
+	}
+
+	public List<GluuAttribute> getCustomAttributes() {
+		return customAttributes;
+	}
+
+	public List<GluuAttribute> getScimCustomAttributes() {
+		return scimCustomAttributes;
+	}
+
+	public List<GluuAttribute> getPersonAttributes(GluuUserRole gluuUserRole) {
+		return personAttributes.get(gluuUserRole);
+	}
+
+	public List<GluuAttribute> getActivePersonAttributes(GluuUserRole gluuUserRole) {
+		return activePersonAttributes.get(gluuUserRole);
+	}
+
+	public List<GluuAttribute> getContactAttributes(GluuUserRole gluuUserRole) {
+		return contactAttributes.get(gluuUserRole);
+	}
+
+}
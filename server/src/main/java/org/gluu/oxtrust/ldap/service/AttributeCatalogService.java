@@ -0,0 +1,67 @@
+/*
+ * oxTrust is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxtrust.ldap.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Named;
+
+/**
+ * Holds attribute catalog between attributes changes. Only changes made on
+ * this node invalidate it, so catalog is also rebuilt after MAX_AGE to pick up
+ * changes made on other nodes
+ */
+@ApplicationScoped
+@Named
+public class AttributeCatalogService {
+
+	private static final long MAX_AGE = 5 * 60 * 1000L; // 5 minutes
+
+	private final AtomicLong generation = new AtomicLong();
+
+	private volatile AttributeCatalog catalog;
+
+	private volatile long catalogCreationTime;
+
+	/**
+	 * @return Catalog or null if there is no catalog or it's expired
+	 */
+	public AttributeCatalog getCatalog() {
+		AttributeCatalog current = this.catalog;
+		if ((current == null) || (System.currentTimeMillis() - catalogCreationTime > MAX_AGE)) {
+			return null;
+		}
+
+		return current;
+	}
+
+	/**
+	 * Current generation. Should be read before loading attributes for new
+	 * catalog
+	 */
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Store catalog unless attributes were changed after it's generation was
+	 * read
+	 */
+	public synchronized void setCatalog(AttributeCatalog catalog, long catalogGeneration) {
+		if (generation.get() == catalogGeneration) {
+			this.catalogCreationTime = System.currentTimeMillis();
+			this.catalog = catalog;
+		}
+	}
+
+	public synchronized void invalidate() {
+		generation.incrementAndGet();
+		this.catalog = null;
+	}
+
+}
@@ -7,7 +7,6 @@
 package org.gluu.oxtrust.ldap.service;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -20,6 +19,7 @@ import javax.enterprise.inject.Any;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.apache.commons.lang.SerializationUtils;
 import org.gluu.oxtrust.model.GluuCustomAttribute;
 import org.gluu.oxtrust.service.cdi.event.EventType;
 import org.gluu.oxtrust.service.cdi.event.EventTypeQualifier;
@@ -37,7 +37,6 @@ import org.xdi.util.INumGenerator;
 import org.xdi.util.StringHelper;
 
 import org.gluu.search.filter.Filter;
-import com.unboundid.ldap.sdk.LDAPException;
 
 /**
  * Provides operations with attributes
@@ -60,60 +59,41 @@ public class AttributeService extends org.xdi.service.AttributeService {
 	@Inject
 	private OrganizationService organizationService;
 
+	@Inject
+	private AttributeCatalogService attributeCatalogService;
+
 	@Inject @Any
 	private Event<Events> event;
 
 	public static final String CUSTOM_ATTRIBUTE_OBJECTCLASS_PREFIX = "ox-";
 
 	/**
-	 * Get all person attributes
+	 * Get attribute catalog. Catalog is built from cached list of all
+	 * attributes and is kept until attributes are changed or it expires
 	 * 
-	 * @param gluuUserRole
-	 *            User role
-	 * @return List of person attributes
-	 */
-	@SuppressWarnings("unchecked")
-	public List<GluuAttribute> getAllPersonAttributes(GluuUserRole gluuUserRole) {
-		String key = OxTrustConstants.CACHE_ATTRIBUTE_PERSON_KEY_LIST + "_" + gluuUserRole.getValue();
-		List<GluuAttribute> attributeList = (List<GluuAttribute>) cacheService.get(OxTrustConstants.CACHE_ATTRIBUTE_NAME, key);
-		if (attributeList == null) {
-			attributeList = getAllPersonAtributesImpl(gluuUserRole, getAllAttributes());
-			cacheService.put(OxTrustConstants.CACHE_ATTRIBUTE_NAME, key, attributeList);
+	 * @return Attribute catalog
+	 */
+	public AttributeCatalog getAttributeCatalog() {
+		AttributeCatalog catalog = attributeCatalogService.getCatalog();
+		if (catalog == null) {
+			long generation = attributeCatalogService.getGeneration();
+			catalog = new AttributeCatalog(getAllAttributes(), getCustomOrigin(), appConfiguration.getPersonObjectClassTypes(),
+					appConfiguration.getContactObjectClassTypes());
+			attributeCatalogService.setCatalog(catalog, generation);
 		}
 
-		return attributeList;
+		return catalog;
 	}
 
 	/**
-	 * Get all organization attributes
+	 * Get all person attributes
 	 * 
-	 * @param attributes
-	 *            List of attributes
-	 * @return List of organization attributes
+	 * @param gluuUserRole
+	 *            User role
+	 * @return List of person attributes
 	 */
-	private List<GluuAttribute> getAllPersonAtributesImpl(GluuUserRole gluuUserRole, Collection<GluuAttribute> attributes) {
-		List<GluuAttribute> returnAttributeList = new ArrayList<GluuAttribute>();
-
-		String[] objectClassTypes = appConfiguration.getPersonObjectClassTypes();
-		log.debug("objectClassTypes={}", Arrays.toString(objectClassTypes));
-		for (GluuAttribute attribute : attributes) {
-			if (StringHelper.equalsIgnoreCase(attribute.getOrigin(), appConfiguration.getPersonCustomObjectClass())
-					&& (GluuUserRole.ADMIN == gluuUserRole)) {
-				attribute.setCustom(true);
-				returnAttributeList.add(attribute);
-				continue;
-			}
-
-			for (String objectClassType : objectClassTypes) {
-				if (attribute.getOrigin().equals(objectClassType)
-						&& ((attribute.allowViewBy(gluuUserRole) || attribute.allowEditBy(gluuUserRole)))) {
-					returnAttributeList.add(attribute);
-					break;
-				}
-			}
-		}
-
-		return returnAttributeList;
+	public List<GluuAttribute> getAllPersonAttributes(GluuUserRole gluuUserRole) {
+		return getAttributeCatalog().getPersonAttributes(gluuUserRole);
 	}
 
 	/**
@@ -121,47 +101,8 @@ public class AttributeService extends org.xdi.service.AttributeService {
 	 * 
 	 * @return List of contact attributes
 	 */
-	@SuppressWarnings("unchecked")
 	public List<GluuAttribute> getAllContactAttributes(GluuUserRole gluuUserRole) {
-		String key = OxTrustConstants.CACHE_ATTRIBUTE_CONTACT_KEY_LIST + "_" + gluuUserRole.getValue();
-		List<GluuAttribute> attributeList = (List<GluuAttribute>) cacheService.get(OxTrustConstants.CACHE_ATTRIBUTE_NAME, key);
-		if (attributeList == null) {
-			attributeList = getAllContactAtributesImpl(gluuUserRole, getAllAttributes());
-			cacheService.put(OxTrustConstants.CACHE_ATTRIBUTE_NAME, key, attributeList);
-		}
-
-		return attributeList;
-	}
-
-	/**
-	 * Get all contact attributes
-	 * 
-	 * @param attributes
-	 *            List of attributes
-	 * @return List of contact attributes
-	 */
-	private List<GluuAttribute> getAllContactAtributesImpl(GluuUserRole gluuUserRole, Collection<GluuAttribute> attributes) {
-		List<GluuAttribute> returnAttributeList = new ArrayList<GluuAttribute>();
-
-		String[] objectClassTypes = appConfiguration.getContactObjectClassTypes();
-		for (GluuAttribute attribute : attributes) {
-			if (StringHelper.equalsIgnoreCase(attribute.getOrigin(), appConfiguration.getPersonCustomObjectClass())
-					&& (GluuUserRole.ADMIN == gluuUserRole)) {
-				attribute.setCustom(true);
-				returnAttributeList.add(attribute);
-				continue;
-			}
-
-			for (String objectClassType : objectClassTypes) {
-				if (attribute.getOrigin().equals(objectClassType)
-						&& (attribute.allowViewBy(gluuUserRole) || attribute.allowEditBy(gluuUserRole))) {
-					returnAttributeList.add(attribute);
-					break;
-				}
-			}
-		}
-
-		return returnAttributeList;
+		return getAttributeCatalog().getContactAttributes(gluuUserRole);
 	}
 
 	/**
@@ -169,16 +110,8 @@ public class AttributeService extends org.xdi.service.AttributeService {
 	 * 
 	 * @return List of origins
 	 */
-	@SuppressWarnings("unchecked")
 	public List<String> getAllAttributeOrigins() {
-		List<String> attributeOriginList = (List<String>) cacheService.get(OxTrustConstants.CACHE_ATTRIBUTE_NAME,
-				OxTrustConstants.CACHE_ATTRIBUTE_ORIGIN_KEY_LIST);
-		if (attributeOriginList == null) {
-			attributeOriginList = getAllAttributeOrigins(getAllAttributes());
-			cacheService.put(OxTrustConstants.CACHE_ATTRIBUTE_NAME, OxTrustConstants.CACHE_ATTRIBUTE_ORIGIN_KEY_LIST, attributeOriginList);
-		}
-
-		return attributeOriginList;
+		return getAttributeCatalog().getOrigins();
 	}
 
 	/**
@@ -243,22 +176,8 @@ public class AttributeService extends org.xdi.service.AttributeService {
 	 * 
 	 * @return List of cusomt attributes
 	 */
-	@SuppressWarnings("unchecked")
 	public List<GluuAttribute> getCustomAttributes() {
-		List<GluuAttribute> attributeList = (List<GluuAttribute>) cacheService.get(OxTrustConstants.CACHE_ATTRIBUTE_NAME,
-				OxTrustConstants.CACHE_ATTRIBUTE_CUSTOM_KEY_LIST);
-		if (attributeList == null) {
-			attributeList = new ArrayList<GluuAttribute>();
-			for (GluuAttribute attribute : getAllAttributes()) {
-				if (attribute.isCustom()) {
-					attributeList.add(attribute);
-				}
-			}
-
-			cacheService.put(OxTrustConstants.CACHE_ATTRIBUTE_NAME, OxTrustConstants.CACHE_ATTRIBUTE_CUSTOM_KEY_LIST, attributeList);
-		}
-
-		return attributeList;
+		return getAttributeCatalog().getCustomAttributes();
 	}
 
 	/**
@@ -266,10 +185,15 @@ public class AttributeService extends org.xdi.service.AttributeService {
 	 * 
 	 * @param inum
 	 *            Inum
-	 * @return Attribute
+	 * @return Copy of attribute which can be modified by caller
 	 */
 	public GluuAttribute getAttributeByInum(String inum) {
-		return getAttributeByInum(inum, getAllAtributesImpl(getDnForAttribute(null)));
+		GluuAttribute attribute = getAttributeCatalog().getByInum(inum);
+		if (attribute == null) {
+			return null;
+		}
+
+		return (GluuAttribute) SerializationUtils.clone(attribute);
 	}
 
 	public GluuAttribute getAttributeByInum(String inum, List<GluuAttribute> attributes) {
@@ -282,13 +206,36 @@ public class AttributeService extends org.xdi.service.AttributeService {
 		return null;
 	}
 
+	/**
+	 * Get attribute by name
+	 * 
+	 * @param name
+	 *            Attribute name
+	 * @return Attribute
+	 */
+	@Override
+	public GluuAttribute getAttributeByName(String name) {
+		return getAttributeCatalog().getByName(name);
+	}
+
+	/**
+	 * Get attribute by DN
+	 * 
+	 * @param dn
+	 *            Attribute DN
+	 * @return Attribute
+	 */
+	public GluuAttribute getAttributeByDn(String dn) {
+		return getAttributeCatalog().getByDn(dn);
+	}
+
 	/**
 	 * Get SCIM related attributes
 	 * 
 	 * @return Attribute
 	 */
 	public List<GluuAttribute> getSCIMRelatedAttributes() throws Exception {
-		return getSCIMRelatedAttributesImpl(getAllAttributes());
+		return getAttributeCatalog().getScimCustomAttributes();
 	}
 
 	/**
@@ -373,6 +320,7 @@ public class AttributeService extends org.xdi.service.AttributeService {
 	public void clearAttributesCache(@Observes @EventType(Events.EVENT_CLEAR_ATTRIBUTES) Events event) {
 		log.debug("Removing attributes from cache");
 		cacheService.removeAll(OxTrustConstants.CACHE_ATTRIBUTE_NAME);
+		attributeCatalogService.invalidate();
 	}
 
 	/**
@@ -620,51 +568,15 @@ public class AttributeService extends org.xdi.service.AttributeService {
 	}
 
 	/**
-	 * @param admin
-	 * @return
-	 */
-	public List<GluuAttribute> getAllActivePersonAttributes(GluuUserRole admin) {
-		@SuppressWarnings("unchecked")
-		List<GluuAttribute> activeAttributeList = (List<GluuAttribute>) cacheService.get(OxTrustConstants.CACHE_ACTIVE_ATTRIBUTE_NAME,
-				OxTrustConstants.CACHE_ACTIVE_ATTRIBUTE_KEY_LIST);
-		if (activeAttributeList == null) {
-			activeAttributeList = getAllActiveAtributesImpl(admin);
-			cacheService.put(OxTrustConstants.CACHE_ACTIVE_ATTRIBUTE_NAME, OxTrustConstants.CACHE_ATTRIBUTE_KEY_LIST, activeAttributeList);
-		}
-
-		return activeAttributeList;
-	}
-
-	/**
-	 * @return
-	 * @throws LDAPException
+	 * Get all active person attributes
+	 * 
+	 * @param gluuUserRole
+	 *            User role
+	 * @return List of active person attributes which can be modified by
+	 *         caller
 	 */
-	private List<GluuAttribute> getAllActiveAtributesImpl(GluuUserRole gluuUserRole) {
-		Filter filter = Filter.createEqualityFilter("gluuStatus", "active");
-		List<GluuAttribute> attributeList = ldapEntryManager.findEntries(getDnForAttribute(null), GluuAttribute.class, filter);
-		String customOrigin = getCustomOrigin();
-		String[] objectClassTypes = appConfiguration.getPersonObjectClassTypes();
-		log.debug("objectClassTypes={}", Arrays.toString(objectClassTypes));
-		List<GluuAttribute> returnAttributeList = new ArrayList<GluuAttribute>();
-		for (GluuAttribute attribute : attributeList) {
-			if (StringHelper.equalsIgnoreCase(attribute.getOrigin(), appConfiguration.getPersonCustomObjectClass()) &&
-				(GluuUserRole.ADMIN == gluuUserRole)) {
-				attribute.setCustom(true);
-				returnAttributeList.add(attribute);
-				continue;
-			}
-
-			for (String objectClassType : objectClassTypes) {
-				if (attribute.getOrigin().equals(objectClassType)
-						&& ((attribute.allowViewBy(gluuUserRole) || attribute.allowEditBy(gluuUserRole)))) {
-					attribute.setCustom(customOrigin.equals(attribute.getOrigin()));
-					returnAttributeList.add(attribute);
-					break;
-				}
-			}
-		}
-
-		return returnAttributeList;
+	public List<GluuAttribute> getAllActivePersonAttributes(GluuUserRole gluuUserRole) {
+		return new ArrayList<GluuAttribute>(getAttributeCatalog().getActivePersonAttributes(gluuUserRole));
 	}
 
 	/**
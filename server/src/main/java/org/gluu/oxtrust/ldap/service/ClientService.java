@@ -6,6 +6,7 @@
 
 package org.gluu.oxtrust.ldap.service;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.List;
 
@@ -13,6 +14,7 @@ import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.gluu.oxtrust.ldap.service.PagedSearchService.EntryHandler;
 import org.gluu.oxtrust.model.AuthenticationMethod;
 import org.gluu.oxtrust.model.BlockEncryptionAlgorithm;
 import org.gluu.oxtrust.model.KeyEncryptionAlgorithm;
@@ -22,7 +24,10 @@ import org.gluu.oxtrust.model.OxAuthCustomClient;
 import org.gluu.oxtrust.model.OxAuthSubjectType;
 import org.gluu.oxtrust.model.SignatureAlgorithm;
 import org.gluu.oxtrust.util.OxTrustConstants;
+import org.gluu.persist.exception.mapping.EntryPersistenceException;
 import org.gluu.persist.ldap.impl.LdapEntryManager;
+import org.gluu.persist.model.ListViewResponse;
+import org.gluu.persist.model.SortOrder;
 import org.gluu.persist.model.base.GluuBoolean;
 import org.gluu.search.filter.Filter;
 import org.slf4j.Logger;
@@ -30,6 +35,12 @@ import org.xdi.config.oxtrust.AppConfiguration;
 import org.xdi.util.INumGenerator;
 import org.xdi.util.StringHelper;
 
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModificationType;
+import com.unboundid.ldap.sdk.ResultCode;
+
 /**
  * Provides operations with clients
  *
@@ -44,6 +55,8 @@ public class ClientService implements Serializable {
 
     private static final long serialVersionUID = 7912416439116338984L;
 
+    private static final String SECTOR_IDENTIFIER_URI_ATTRIBUTE = "oxAuthSectorIdentifierURI";
+
     @Inject
     private LdapEntryManager ldapEntryManager;
 
@@ -56,6 +69,9 @@ public class ClientService implements Serializable {
     @Inject
     private OrganizationService organizationService;
 
+    @Inject
+    private PagedSearchService pagedSearchService;
+
     public boolean contains(String clientDn) {
         return ldapEntryManager.contains(OxAuthClient.class, clientDn);
     }
@@ -131,6 +147,65 @@ public class ClientService implements Serializable {
 
     }
 
+    /**
+     * Remove sector identifier URI from clients. Only this attribute is deleted, client entries are not loaded
+     *
+     * @param clientDNs Client DNs
+     * @throws EntryPersistenceException if some of clients were not updated
+     */
+    public void removeSectorIdentifierUri(List<String> clientDNs) {
+        if ((clientDNs == null) || clientDNs.isEmpty()) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        int removed = 0;
+        int skipped = 0;
+        int failed = 0;
+        for (String clientDN : clientDNs) {
+            ResultCode resultCode;
+            try {
+                resultCode = deleteAttribute(clientDN, SECTOR_IDENTIFIER_URI_ATTRIBUTE);
+            } catch (RuntimeException ex) {
+                log.error("Failed to remove sector identifier URI from client '{}'", clientDN, ex);
+                resultCode = ResultCode.OTHER;
+            }
+
+            if (ResultCode.SUCCESS.equals(resultCode)) {
+                removed++;
+            } else if (ResultCode.NO_SUCH_ATTRIBUTE.equals(resultCode) || ResultCode.NO_SUCH_OBJECT.equals(resultCode)) {
+                // Client was removed or it doesn't reference sector identifier already
+                skipped++;
+            } else {
+                failed++;
+            }
+        }
+
+        log.info("Removed sector identifier URI from clients: '{}', removed: '{}', skipped: '{}', failed: '{}' in '{}' ms", clientDNs.size(),
+                removed, skipped, failed, System.currentTimeMillis() - startTime);
+
+        if (failed > 0) {
+            throw new EntryPersistenceException(String.format("Failed to remove sector identifier URI from %d clients", failed));
+        }
+    }
+
+    private ResultCode deleteAttribute(String dn, String attributeName) {
+        LDAPConnection connection = null;
+        try {
+            connection = ldapEntryManager.getOperationService().getConnection();
+            return connection.modify(dn, new Modification(ModificationType.DELETE, attributeName)).getResultCode();
+        } catch (LDAPException ex) {
+            if (!ResultCode.NO_SUCH_ATTRIBUTE.equals(ex.getResultCode()) && !ResultCode.NO_SUCH_OBJECT.equals(ex.getResultCode())) {
+                log.error("Failed to remove attribute '{}' from entry '{}'", attributeName, dn, ex);
+            }
+            return ex.getResultCode();
+        } finally {
+            if (connection != null) {
+                ldapEntryManager.getOperationService().releaseConnection(connection);
+            }
+        }
+    }
+
     /**
      * Update Custom client entry
      *
@@ -206,6 +281,25 @@ public class ClientService implements Serializable {
 		return ldapEntryManager.findEntries(getDnForClient(null), OxAuthClient.class, null);
 	}
 
+    /**
+     * Get page of clients ordered by inum
+     * 
+     * @param startIndex 1-based index of first client
+     * @param count Page size
+     * @return Page of clients
+     */
+    public ListViewResponse<OxAuthClient> getClients(int startIndex, int count) {
+		return ldapEntryManager.findListViewResponse(getDnForClient(null), OxAuthClient.class, Filter.createPresenceFilter(OxTrustConstants.inum),
+				startIndex, count, count, OxTrustConstants.inum, SortOrder.ASCENDING, null);
+	}
+
+    /**
+     * Pass all clients to handler as they arrive from LDAP
+     */
+    public void streamClients(EntryHandler<OxAuthClient> entryHandler) throws LDAPException, IOException {
+        pagedSearchService.searchEntries(getDnForClient(null), OxAuthClient.class, null, entryHandler);
+    }
+
     /**
      * returns oxAuthClient by Dn
      *
@@ -0,0 +1,206 @@
+/*
+ * oxTrust is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxtrust.ldap.service;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.apache.commons.lang.SerializationUtils;
+import org.gluu.persist.model.base.BaseEntry;
+import org.slf4j.Logger;
+import org.xdi.config.oxtrust.AppConfiguration;
+import org.xdi.util.StringHelper;
+
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+
+/**
+ * Applies entry changes to every cluster member. Every member gets its own copy
+ * of the entry with DN rewritten to the member inum, so the entry passed by
+ * caller is never changed. Writes to different members run concurrently.
+ * Writes which failed because of lost LDAP connection are retried, so
+ * operations should check entry state before write
+ */
+@ApplicationScoped
+@Named
+public class ClusterWriteService {
+
+	private static final int WRITER_THREADS = 4;
+	private static final int MAX_ATTEMPTS = 3;
+	private static final long RETRY_DELAY = 200L; // 200 milliseconds
+
+	@Inject
+	private Logger log;
+
+	@Inject
+	private AppConfiguration appConfiguration;
+
+	private ExecutorService writerExecutor;
+
+	@PostConstruct
+	public void init() {
+		this.writerExecutor = Executors.newFixedThreadPool(WRITER_THREADS, new ThreadFactory() {
+			private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "cluster-writer-" + threadNumber.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	@PreDestroy
+	public void destroy() {
+		this.writerExecutor.shutdownNow();
+	}
+
+	/**
+	 * Get inums of cluster members. Current appliance inum is returned if there
+	 * is no cluster configuration
+	 */
+	public String[] getClusterMembers() {
+		String[] clusterMembers = appConfiguration.getClusteredInums();
+		if ((clusterMembers == null) || (clusterMembers.length == 0)) {
+			log.debug("there is no cluster configuration. Assuming standalone appliance.");
+			clusterMembers = new String[] { appConfiguration.getApplianceInum() };
+		}
+
+		return clusterMembers;
+	}
+
+	/**
+	 * Apply operation to copies of entry, one per cluster member
+	 *
+	 * @param operationName
+	 *            Operation name for log messages
+	 * @param entry
+	 *            Entry with DN of current appliance
+	 * @param operation
+	 *            Operation to apply to every member copy
+	 * @throws RuntimeException
+	 *             First failure after all members were processed
+	 */
+	public <T extends BaseEntry & Serializable> void execute(String operationName, T entry, final ClusterOperation<T> operation) {
+		long startTime = System.currentTimeMillis();
+
+		String applianceInum = appConfiguration.getApplianceInum();
+		String[] clusterMembers = getClusterMembers();
+
+		Map<String, Future<Void>> results = new LinkedHashMap<String, Future<Void>>();
+		List<String> failedMembers = new ArrayList<String>();
+		RuntimeException failure = null;
+		for (String clusterMember : clusterMembers) {
+			@SuppressWarnings("unchecked")
+			final T clusteredEntry = (T) SerializationUtils.clone(entry);
+			clusteredEntry.setDn(StringHelper.replaceLast(entry.getDn(), applianceInum, clusterMember));
+
+			Callable<Void> task = new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					executeWithRetry(operation, clusteredEntry);
+					return null;
+				}
+			};
+
+			if (clusterMembers.length == 1) {
+				// No need to hand off single write
+				try {
+					task.call();
+				} catch (Exception ex) {
+					log.error("Failed to {} entry on cluster member '{}'", operationName, clusterMember, ex);
+					failedMembers.add(clusterMember);
+					failure = toRuntimeException(ex);
+				}
+			} else {
+				results.put(clusterMember, writerExecutor.submit(task));
+			}
+		}
+
+		for (Map.Entry<String, Future<Void>> result : results.entrySet()) {
+			try {
+				result.getValue().get();
+			} catch (ExecutionException ex) {
+				log.error("Failed to {} entry on cluster member '{}'", operationName, result.getKey(), ex.getCause());
+				failedMembers.add(result.getKey());
+				if (failure == null) {
+					failure = toRuntimeException(ex.getCause());
+				}
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for cluster members", ex);
+			}
+		}
+
+		log.debug("Applied {} of '{}' to '{}' cluster members in '{}' ms, failed members: {}", operationName, entry.getDn(),
+				clusterMembers.length, System.currentTimeMillis() - startTime, failedMembers);
+
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private <T extends BaseEntry> void executeWithRetry(ClusterOperation<T> operation, T entry) throws Exception {
+		for (int attempt = 1;; attempt++) {
+			try {
+				operation.execute(entry);
+				return;
+			} catch (Exception ex) {
+				if ((attempt >= MAX_ATTEMPTS) || !isConnectionFailure(ex)) {
+					throw ex;
+				}
+				log.warn("Attempt {} to write '{}' failed, retrying", attempt, entry.getDn(), ex);
+				Thread.sleep(RETRY_DELAY * attempt);
+			}
+		}
+	}
+
+	private boolean isConnectionFailure(Throwable ex) {
+		for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+			if (cause instanceof LDAPException) {
+				return !ResultCode.isConnectionUsable(((LDAPException) cause).getResultCode());
+			}
+		}
+
+		return false;
+	}
+
+	private RuntimeException toRuntimeException(Throwable ex) {
+		if (ex instanceof RuntimeException) {
+			return (RuntimeException) ex;
+		}
+
+		return new IllegalStateException(ex);
+	}
+
+	/**
+	 * Write applied to entry copy of single cluster member
+	 */
+	public interface ClusterOperation<T> {
+
+		void execute(T entry) throws Exception;
+
+	}
+
+}
@@ -27,7 +27,6 @@ import org.gluu.oxtrust.model.GluuValidationStatus;
 import org.gluu.oxtrust.service.cdi.event.EntityIdMonitoringEvent;
 import org.gluu.oxtrust.util.ServiceUtil;
 import org.gluu.persist.model.base.GluuStatus;
-import org.gluu.saml.metadata.SAMLMetadataParser;
 import org.slf4j.Logger;
 import org.xdi.config.oxtrust.AppConfiguration;
 import org.xdi.service.cdi.event.Scheduled;
@@ -62,6 +61,9 @@ public class EntityIDMonitoringService {
 	@Inject
 	private TrustService trustService;
 
+	@Inject
+	private MetadataIndexService metadataIndexService;
+
 	private AtomicBoolean isActive;
 
 	public void initTimer() {
@@ -110,7 +112,11 @@ public class EntityIDMonitoringService {
 				String idpMetadataFolder = appConfiguration.getShibboleth3IdpRootDir() + File.separator
 						+ Shibboleth3ConfService.SHIB3_IDP_METADATA_FOLDER + File.separator;
 				File metadataFile = new File(idpMetadataFolder + tr.getSpMetaDataFN());
-				List<String> entityIds = SAMLMetadataParser.getEntityIdFromMetadataFile(metadataFile);
+				if (!metadataIndexService.isValid(metadataFile)) {
+					log.warn("Metadata file '{}' of TR '{}' is corrupted or expired. Skipping it", metadataFile.getAbsolutePath(), tr.getInum());
+					continue;
+				}
+				List<String> entityIds = metadataIndexService.getEntityIds(metadataFile);
 
 				log.trace("entityIds from metadata: " + serviceUtil.iterableToString(entityIds));
 				Set<String> entityIdSet = new TreeSet<String>();
@@ -144,23 +150,25 @@ public class EntityIDMonitoringService {
 							log.trace("previouslyDisabled:" + previouslyDisabled);
 							if (isActive && !entityIdPresent) {
 								log.trace("no entityId found for part : " + part.getDn());
-								part.setStatus(GluuStatus.INACTIVE);
+								GluuSAMLTrustRelationship updatedPart = trustService.copyTrustRelationship(part);
+								updatedPart.setStatus(GluuStatus.INACTIVE);
 								List<String> log = new ArrayList<String>();
 								log.add(ENTITY_ID_VANISHED_MESSAGE + " : " + part.getEntityId());
-								part.setValidationLog(log);
-								trustService.updateTrustRelationship(part);
+								updatedPart.setValidationLog(log);
+								trustService.updateTrustRelationship(updatedPart);
 							}
 							if (entityIdPresent && previouslyDisabled) {
 								log.trace("entityId found for part : " + part.getDn());
-								part.setStatus(GluuStatus.ACTIVE);
+								GluuSAMLTrustRelationship updatedPart = trustService.copyTrustRelationship(part);
+								updatedPart.setStatus(GluuStatus.ACTIVE);
 								List<String> log = part.getValidationLog();
 								List<String> updatedLog = new ArrayList<String>(log);
 								updatedLog.remove(ENTITY_ID_VANISHED_MESSAGE + " : " + part.getEntityId());
 								if (updatedLog.isEmpty()) {
 									updatedLog = null;
 								}
-								part.setValidationLog(updatedLog);
-								trustService.updateTrustRelationship(part);
+								updatedPart.setValidationLog(updatedLog);
+								trustService.updateTrustRelationship(updatedPart);
 							}
 						}
 					}
@@ -6,7 +6,13 @@
 
 package org.gluu.oxtrust.ldap.service;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
@@ -14,11 +20,12 @@ import javax.inject.Named;
 
 import org.slf4j.Logger;
 
+import jxl.Cell;
 import jxl.Sheet;
 import jxl.Workbook;
 
 /**
- * Service class to work with Excel files
+ * Service class to work with Excel and CSV files
  * 
  * @author Yuriy Movchan Date: 02.15.2011
  */
@@ -26,34 +33,139 @@ import jxl.Workbook;
 @ApplicationScoped
 public class ExcelService {
 
+	private static final String CSV_EXTENSION = ".csv";
+
 	@Inject
 	private Logger log;
 
-	public org.gluu.oxtrust.model.table.Table readExcelFile(InputStream excelFile) {
-		org.gluu.oxtrust.model.table.Table result = null;
+	/**
+	 * Read first sheet of XLS file or CSV file row by row without building
+	 * in-memory table. CSV file is streamed line by line. XLS file is not
+	 * streamed: jxl loads whole workbook into memory before rows are passed to
+	 * handler
+	 * 
+	 * @param is
+	 *            File data
+	 * @param fileName
+	 *            File name. Files with csv extension are read as CSV
+	 * @param rowHandler
+	 *            Called for every row. Reading stops when it returns false
+	 * @return True if file was read without errors
+	 */
+	public boolean readRows(InputStream is, String fileName, RowHandler rowHandler) {
+		try {
+			if ((fileName != null) && fileName.toLowerCase().endsWith(CSV_EXTENSION)) {
+				readCsvRows(is, rowHandler);
+			} else {
+				readExcelRows(is, rowHandler);
+			}
+		} catch (Exception ex) {
+			log.error("Failed to read file '{}'", fileName, ex);
+			return false;
+		}
+
+		return true;
+	}
 
-		Workbook workbook = null;
+	private void readExcelRows(InputStream is, RowHandler rowHandler) throws Exception {
+		Workbook workbook = Workbook.getWorkbook(is);
 		try {
-			workbook = Workbook.getWorkbook(excelFile);
-			// Get the first sheet
 			Sheet sheet = workbook.getSheet(0);
 
-			result = new org.gluu.oxtrust.model.table.Table();
-			// Loop over columns and rows
-			for (int j = 0; j < sheet.getColumns(); j++) {
-				for (int i = 0; i < sheet.getRows(); i++) {
-					result.addCell(new org.gluu.oxtrust.model.table.Cell(j, i, sheet.getCell(j, i).getContents()));
+			int rows = sheet.getRows();
+			for (int i = 0; i < rows; i++) {
+				Cell[] cells = sheet.getRow(i);
+				List<String> values = new ArrayList<String>(cells.length);
+				for (Cell cell : cells) {
+					values.add(cell.getContents());
+				}
+
+				if (!rowHandler.handleRow(i, values)) {
+					break;
 				}
 			}
-		} catch (Exception ex) {
-			log.error("Failed to read Excel file", ex);
 		} finally {
-			if (workbook != null) {
-				workbook.close();
+			workbook.close();
+		}
+	}
+
+	private void readCsvRows(InputStream is, RowHandler rowHandler) throws Exception {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+
+		int row = 0;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if ((row == 0) && line.startsWith("\uFEFF")) {
+				line = line.substring(1);
+			}
+
+			List<String> values = parseCsvLine(line, reader);
+			if (!rowHandler.handleRow(row++, values)) {
+				break;
 			}
 		}
+	}
+
+	private List<String> parseCsvLine(String line, BufferedReader reader) throws IOException {
+		List<String> values = new ArrayList<String>();
+
+		StringBuilder value = new StringBuilder();
+		boolean quoted = false;
+		String current = line;
+		int i = 0;
+		while (true) {
+			if (i == current.length()) {
+				if (!quoted) {
+					break;
+				}
+
+				// Quoted value contains line break
+				current = reader.readLine();
+				if (current == null) {
+					break;
+				}
+				value.append('\n');
+				i = 0;
+				continue;
+			}
+
+			char ch = current.charAt(i++);
+			if (quoted) {
+				if (ch == '"') {
+					if ((i < current.length()) && (current.charAt(i) == '"')) {
+						value.append('"');
+						i++;
+					} else {
+						quoted = false;
+					}
+				} else {
+					value.append(ch);
+				}
+			} else if (ch == '"') {
+				quoted = true;
+			} else if (ch == ',') {
+				values.add(value.toString());
+				value.setLength(0);
+			} else {
+				value.append(ch);
+			}
+		}
+		values.add(value.toString());
+
+		return values;
+	}
+
+	public interface RowHandler {
+
+		/**
+		 * @param row
+		 *            0-based row index
+		 * @param values
+		 *            Cell values
+		 * @return False to stop reading
+		 */
+		boolean handleRow(int row, List<String> values) throws Exception;
 
-		return result;
 	}
 
 }
@@ -17,6 +17,7 @@ import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.gluu.oxtrust.ldap.service.ClusterWriteService.ClusterOperation;
 import org.gluu.oxtrust.model.GluuMetadataSourceType;
 import org.gluu.oxtrust.model.GluuSAMLFederationProposal;
 import org.gluu.oxtrust.util.OxTrustConstants;
@@ -44,20 +45,22 @@ public class FederationService implements Serializable {
 	@Inject
 	private AppConfiguration appConfiguration;
 
-	public void addFederationProposal(GluuSAMLFederationProposal federationProposal) {
-		String[] clusterMembers = appConfiguration.getClusteredInums();
-		String applianceInum = appConfiguration.getApplianceInum();
-		if (clusterMembers == null || clusterMembers.length == 0) {
-			clusterMembers = new String[] { applianceInum };
-		}
+	@Inject
+	private ClusterWriteService clusterWriteService;
 
-		String dn = federationProposal.getDn();
-		for (String clusterMember : clusterMembers) {
-			String clusteredDN = StringHelper.replaceLast(dn, applianceInum, clusterMember);
-			federationProposal.setDn(clusteredDN);
-			ldapEntryManager.persist(federationProposal);
-		}
-		federationProposal.setDn(dn);
+	public void addFederationProposal(GluuSAMLFederationProposal federationProposal) {
+		clusterWriteService.execute("persist", federationProposal, new ClusterOperation<GluuSAMLFederationProposal>() {
+			@Override
+			public void execute(GluuSAMLFederationProposal entry) {
+				GluuSAMLFederationProposal proposal = new GluuSAMLFederationProposal();
+				proposal.setDn(entry.getDn());
+				if (containsFederationProposal(proposal)) {
+					ldapEntryManager.merge(entry);
+				} else {
+					ldapEntryManager.persist(entry);
+				}
+			}
+		});
 	}
 
 	/**
@@ -124,19 +127,12 @@ public class FederationService implements Serializable {
 	}
 
 	public void updateFederationProposal(GluuSAMLFederationProposal federationProposal) {
-		String[] clusterMembers = appConfiguration.getClusteredInums();
-		String applianceInum = appConfiguration.getApplianceInum();
-		if (clusterMembers == null || clusterMembers.length == 0) {
-			clusterMembers = new String[] { applianceInum };
-		}
-
-		String dn = federationProposal.getDn();
-		for (String clusterMember : clusterMembers) {
-			String clusteredDN = StringHelper.replaceLast(dn, applianceInum, clusterMember);
-			federationProposal.setDn(clusteredDN);
-			ldapEntryManager.merge(federationProposal);
-		}
-		federationProposal.setDn(dn);
+		clusterWriteService.execute("merge", federationProposal, new ClusterOperation<GluuSAMLFederationProposal>() {
+			@Override
+			public void execute(GluuSAMLFederationProposal entry) {
+				ldapEntryManager.merge(entry);
+			}
+		});
 
 	}
 
@@ -164,19 +160,16 @@ public class FederationService implements Serializable {
 			shibboleth3ConfService.removeMetadataFile(federationProposal.getSpMetaDataFN());
 		}
 
-		String[] clusterMembers = appConfiguration.getClusteredInums();
-		String applianceInum = appConfiguration.getApplianceInum();
-		if (clusterMembers == null || clusterMembers.length == 0) {
-			clusterMembers = new String[] { applianceInum };
-		}
-
-		String dn = federationProposal.getDn();
-		for (String clusterMember : clusterMembers) {
-			String clusteredDN = StringHelper.replaceLast(dn, applianceInum, clusterMember);
-			federationProposal.setDn(clusteredDN);
-			ldapEntryManager.remove(federationProposal);
-		}
-		federationProposal.setDn(dn);
+		clusterWriteService.execute("remove", federationProposal, new ClusterOperation<GluuSAMLFederationProposal>() {
+			@Override
+			public void execute(GluuSAMLFederationProposal entry) {
+				GluuSAMLFederationProposal proposal = new GluuSAMLFederationProposal();
+				proposal.setDn(entry.getDn());
+				if (containsFederationProposal(proposal)) {
+					ldapEntryManager.remove(entry);
+				}
+			}
+		});
 	}
 
 	/**
@@ -6,14 +6,20 @@
 
 package org.gluu.oxtrust.ldap.service;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.gluu.oxtrust.ldap.service.PagedSearchService.EntryHandler;
 import org.gluu.oxtrust.model.GluuCustomPerson;
 import org.gluu.oxtrust.model.GluuGroup;
 import org.gluu.oxtrust.model.GluuGroupVisibility;
@@ -21,6 +27,8 @@ import org.gluu.oxtrust.util.OxTrustConstants;
 import org.gluu.persist.exception.mapping.EntryPersistenceException;
 import org.gluu.persist.exception.operation.DuplicateEntryException;
 import org.gluu.persist.ldap.impl.LdapEntryManager;
+import org.gluu.persist.model.ListViewResponse;
+import org.gluu.persist.model.SortOrder;
 import org.slf4j.Logger;
 import org.xdi.config.oxtrust.AppConfiguration;
 import org.xdi.util.ArrayHelper;
@@ -29,6 +37,12 @@ import org.xdi.util.StringHelper;
 
 import org.gluu.search.filter.Filter;
 
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModificationType;
+import com.unboundid.ldap.sdk.ResultCode;
+
 /**
  * Provides operations with groups
  * 
@@ -55,6 +69,9 @@ public class GroupService implements Serializable, IGroupService {
 	@Inject
 	private PersonService personService;
 
+	@Inject
+	private PagedSearchService pagedSearchService;
+
 	/* (non-Javadoc)
 	 * @see org.gluu.oxtrust.ldap.service.IGroupService#addGroup(org.gluu.oxtrust.model.GluuGroup)
 	 */
@@ -101,6 +118,90 @@ public class GroupService implements Serializable, IGroupService {
 		// clear references in gluuPerson entries
 	}
 
+	/* (non-Javadoc)
+	 * @see org.gluu.oxtrust.ldap.service.IGroupService#removeGroups(java.util.List)
+	 */
+	@Override
+	public void removeGroups(List<GluuGroup> groups) {
+		// Collect removed groups of every member to modify each person only once
+		Map<String, Set<String>> memberGroupDNs = new HashMap<String, Set<String>>();
+		for (GluuGroup group : groups) {
+			if (group.getMembers() == null) {
+				continue;
+			}
+
+			for (String memberDN : group.getMembers()) {
+				Set<String> groupDNs = memberGroupDNs.get(memberDN);
+				if (groupDNs == null) {
+					groupDNs = new HashSet<String>();
+					memberGroupDNs.put(memberDN, groupDNs);
+				}
+				groupDNs.add(group.getDn());
+			}
+		}
+
+		int failed = 0;
+		for (Map.Entry<String, Set<String>> entry : memberGroupDNs.entrySet()) {
+			if (!removeMemberOf(entry.getKey(), entry.getValue())) {
+				failed++;
+			}
+		}
+
+		if (failed > 0) {
+			throw new EntryPersistenceException(String.format("Failed to remove group references from %d persons", failed));
+		}
+
+		for (GluuGroup group : groups) {
+			ldapEntryManager.remove(group);
+		}
+	}
+
+	/**
+	 * Remove group DNs from memberOf attribute of person without loading person
+	 * entry
+	 * 
+	 * @return False if modification failed
+	 */
+	private boolean removeMemberOf(String personDN, Set<String> groupDNs) {
+		String[] values = groupDNs.toArray(new String[groupDNs.size()]);
+		ResultCode resultCode = deleteAttributeValues(personDN, OxTrustConstants.memberOf, values);
+		if (ResultCode.NO_SUCH_ATTRIBUTE.equals(resultCode) && (values.length > 1)) {
+			// Whole modification is rejected if any value is missing
+			for (String value : values) {
+				resultCode = deleteAttributeValues(personDN, OxTrustConstants.memberOf, value);
+				if (!isRemoved(resultCode)) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		return isRemoved(resultCode);
+	}
+
+	private boolean isRemoved(ResultCode resultCode) {
+		return ResultCode.SUCCESS.equals(resultCode) || ResultCode.NO_SUCH_ATTRIBUTE.equals(resultCode)
+				|| ResultCode.NO_SUCH_OBJECT.equals(resultCode);
+	}
+
+	private ResultCode deleteAttributeValues(String dn, String attributeName, String... values) {
+		LDAPConnection connection = null;
+		try {
+			connection = ldapEntryManager.getOperationService().getConnection();
+			return connection.modify(dn, new Modification(ModificationType.DELETE, attributeName, values)).getResultCode();
+		} catch (LDAPException ex) {
+			if (!ResultCode.NO_SUCH_ATTRIBUTE.equals(ex.getResultCode()) && !ResultCode.NO_SUCH_OBJECT.equals(ex.getResultCode())) {
+				log.error("Failed to remove values of attribute '{}' from entry '{}'", attributeName, dn, ex);
+			}
+			return ex.getResultCode();
+		} finally {
+			if (connection != null) {
+				ldapEntryManager.getOperationService().releaseConnection(connection);
+			}
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see org.gluu.oxtrust.ldap.service.IGroupService#getAllGroups()
 	 */
@@ -109,6 +210,17 @@ public class GroupService implements Serializable, IGroupService {
 		return ldapEntryManager.findEntries(getDnForGroup(null), GluuGroup.class, null);
 	}
 
+	/* (non-Javadoc)
+	 * @see org.gluu.oxtrust.ldap.service.IGroupService#getGroupsByOwner(java.lang.String)
+	 */
+	@Override
+	public List<GluuGroup> getGroupsByOwner(String ownerDn) {
+		Filter ownerFilter = Filter.createEqualityFilter(OxTrustConstants.owner, ownerDn);
+
+		return ldapEntryManager.findEntries(getDnForGroup(null), GluuGroup.class, ownerFilter,
+				new String[] { OxTrustConstants.inum, OxTrustConstants.member });
+	}
+
 	/* (non-Javadoc)
 	 * @see org.gluu.oxtrust.ldap.service.IGroupService#isMemberOrOwner(java.lang.String, java.lang.String)
 	 */
@@ -224,6 +336,23 @@ public class GroupService implements Serializable, IGroupService {
 		return ldapEntryManager.findEntries(getDnForGroup(null), GluuGroup.class, null, sizeLimit);
 	}
 
+	/* (non-Javadoc)
+	 * @see org.gluu.oxtrust.ldap.service.IGroupService#getGroups(int, int)
+	 */
+	@Override
+	public ListViewResponse<GluuGroup> getGroups(int startIndex, int count) {
+		return ldapEntryManager.findListViewResponse(getDnForGroup(null), GluuGroup.class, Filter.createPresenceFilter(OxTrustConstants.inum),
+				startIndex, count, count, OxTrustConstants.inum, SortOrder.ASCENDING, null);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.gluu.oxtrust.ldap.service.IGroupService#streamGroups(org.gluu.oxtrust.ldap.service.PagedSearchService.EntryHandler)
+	 */
+	@Override
+	public void streamGroups(EntryHandler<GluuGroup> entryHandler) throws LDAPException, IOException {
+		pagedSearchService.searchEntries(getDnForGroup(null), GluuGroup.class, null, entryHandler);
+	}
+
 	/* (non-Javadoc)
 	 * @see org.gluu.oxtrust.ldap.service.IGroupService#getVisibilityTypes()
 	 */
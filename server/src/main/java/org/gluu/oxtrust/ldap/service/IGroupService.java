@@ -5,10 +5,15 @@
  */
 package org.gluu.oxtrust.ldap.service;
 
+import java.io.IOException;
 import java.util.List;
 
+import org.gluu.oxtrust.ldap.service.PagedSearchService.EntryHandler;
 import org.gluu.oxtrust.model.GluuGroup;
 import org.gluu.oxtrust.model.GluuGroupVisibility;
+import org.gluu.persist.model.ListViewResponse;
+
+import com.unboundid.ldap.sdk.LDAPException;
 
 public interface IGroupService {
 
@@ -28,6 +33,15 @@ public interface IGroupService {
 	 */
 	public abstract void removeGroup(GluuGroup group);
 
+	/**
+	 * Remove group entries. Every member is updated once no matter how many of
+	 * the removed groups list it
+	 * 
+	 * @param groups
+	 *            Groups
+	 */
+	public abstract void removeGroups(List<GluuGroup> groups);
+
 	/**
 	 * Get all groups
 	 * 
@@ -35,6 +49,15 @@ public interface IGroupService {
 	 */
 	public abstract List<GluuGroup> getAllGroups();
 
+	/**
+	 * Get groups owned by person. Only inum and members of groups are loaded
+	 * 
+	 * @param ownerDn
+	 *            Person DN
+	 * @return List of groups
+	 */
+	public abstract List<GluuGroup> getGroupsByOwner(String ownerDn);
+
 	/**
 	 * Check if person is a member or owner of specified group
 	 * 
@@ -144,5 +167,21 @@ public interface IGroupService {
 
 	List<GluuGroup> getAllGroups(int sizeLimit);
 
+	/**
+	 * Get page of groups ordered by inum
+	 * 
+	 * @param startIndex 1-based index of first group
+	 * @param count Page size
+	 * @return Page of groups
+	 */
+	ListViewResponse<GluuGroup> getGroups(int startIndex, int count);
+
+	/**
+	 * Pass all groups to handler as they arrive from LDAP
+	 * 
+	 * @param entryHandler Handler of groups
+	 */
+	void streamGroups(EntryHandler<GluuGroup> entryHandler) throws LDAPException, IOException;
+
 	public abstract boolean isMemberOrOwner(String[] groupDNs, String personDN) throws Exception;
 }
\ No newline at end of file
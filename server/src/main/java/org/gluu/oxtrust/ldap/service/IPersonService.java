@@ -13,6 +13,7 @@ import org.gluu.oxtrust.model.GluuCustomPerson;
 import org.gluu.oxtrust.model.User;
 import org.gluu.persist.exception.operation.DuplicateEntryException;
 import org.gluu.persist.model.AttributeData;
+import org.gluu.persist.model.ListViewResponse;
 
 public interface IPersonService {
 
@@ -65,6 +66,20 @@ public interface IPersonService {
 	 */
 	public abstract List<GluuCustomPerson> searchPersons(String pattern) ;	
 
+	/**
+	 * Search persons by pattern page by page. Entries contain only
+	 * attributes needed to show them in list
+	 * 
+	 * @param pattern
+	 *            Pattern
+	 * @param startIndex
+	 *            1-based index of first entry
+	 * @param count
+	 *            Page size
+	 * @return Page of persons with total count of matching entries
+	 */
+	public abstract ListViewResponse<GluuCustomPerson> searchPersons(String pattern, int startIndex, int count);
+
 	/**
 	 * Search persons by sample object
 	 * 
@@ -145,6 +160,16 @@ public interface IPersonService {
 	 */
 	public abstract String generateInumForNewPerson();
 
+	/**
+	 * Generate block of unique inums for new persons. Candidates are checked
+	 * with few LDAP searches instead of one lookup per person
+	 * 
+	 * @param count
+	 *            Number of inums
+	 * @return List of new inums
+	 */
+	public abstract List<String> generateInumsForNewPersons(int count);
+
 	public abstract String generateInameForNewPerson(String uid);
 
 	/**
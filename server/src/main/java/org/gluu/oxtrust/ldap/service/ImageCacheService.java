@@ -0,0 +1,199 @@
+/*
+ * oxTrust is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxtrust.ldap.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.xdi.model.GluuImage;
+import org.xdi.util.StringHelper;
+
+/**
+ * Keeps organization logo and favicon in memory. Entries are keyed by image
+ * XML reference stored in organization entry and are reloaded when image
+ * file modification time or size changes
+ */
+@ApplicationScoped
+@Named
+public class ImageCacheService {
+
+	private static final String CACHE_CONTROL = "public, max-age=300";
+	private static final String PREVIEW_CACHE_CONTROL = "no-cache";
+
+	@Inject
+	private Logger log;
+
+	@Inject
+	private ImageService imageService;
+
+	private Map<String, CachedImage> images = new ConcurrentHashMap<String, CachedImage>();
+
+	/**
+	 * Get organization image
+	 *
+	 * @param imageXml
+	 *            Image XML reference from organization entry
+	 * @param logo
+	 *            True for logo, false for favicon
+	 * @param storeTemporary
+	 *            True to load image from temporary store (preview)
+	 * @return Cached image or null if reference is empty or image file
+	 *         doesn't exist
+	 */
+	public CachedImage getImage(String imageXml, boolean logo, boolean storeTemporary) throws Exception {
+		if (StringHelper.isEmpty(imageXml)) {
+			return null;
+		}
+
+		String key = (storeTemporary ? "temp_" : "") + (logo ? "logo_" : "favicon_") + imageXml;
+
+		CachedImage cachedImage = images.get(key);
+		if ((cachedImage != null) && (cachedImage.file.lastModified() == cachedImage.lastModified)
+				&& (cachedImage.file.length() == cachedImage.data.length)) {
+			return cachedImage;
+		}
+
+		GluuImage image = imageService.getGluuImageFromXML(imageXml);
+		if (image == null) {
+			return null;
+		}
+		image.setLogo(logo);
+		image.setStoreTemporary(storeTemporary);
+
+		File file = imageService.getSourceFile(image);
+		if ((file == null) || !file.isFile()) {
+			images.remove(key);
+			return null;
+		}
+
+		long lastModified = file.lastModified();
+		byte[] data = FileUtils.readFileToByteArray(file);
+		cachedImage = new CachedImage(file, data, image.getSourceName(), image.getSourceContentType(), lastModified,
+				storeTemporary ? PREVIEW_CACHE_CONTROL : CACHE_CONTROL);
+		images.put(key, cachedImage);
+		log.debug("Loaded organization image '{}' with size '{}'", file.getAbsolutePath(), data.length);
+
+		return cachedImage;
+	}
+
+	/**
+	 * Get image bundled with application
+	 */
+	public CachedImage getDefaultImage(ServletContext servletContext, String path, String name, String contentType) throws IOException {
+		String key = "default_" + path;
+
+		CachedImage cachedImage = images.get(key);
+		if (cachedImage != null) {
+			return cachedImage;
+		}
+
+		InputStream is = servletContext.getResourceAsStream(path);
+		if (is == null) {
+			return null;
+		}
+
+		byte[] data;
+		try {
+			data = IOUtils.toByteArray(is);
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+
+		cachedImage = new CachedImage(null, data, name, contentType, System.currentTimeMillis(), CACHE_CONTROL);
+		images.put(key, cachedImage);
+
+		return cachedImage;
+	}
+
+	/**
+	 * Send image with validators. Returns 304 if client has same version of
+	 * image
+	 */
+	public void sendImage(CachedImage image, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		response.setHeader("ETag", image.etag);
+		response.setDateHeader("Last-Modified", image.lastModified);
+		response.setHeader("Cache-Control", image.cacheControl);
+
+		if (isNotModified(image, request.getHeader("If-None-Match"))) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		response.setContentType(image.contentType);
+		response.setContentLength(image.data.length);
+		if (StringHelper.isNotEmpty(image.name)) {
+			response.setHeader("Content-Disposition", "inline; filename=\"" + image.name + "\"");
+		}
+
+		response.getOutputStream().write(image.data);
+		response.getOutputStream().flush();
+	}
+
+	private boolean isNotModified(CachedImage image, String ifNoneMatch) {
+		if (StringHelper.isEmpty(ifNoneMatch)) {
+			return false;
+		}
+
+		for (String etag : ifNoneMatch.split(",")) {
+			String value = etag.trim();
+			if ("*".equals(value) || image.etag.equals(value) || ("W/" + image.etag).equals(value)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	public void invalidate() {
+		images.clear();
+	}
+
+	public static class CachedImage {
+
+		private final File file;
+		private final byte[] data;
+		private final String name;
+		private final String contentType;
+		private final long lastModified;
+		private final String etag;
+		private final String cacheControl;
+
+		public CachedImage(File file, byte[] data, String name, String contentType, long lastModified, String cacheControl) {
+			this.file = file;
+			this.data = data;
+			this.name = name;
+			this.contentType = contentType;
+			this.lastModified = lastModified;
+			this.etag = "\"" + DigestUtils.md5Hex(data) + "\"";
+			this.cacheControl = cacheControl;
+		}
+
+		public int getSize() {
+			return data.length;
+		}
+
+		public String getEtag() {
+			return etag;
+		}
+
+	}
+
+}
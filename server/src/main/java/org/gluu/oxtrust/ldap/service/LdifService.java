@@ -12,7 +12,16 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.ejb.Stateless;
 import javax.inject.Inject;
@@ -21,13 +30,27 @@ import javax.inject.Named;
 import org.gluu.persist.exception.mapping.BaseMappingException;
 import org.gluu.persist.ldap.impl.LdapEntryManager;
 import org.gluu.persist.ldap.impl.LdifDataUtility;
+import org.gluu.oxtrust.util.OxTrustConstants;
 import org.slf4j.Logger;
 
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.Filter;
 import com.unboundid.ldap.sdk.LDAPConnection;
 import com.unboundid.ldap.sdk.LDAPException;
 import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.SearchRequest;
+import com.unboundid.ldap.sdk.SearchResult;
 import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.SearchResultListener;
+import com.unboundid.ldap.sdk.SearchResultReference;
+import com.unboundid.ldap.sdk.SearchScope;
+import com.unboundid.ldap.sdk.controls.SimplePagedResultsControl;
+import com.unboundid.ldif.LDIFAddChangeRecord;
+import com.unboundid.ldif.LDIFChangeRecord;
 import com.unboundid.ldif.LDIFReader;
+import com.unboundid.ldif.LDIFRecord;
 import com.unboundid.ldif.LDIFWriter;
 
 /**
@@ -50,24 +73,131 @@ public class LdifService implements Serializable {
 	@Inject
 	private AttributeService attributeService;
 
+	public static final int DEFAULT_IMPORT_THREADS = 4;
+
+	private static final int IMPORT_QUEUE_FACTOR = 64;
+	private static final int IMPORT_PROGRESS_INTERVAL = 10000;
+	private static final int EXPORT_PAGE_SIZE = 1000;
+
 	public ResultCode importLdifFileInLdap(InputStream is) throws LDAPException {
-		ResultCode result = ResultCode.UNAVAILABLE;
+		return importLdifFileInLdap(is, DEFAULT_IMPORT_THREADS);
+	}
 
-		LDAPConnection connection = ldapEntryManager.getOperationService().getConnection();
+	/**
+	 * Import LDIF records. Reader thread parses records and hands them to
+	 * workers which apply them over pooled connections. Record waits for
+	 * its parent entry if parent is still being imported, so parents are
+	 * always added before children
+	 * 
+	 * @param is
+	 *            LDIF data
+	 * @param threads
+	 *            Number of workers. Should not exceed LDAP connection pool
+	 *            size
+	 * @return SUCCESS if all records were applied, otherwise result code of
+	 *         last failure
+	 */
+	public ResultCode importLdifFileInLdap(InputStream is, int threads) throws LDAPException {
+		final LdifImportProgress progress = new LdifImportProgress();
+		final Map<DN, CountDownLatch> pendingEntries = new ConcurrentHashMap<DN, CountDownLatch>();
+		final Semaphore inFlight = new Semaphore(threads * IMPORT_QUEUE_FACTOR);
+
+		ExecutorService executorService = Executors.newFixedThreadPool(threads);
+		LDIFReader importLdifReader = new LDIFReader(is);
 		try {
-			LdifDataUtility ldifDataUtility = LdifDataUtility.instance();
-			LDIFReader importLdifReader = new LDIFReader(is);
+			while (true) {
+				final LDIFRecord ldifRecord = importLdifReader.readLDIFRecord();
+				if (ldifRecord == null) {
+					break;
+				}
+
+				final DN dn = ldifRecord.getParsedDN();
+				final DN parentDn = dn.getParent();
+				final CountDownLatch latch = new CountDownLatch(1);
+				final CountDownLatch previousLatch = pendingEntries.put(dn, latch);
 
-			result = ldifDataUtility.importLdifFile(connection, importLdifReader);
-			importLdifReader.close();
+				inFlight.acquire();
+				executorService.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							CountDownLatch parentLatch = (parentDn == null) ? null : pendingEntries.get(parentDn);
+							if (parentLatch != null) {
+								parentLatch.await();
+							}
+							// Keep order of changes of same entry
+							if (previousLatch != null) {
+								previousLatch.await();
+							}
+
+							applyLdifRecord(ldifRecord, progress);
+						} catch (InterruptedException ex) {
+							Thread.currentThread().interrupt();
+							progress.failed(ResultCode.USER_CANCELED);
+						} finally {
+							pendingEntries.remove(dn, latch);
+							latch.countDown();
+							inFlight.release();
+						}
+					}
+				});
+			}
+		} catch (InterruptedException ex) {
+			log.warn("Import of ldif file was interrupted");
+			Thread.currentThread().interrupt();
+			executorService.shutdownNow();
+			progress.failed(ResultCode.USER_CANCELED);
 		} catch (Exception ex) {
 			log.error("Failed to import ldif file: ", ex);
+			progress.failed(ResultCode.DECODING_ERROR);
 		} finally {
-			ldapEntryManager.getOperationService().releaseConnection(connection);
+			executorService.shutdown();
+			try {
+				executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+
+			try {
+				importLdifReader.close();
+			} catch (IOException ex) {
+				log.debug("Failed to close ldif reader", ex);
+			}
 		}
 
-		return result;
+		progress.log(true);
 
+		return progress.getResult();
+	}
+
+	private void applyLdifRecord(LDIFRecord ldifRecord, LdifImportProgress progress) {
+		LDIFChangeRecord changeRecord;
+		if (ldifRecord instanceof LDIFChangeRecord) {
+			changeRecord = (LDIFChangeRecord) ldifRecord;
+		} else {
+			changeRecord = new LDIFAddChangeRecord((Entry) ldifRecord);
+		}
+
+		LDAPConnection connection = null;
+		try {
+			connection = ldapEntryManager.getOperationService().getConnection();
+			changeRecord.processChange(connection);
+			progress.applied();
+		} catch (LDAPException ex) {
+			if (ResultCode.ENTRY_ALREADY_EXISTS.equals(ex.getResultCode())) {
+				log.debug("Entry '{}' already exists", changeRecord.getDN());
+				progress.skipped();
+			} else {
+				log.error("Failed to import ldif record '{}'", changeRecord.getDN(), ex);
+				progress.failed(ex.getResultCode());
+			}
+		} finally {
+			if (connection != null) {
+				ldapEntryManager.getOperationService().releaseConnection(connection);
+			}
+		}
+
+		progress.log(false);
 	}
 
 	public ResultCode validateLdifFile(InputStream is, String dn) throws LDAPException {
@@ -86,33 +216,118 @@ public class LdifService implements Serializable {
 
 	}
 	
-	public void exportLDIFFile(List<String> checkedItems, OutputStream output)
-			throws LDAPException {
-		List<SearchResultEntry> result = null;
+	public void exportLDIFFile(List<String> checkedItems, OutputStream output) throws LDAPException {
+		if ((checkedItems == null) || checkedItems.isEmpty()) {
+			return;
+		}
+
+		List<Filter> inumFilters = new ArrayList<Filter>();
+		for (String checkedItem : checkedItems) {
+			inumFilters.add(Filter.createEqualityFilter(OxTrustConstants.inum, checkedItem));
+		}
+
+		exportLDIFFile(attributeService.getDnForAttribute(null), Filter.createORFilter(inumFilters), output);
+	}
+
+	/**
+	 * Write entries to LDIF as they arrive from paged search. Only one page
+	 * is held in memory at any time
+	 */
+	public void exportLDIFFile(String baseDn, Filter filter, OutputStream output) throws LDAPException {
+		final LDIFWriter ldifWriter = new LDIFWriter(output);
+		final AtomicLong exported = new AtomicLong();
+		final IOException[] writeException = new IOException[1];
+
+		SearchResultListener searchResultListener = new SearchResultListener() {
+
+			private static final long serialVersionUID = -3180585446371383436L;
+
+			@Override
+			public void searchEntryReturned(SearchResultEntry searchEntry) {
+				if (writeException[0] != null) {
+					return;
+				}
+
+				try {
+					ldifWriter.writeEntry(searchEntry);
+					exported.incrementAndGet();
+				} catch (IOException ex) {
+					writeException[0] = ex;
+				}
+			}
+
+			@Override
+			public void searchReferenceReturned(SearchResultReference searchReference) {
+			}
+		};
+
+		long startTime = System.currentTimeMillis();
 		LDAPConnection connection = ldapEntryManager.getOperationService().getConnection();
 		try {
-			LdifDataUtility ldifDataUtility = LdifDataUtility.instance();
-			result = ldifDataUtility.getAttributeResultEntryLDIF(connection,checkedItems, attributeService.getDnForAttribute(null));
-		} catch (Exception ex) {
-			log.error("Failed to export ldif file: ", ex);
+			ASN1OctetString cookie = null;
+			do {
+				SearchRequest searchRequest = new SearchRequest(searchResultListener, baseDn, SearchScope.SUB, filter);
+				searchRequest.setControls(new SimplePagedResultsControl(EXPORT_PAGE_SIZE, cookie));
+
+				SearchResult searchResult = connection.search(searchRequest);
+				if (writeException[0] != null) {
+					throw new BaseMappingException("Error writing to file, try again", writeException[0]);
+				}
+				ldifWriter.flush();
+
+				cookie = null;
+				SimplePagedResultsControl responseControl = SimplePagedResultsControl.get(searchResult);
+				if ((responseControl != null) && responseControl.moreResultsToReturn()) {
+					cookie = responseControl.getCookie();
+				}
+			} while (cookie != null);
+		} catch (IOException ex) {
+			throw new BaseMappingException("Error writing to file, try again", ex);
 		} finally {
 			ldapEntryManager.getOperationService().releaseConnection(connection);
 		}
 
-		if (result != null && result.size() > 0) {
-			// Write all of the matching entries to LDIF.
-			LDIFWriter ldifWriter;
-			try {
-				ldifWriter = new LDIFWriter(output);
-				for (SearchResultEntry entry : result) {
-					ldifWriter.writeEntry(entry);
-				}
+		log.info("Exported '{}' entries from '{}' in '{}' ms", exported.get(), baseDn, System.currentTimeMillis() - startTime);
+	}
+
+	private class LdifImportProgress {
+
+		private final long startTime = System.currentTimeMillis();
+
+		private final AtomicLong applied = new AtomicLong();
+		private final AtomicLong skipped = new AtomicLong();
+		private final AtomicLong failed = new AtomicLong();
+
+		private volatile ResultCode result = ResultCode.SUCCESS;
+
+		public void applied() {
+			applied.incrementAndGet();
+		}
 
-				ldifWriter.close();
-			} catch (IOException e) {
-				throw new BaseMappingException("Error writing to file, try again", e);
+		public void skipped() {
+			skipped.incrementAndGet();
+		}
+
+		public void failed(ResultCode resultCode) {
+			failed.incrementAndGet();
+			this.result = resultCode;
+		}
+
+		public ResultCode getResult() {
+			return result;
+		}
+
+		public void log(boolean finished) {
+			long processed = applied.get() + skipped.get() + failed.get();
+			if (!finished && ((processed == 0) || (processed % IMPORT_PROGRESS_INTERVAL != 0))) {
+				return;
 			}
+
+			long duration = Math.max(1, System.currentTimeMillis() - startTime);
+			LdifService.this.log.info("{} ldif records: '{}', applied: '{}', skipped: '{}', failed: '{}', '{}' records/s",
+					finished ? "Imported" : "Importing", processed, applied.get(), skipped.get(), failed.get(), processed * 1000 / duration);
 		}
+
 	}
 
 }
@@ -8,7 +8,8 @@ import javax.inject.Named;
 
 import org.gluu.oxtrust.model.GluuCustomPerson;
 import org.gluu.oxtrust.model.GluuGroup;
-import org.xdi.util.StringHelper;
+import org.gluu.oxtrust.service.MetricService;
+import org.slf4j.Logger;
 
 import javax.ejb.Stateless;
 
@@ -17,24 +18,32 @@ import javax.ejb.Stateless;
 public class MemberService implements Serializable {
 
 	private static final long serialVersionUID = -3545641785714134933L;
-	
+
+	@Inject
+	private Logger log;
+
 	@Inject
 	private GroupService groupService;
-	
+
 	@Inject
 	private PersonService personService;
 
+	@Inject
+	private MetricService metricService;
+
 	public void removePerson(GluuCustomPerson person) {
+		long startTime = System.currentTimeMillis();
+
 		// TODO: Do we realy need to remove group if owner is removed?
-		List<GluuGroup> groups = groupService.getAllGroups();
-		for (GluuGroup group : groups) {
-			if (StringHelper.equalsIgnoreCase(group.getOwner(), person.getDn())) {
-				groupService.removeGroup(group);
-			}
-		}
+		List<GluuGroup> groups = groupService.getGroupsByOwner(person.getDn());
+		groupService.removeGroups(groups);
 
 		// Remove person
 		personService.removePerson(person);
+
+		long duration = System.currentTimeMillis() - startTime;
+		metricService.updateTimer("remove-person", duration);
+		log.info("Removed person '{}' and '{}' owned groups in '{}' ms", person.getDn(), groups.size(), duration);
 	}
 
 }
@@ -0,0 +1,172 @@
+/*
+ * oxTrust is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxtrust.ldap.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.URI;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.protocol.Protocol;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.xdi.util.StringHelper;
+
+/**
+ * Downloads remote SP and federation metadata directly into files. Validators
+ * (ETag and Last-Modified) of every downloaded URL are kept per target file so
+ * next download of the same URL into the same target is conditional and
+ * unchanged metadata is not transferred again
+ */
+@ApplicationScoped
+@Named
+public class MetadataDownloadService {
+
+	private static final String ACCEPT = "application/xml, text/xml";
+	private static final String GZIP_ENCODING = "gzip";
+
+	@Inject
+	private Logger log;
+
+	private Map<String, Validators> validators = new ConcurrentHashMap<String, Validators>();
+
+	public enum DownloadStatus {
+		DOWNLOADED, NOT_MODIFIED, FAILED
+	}
+
+	/**
+	 * Download metadata into file
+	 *
+	 * @param url
+	 *            Metadata URL
+	 * @param file
+	 *            File to write metadata to. It's not touched if metadata was
+	 *            not modified
+	 * @param targetFile
+	 *            File which keeps metadata after download. Validators are kept
+	 *            per URL and target file
+	 * @param conditional
+	 *            True if caller still has validated metadata from previous
+	 *            download of this URL, so request can be conditional
+	 * @param https
+	 *            Protocol to use for HTTPS URLs
+	 */
+	public DownloadStatus download(String url, File file, File targetFile, boolean conditional, Protocol https) {
+		long startTime = System.currentTimeMillis();
+		String validatorsKey = url + " " + targetFile.getAbsolutePath();
+
+		GetMethod method = null;
+		InputStream is = null;
+		OutputStream os = null;
+		try {
+			URI uri = new URI(url.contains("://") ? url : "http://" + url, false);
+			HostConfiguration hostConfiguration = new HostConfiguration();
+			if ("https".equalsIgnoreCase(uri.getScheme())) {
+				int port = uri.getPort() == -1 ? https.getDefaultPort() : uri.getPort();
+				hostConfiguration.setHost(uri.getHost(), port, https);
+			} else {
+				hostConfiguration.setHost(uri);
+			}
+
+			String pathQuery = uri.getEscapedPathQuery();
+			method = new GetMethod(StringHelper.isEmpty(pathQuery) ? "/" : pathQuery);
+			method.setRequestHeader("Accept", ACCEPT);
+			method.setRequestHeader("Accept-Encoding", GZIP_ENCODING);
+
+			Validators current = validators.get(validatorsKey);
+			if (conditional && (current != null)) {
+				if (current.etag != null) {
+					method.setRequestHeader("If-None-Match", current.etag);
+				}
+				if (current.lastModified != null) {
+					method.setRequestHeader("If-Modified-Since", current.lastModified);
+				}
+			}
+
+			int status = new HttpClient().executeMethod(hostConfiguration, method);
+			if (status == HttpStatus.SC_NOT_MODIFIED) {
+				log.info("Metadata from '{}' was not modified, checked in '{}' ms", url, System.currentTimeMillis() - startTime);
+				return DownloadStatus.NOT_MODIFIED;
+			}
+
+			if (status != HttpStatus.SC_OK) {
+				log.error("Failed to download metadata from '{}', status: '{}'", url, status);
+				return DownloadStatus.FAILED;
+			}
+
+			is = method.getResponseBodyAsStream();
+			if (is == null) {
+				log.error("Metadata from '{}' is empty", url);
+				return DownloadStatus.FAILED;
+			}
+
+			Header contentEncoding = method.getResponseHeader("Content-Encoding");
+			if ((contentEncoding != null) && GZIP_ENCODING.equalsIgnoreCase(contentEncoding.getValue())) {
+				is = new GZIPInputStream(is);
+			}
+
+			os = FileUtils.openOutputStream(file);
+			long size = IOUtils.copyLarge(is, os);
+			os.flush();
+
+			if (size == 0) {
+				log.error("Metadata from '{}' is empty", url);
+				return DownloadStatus.FAILED;
+			}
+
+			validators.put(validatorsKey, new Validators(getHeaderValue(method, "ETag"), getHeaderValue(method, "Last-Modified")));
+			log.info("Downloaded '{}' bytes of metadata from '{}' in '{}' ms", size, url, System.currentTimeMillis() - startTime);
+
+			return DownloadStatus.DOWNLOADED;
+		} catch (IOException ex) {
+			log.error("Failed to download metadata from '{}'", url, ex);
+			return DownloadStatus.FAILED;
+		} finally {
+			IOUtils.closeQuietly(os);
+			IOUtils.closeQuietly(is);
+			if (method != null) {
+				method.releaseConnection();
+			}
+		}
+	}
+
+	private String getHeaderValue(GetMethod method, String name) {
+		Header header = method.getResponseHeader(name);
+		if ((header == null) || StringHelper.isEmpty(header.getValue())) {
+			return null;
+		}
+
+		return header.getValue();
+	}
+
+	private static class Validators {
+
+		private final String etag;
+		private final String lastModified;
+
+		public Validators(String etag, String lastModified) {
+			this.etag = etag;
+			this.lastModified = lastModified;
+		}
+
+	}
+
+}
@@ -0,0 +1,286 @@
+/*
+ * oxTrust is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxtrust.ldap.service;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.xdi.util.StringHelper;
+
+/**
+ * Index of SAML metadata files. Each file is parsed once with streaming
+ * reader and result is kept by file path, size, modification time and
+ * content hash. Files with same content (e.g. metadata moved from temporary
+ * folder after validation) share one parsed entry
+ */
+@ApplicationScoped
+@Named
+public class MetadataIndexService {
+
+	private static final String ENTITY_DESCRIPTOR = "EntityDescriptor";
+	private static final String ENTITIES_DESCRIPTOR = "EntitiesDescriptor";
+	private static final String ENTITY_ID = "entityID";
+	private static final String VALID_UNTIL = "validUntil";
+
+	@Inject
+	private Logger log;
+
+	private XMLInputFactory xmlInputFactory;
+
+	private Map<String, MetadataFileStat> filesByPath = new ConcurrentHashMap<String, MetadataFileStat>();
+
+	private Map<String, MetadataInfo> metadataByHash = new ConcurrentHashMap<String, MetadataInfo>();
+
+	@PostConstruct
+	public void init() {
+		this.xmlInputFactory = XMLInputFactory.newInstance();
+		this.xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		this.xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		this.xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+	}
+
+	/**
+	 * Get entityIds defined in metadata file
+	 *
+	 * @param metadataFile
+	 *            Metadata file
+	 * @return List of entityIds or null if file is missing or corrupted
+	 */
+	public List<String> getEntityIds(File metadataFile) {
+		MetadataInfo metadataInfo = getMetadataInfo(metadataFile);
+		if ((metadataInfo == null) || !metadataInfo.parsed) {
+			return null;
+		}
+
+		return new ArrayList<String>(metadataInfo.entityIds);
+	}
+
+	/**
+	 * Get SHA-256 hash of metadata file content
+	 *
+	 * @return Hash or null if file is missing or can't be read
+	 */
+	public String getHash(File metadataFile) {
+		if (getMetadataInfo(metadataFile) == null) {
+			return null;
+		}
+
+		MetadataFileStat fileStat = filesByPath.get(metadataFile.getAbsolutePath());
+
+		return (fileStat == null) ? null : fileStat.hash;
+	}
+
+	/**
+	 * Check if metadata file contains EntitiesDescriptor element
+	 */
+	public boolean isFederation(File metadataFile) {
+		MetadataInfo metadataInfo = getMetadataInfo(metadataFile);
+
+		return (metadataInfo != null) && metadataInfo.federation;
+	}
+
+	/**
+	 * Check if metadata file is well formed and not expired according to
+	 * validUntil attribute of root element
+	 */
+	public boolean isValid(File metadataFile) {
+		MetadataInfo metadataInfo = getMetadataInfo(metadataFile);
+		if ((metadataInfo == null) || !metadataInfo.parsed) {
+			return false;
+		}
+
+		return (metadataInfo.validUntil == null) || metadataInfo.validUntil.after(Calendar.getInstance());
+	}
+
+	/**
+	 * Forget stat of replaced or removed file. Parsed metadata is kept till
+	 * next cleanup, so content moved to another path is not parsed again
+	 */
+	public void invalidate(File metadataFile) {
+		filesByPath.remove(metadataFile.getAbsolutePath());
+	}
+
+	private MetadataInfo getMetadataInfo(File metadataFile) {
+		String path = metadataFile.getAbsolutePath();
+		if (!metadataFile.isFile()) {
+			if (filesByPath.remove(path) != null) {
+				removeUnreferencedMetadata();
+			}
+			return null;
+		}
+
+		long lastModified = metadataFile.lastModified();
+		long length = metadataFile.length();
+
+		MetadataFileStat fileStat = filesByPath.get(path);
+		if ((fileStat != null) && (fileStat.lastModified == lastModified) && (fileStat.length == length)) {
+			MetadataInfo metadataInfo = metadataByHash.get(fileStat.hash);
+			if (metadataInfo != null) {
+				return metadataInfo;
+			}
+		}
+
+		String hash = calculateHash(metadataFile);
+		if (hash == null) {
+			return null;
+		}
+
+		MetadataInfo metadataInfo = metadataByHash.get(hash);
+		if (metadataInfo == null) {
+			metadataInfo = parseMetadata(metadataFile);
+			metadataByHash.put(hash, metadataInfo);
+		}
+
+		if (filesByPath.put(path, new MetadataFileStat(hash, lastModified, length)) != null) {
+			removeUnreferencedMetadata();
+		}
+
+		return metadataInfo;
+	}
+
+	private String calculateHash(File metadataFile) {
+		InputStream is = null;
+		try {
+			is = new FileInputStream(metadataFile);
+			return DigestUtils.sha256Hex(is);
+		} catch (IOException ex) {
+			log.error("Failed to read metadata file '{}'", metadataFile.getAbsolutePath(), ex);
+			return null;
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+	}
+
+	private MetadataInfo parseMetadata(File metadataFile) {
+		long startTime = System.currentTimeMillis();
+
+		List<String> entityIds = new ArrayList<String>();
+		boolean federation = false;
+		Calendar validUntil = null;
+		boolean root = true;
+
+		InputStream is = null;
+		XMLStreamReader reader = null;
+		try {
+			is = new BufferedInputStream(new FileInputStream(metadataFile));
+			reader = xmlInputFactory.createXMLStreamReader(is);
+			while (reader.hasNext()) {
+				if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+					continue;
+				}
+
+				String localName = reader.getLocalName();
+				if (root) {
+					root = false;
+					String validUntilValue = reader.getAttributeValue(null, VALID_UNTIL);
+					if (StringHelper.isNotEmpty(validUntilValue)) {
+						try {
+							validUntil = DatatypeConverter.parseDateTime(validUntilValue);
+						} catch (IllegalArgumentException ex) {
+							log.warn("Metadata file '{}' contains invalid validUntil '{}'", metadataFile.getAbsolutePath(), validUntilValue);
+						}
+					}
+				}
+
+				if (ENTITIES_DESCRIPTOR.equals(localName)) {
+					federation = true;
+				} else if (ENTITY_DESCRIPTOR.equals(localName)) {
+					String entityId = reader.getAttributeValue(null, ENTITY_ID);
+					if (StringHelper.isNotEmpty(entityId)) {
+						entityIds.add(entityId);
+					}
+				}
+			}
+		} catch (IOException ex) {
+			log.error("Failed to read metadata file '{}'", metadataFile.getAbsolutePath(), ex);
+			return MetadataInfo.CORRUPTED;
+		} catch (XMLStreamException ex) {
+			log.error("Failed to parse metadata file '{}'", metadataFile.getAbsolutePath(), ex);
+			return MetadataInfo.CORRUPTED;
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (XMLStreamException ex) {
+					log.debug("Failed to close metadata reader", ex);
+				}
+			}
+			IOUtils.closeQuietly(is);
+		}
+
+		log.debug("Parsed metadata file '{}' in '{}' ms. EntityIds count: '{}'", metadataFile.getAbsolutePath(),
+				System.currentTimeMillis() - startTime, entityIds.size());
+
+		return new MetadataInfo(true, Collections.unmodifiableList(entityIds), federation, validUntil);
+	}
+
+	private synchronized void removeUnreferencedMetadata() {
+		Set<String> usedHashes = new HashSet<String>();
+		for (MetadataFileStat fileStat : filesByPath.values()) {
+			usedHashes.add(fileStat.hash);
+		}
+
+		metadataByHash.keySet().retainAll(usedHashes);
+	}
+
+	private static class MetadataFileStat {
+
+		private final String hash;
+		private final long lastModified;
+		private final long length;
+
+		public MetadataFileStat(String hash, long lastModified, long length) {
+			this.hash = hash;
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+
+	}
+
+	private static class MetadataInfo {
+
+		private static final MetadataInfo CORRUPTED = new MetadataInfo(false, Collections.<String>emptyList(), false, null);
+
+		private final boolean parsed;
+		private final List<String> entityIds;
+		private final boolean federation;
+		private final Calendar validUntil;
+
+		public MetadataInfo(boolean parsed, List<String> entityIds, boolean federation, Calendar validUntil) {
+			this.parsed = parsed;
+			this.entityIds = entityIds;
+			this.federation = federation;
+			this.validUntil = validUntil;
+		}
+
+	}
+
+}
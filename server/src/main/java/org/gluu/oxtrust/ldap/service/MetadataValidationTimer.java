@@ -8,29 +8,46 @@ package org.gluu.oxtrust.ldap.service;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.xdi.service.cdi.async.Asynchronous;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Event;
 import javax.enterprise.event.Observes;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.xml.validation.Schema;
 
+import org.apache.commons.io.IOUtils;
 import org.gluu.oxtrust.model.GluuSAMLTrustRelationship;
 import org.gluu.oxtrust.model.GluuValidationStatus;
 import org.gluu.oxtrust.service.cdi.event.MetadataValidationEvent;
 import org.gluu.persist.model.base.GluuStatus;
-import org.gluu.saml.metadata.SAMLMetadataParser;
 import org.slf4j.Logger;
 import org.xdi.config.oxtrust.AppConfiguration;
 import org.xdi.service.cdi.event.Scheduled;
@@ -39,6 +56,12 @@ import org.xdi.service.timer.schedule.TimerSchedule;
 import org.xdi.util.StringHelper;
 import org.xdi.xml.GluuErrorHandler;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
 /**
  * @author �Oleksiy Tataryn�
  * @author Yuriy Mochan
@@ -50,6 +73,14 @@ public class MetadataValidationTimer {
 
 	private final static int DEFAULT_INTERVAL = 60; // 60 seconds
 
+	private final static int VALIDATION_THREADS = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+
+	private final static long RETRY_BASE_DELAY = DEFAULT_INTERVAL * 1000L;
+
+	private final static long RETRY_MAX_DELAY = 30 * 60 * 1000L; // 30 minutes
+
+	private final static String METRICS_JMX_DOMAIN = "org.gluu.oxtrust";
+
 	@Inject
 	private Logger log;
 
@@ -65,20 +96,72 @@ public class MetadataValidationTimer {
 	@Inject
 	private Shibboleth3ConfService shibboleth3ConfService;
 
+	@Inject
+	private MetadataIndexService metadataIndexService;
+
 	private AtomicBoolean isActive;
 
 	private LinkedBlockingQueue<String> metadataUpdates;
 
+	private Set<String> processingFiles;
+
+	private Map<String, RetryState> retryStates;
+
+	private Map<String, Long> queueSequences;
+
+	private AtomicLong queueSequence;
+
+	private ExecutorService validationExecutor;
+
+	private volatile Schema metadataSchema;
+
+	private JmxReporter metricsReporter;
+
+	private Timer validationLatency;
+
 	@PostConstruct
 	public void init() {
 		this.isActive = new AtomicBoolean(true);
 		try {
 			this.metadataUpdates = new LinkedBlockingQueue<String>();
+			this.processingFiles = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+			this.retryStates = new ConcurrentHashMap<String, RetryState>();
+			this.queueSequences = new ConcurrentHashMap<String, Long>();
+			this.queueSequence = new AtomicLong();
+			this.validationExecutor = Executors.newFixedThreadPool(VALIDATION_THREADS, new ThreadFactory() {
+				private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "metadata-validation-" + threadNumber.getAndIncrement());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+			// Queue depth and validation latency are published as MBeans
+			MetricRegistry metricRegistry = new MetricRegistry();
+			this.validationLatency = metricRegistry.timer(MetricRegistry.name(MetadataValidationTimer.class, "validation-latency"));
+			metricRegistry.register(MetricRegistry.name(MetadataValidationTimer.class, "queue-depth"), new Gauge<Integer>() {
+				@Override
+				public Integer getValue() {
+					return getQueueDepth();
+				}
+			});
+			this.metricsReporter = JmxReporter.forRegistry(metricRegistry).inDomain(METRICS_JMX_DOMAIN)
+					.convertDurationsTo(TimeUnit.MILLISECONDS).build();
+			this.metricsReporter.start();
 		} finally {
 			this.isActive.set(false);
 		}
 	}
 
+	@PreDestroy
+	public void destroy() {
+		this.validationExecutor.shutdownNow();
+		this.metricsReporter.stop();
+	}
+
 	public void initTimer() {
 		log.debug("Initializing Metadata Validation Timer");
 
@@ -122,6 +205,10 @@ public class MetadataValidationTimer {
 
 	public void queue(String fileName) {
 		synchronized (metadataUpdates) {
+			// Retried file keeps sequence of its first queueing
+			if (!queueSequences.containsKey(fileName)) {
+				queueSequences.put(fileName, queueSequence.incrementAndGet());
+			}
 			metadataUpdates.add(fileName);
 		}
 	}
@@ -133,10 +220,19 @@ public class MetadataValidationTimer {
 					return true;
 				}
 			}
+			for (String filename : processingFiles) {
+				if (filename.contains(gluuSAMLspMetaDataFN)) {
+					return true;
+				}
+			}
 			return false;
 		}
 	}
 
+	public int getQueueDepth() {
+		return metadataUpdates.size() + processingFiles.size();
+	}
+
 	private void regenerateConfigurationFiles() {
 		boolean createConfig = appConfiguration.isConfigGeneration();
 		log.info("IDP config generation is set to " + createConfig);
@@ -151,123 +247,237 @@ public class MetadataValidationTimer {
 	}
 
 	/**
+	 * Validate all queued metadata files which are ready for processing in parallel
+	 * 
 	 * @param shib3IdpTempmetadataFolder
 	 * @param shib3IdpMetadataFolder
+	 * @return True if at least one metadata file was validated and IDP configuration should be regenerated
 	 */
-	private boolean validateMetadata(String shib3IdpTempmetadataFolder, String shib3IdpMetadataFolder) {
-		boolean result = false;
+	private boolean validateMetadata(final String shib3IdpTempmetadataFolder, final String shib3IdpMetadataFolder) {
 		log.trace("Starting metadata validation process.");
 
-		String metadataFN = null;
+		Set<String> batch = new LinkedHashSet<String>();
+		List<String> superseded = new ArrayList<String>();
 		synchronized (metadataUpdates) {
-			if (!metadataUpdates.isEmpty()) {
-				metadataFN = metadataUpdates.poll();
+			// Files of the same TR would race on target file and TR entry. Only
+			// the most recently queued one is validated
+			Map<String, String> latestByTarget = new LinkedHashMap<String, String>();
+			String metadataFN;
+			while ((metadataFN = metadataUpdates.poll()) != null) {
+				if (StringHelper.isEmpty(metadataFN)) {
+					continue;
+				}
+
+				String targetName = getTargetName(metadataFN);
+				String latestFN = latestByTarget.get(targetName);
+				if (metadataFN.equals(latestFN)) {
+					continue;
+				}
+
+				if ((latestFN == null) || (getQueueSequence(metadataFN) > getQueueSequence(latestFN))) {
+					latestByTarget.put(targetName, metadataFN);
+					if (latestFN != null) {
+						superseded.add(latestFN);
+					}
+				} else {
+					superseded.add(metadataFN);
+				}
+			}
+
+			List<String> deferred = new ArrayList<String>();
+			long now = System.currentTimeMillis();
+			for (String latestFN : latestByTarget.values()) {
+				RetryState retryState = retryStates.get(latestFN);
+				if ((retryState != null) && (retryState.nextAttemptTime > now)) {
+					deferred.add(latestFN);
+				} else {
+					batch.add(latestFN);
+				}
 			}
+			metadataUpdates.addAll(deferred);
+			processingFiles.addAll(batch);
+		}
+
+		for (String supersededFN : superseded) {
+			discardMetadataFile(supersededFN, shib3IdpTempmetadataFolder);
+		}
+
+		if (batch.isEmpty()) {
+			return false;
 		}
 
-		synchronized (this) {
-			if (StringHelper.isNotEmpty(metadataFN)) {
-				File metadata = new File(shib3IdpTempmetadataFolder + metadataFN);
-				File target = new File(shib3IdpMetadataFolder + metadataFN.replaceAll(".{4}\\..{4}$", ""));
-				GluuSAMLTrustRelationship tr = trustService.getTrustByUnpunctuatedInum(
-						metadataFN.split("-" + Shibboleth3ConfService.SHIB3_IDP_SP_METADATA_FILE)[0]);
-				if (tr == null) {
-					metadataUpdates.add(metadataFN);
-					return false;
+		final Schema schema = getMetadataSchema();
+
+		List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+		for (final String metadataFN : batch) {
+			tasks.add(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws Exception {
+					Timer.Context timerContext = validationLatency.time();
+					try {
+						return validateMetadataFile(metadataFN, shib3IdpTempmetadataFolder, shib3IdpMetadataFolder, schema);
+					} finally {
+						timerContext.stop();
+						processingFiles.remove(metadataFN);
+					}
 				}
-				tr.setValidationStatus(GluuValidationStatus.VALIDATION);
-				trustService.updateTrustRelationship(tr);
+			});
+		}
 
-				GluuErrorHandler errorHandler = null;
-				List<String> validationLog = null;
+		boolean result = false;
+		try {
+			for (Future<Boolean> future : validationExecutor.invokeAll(tasks)) {
 				try {
-					errorHandler = shibboleth3ConfService.validateMetadata(new FileInputStream(metadata));
-				} catch (Exception e) {
-					tr.setValidationStatus(GluuValidationStatus.VALIDATION_FAILED);
-					tr.setStatus(GluuStatus.INACTIVE);
-					validationLog = new ArrayList<String>();
-					validationLog.add(e.getMessage());
-					log.warn("Validation of " + tr.getInum() + " failed: " + e.getMessage() );
-					tr.setValidationLog(validationLog);
-					trustService.updateTrustRelationship(tr);
-
-					return false;
+					result |= future.get();
+				} catch (ExecutionException ex) {
+					log.error("Failed to validate metadata", ex.getCause());
 				}
-				if (errorHandler.isValid()) {
-					tr.setValidationLog(errorHandler.getLog());
-					tr.setValidationStatus(GluuValidationStatus.VALIDATION_SUCCESS);
-					if (((!target.exists()) || target.delete()) && (!metadata.renameTo(target))) {
-						log.error("Failed to move metadata file to location:" + target.getAbsolutePath());
-						tr.setStatus(GluuStatus.INACTIVE);
-					} else {
-						tr.setSpMetaDataFN(target.getName());
-					}
-					boolean federation = shibboleth3ConfService.isFederation(tr);
-					tr.setFederation(federation);
-					String idpMetadataFolder = appConfiguration.getShibboleth3IdpRootDir() + File.separator
-							+ Shibboleth3ConfService.SHIB3_IDP_METADATA_FOLDER + File.separator;
-					File metadataFile = new File(idpMetadataFolder + tr.getSpMetaDataFN());
-					
-					
-					List<String> entityIdList = SAMLMetadataParser.getEntityIdFromMetadataFile(metadataFile);
-					Set<String> entityIdSet = new TreeSet<String>();
-					Set<String> duplicatesSet = new TreeSet<String>(); 
-					if(entityIdList != null && ! entityIdList.isEmpty()){
-
-						for (String entityId : entityIdList) {
-							if (!entityIdSet.add(entityId)) {
-								duplicatesSet.add(entityId);
-							}
-						}
-					}
+			}
+		} catch (InterruptedException ex) {
+			log.warn("Metadata validation was interrupted");
+			Thread.currentThread().interrupt();
+		} finally {
+			processingFiles.removeAll(batch);
+		}
 
-					
-					if(! duplicatesSet.isEmpty()){
-						validationLog = tr.getValidationLog();
-						if(validationLog != null){
-							validationLog = new LinkedList<String>(validationLog);
-						}else{
-							validationLog = new LinkedList<String>();
-						}
-						validationLog.add("This metadata contains multiple instances of entityId: " + Arrays.toString(duplicatesSet.toArray()));
-					}
-					tr.setValidationLog(validationLog);
-					tr.setGluuEntityId(entityIdSet);
-					tr.setStatus(GluuStatus.ACTIVE);
-
-					trustService.updateTrustRelationship(tr);
-					result = true;
-				} else if(appConfiguration.isIgnoreValidation() || errorHandler.isInternalError()){
-					tr.setValidationLog(new ArrayList<String>(new HashSet<String>(errorHandler.getLog())));
-					tr.setValidationStatus(GluuValidationStatus.VALIDATION_FAILED);
-					if( (( ! target.exists() ) ||  target.delete()) && ( ! metadata.renameTo(target) )){
-						log.error("Failed to move metadata file to location:" + target.getAbsolutePath());
-						tr.setStatus(GluuStatus.INACTIVE);
-					}else{
-						tr.setSpMetaDataFN(target.getName());
-					}
-					boolean federation = shibboleth3ConfService.isFederation(tr);
-					tr.setFederation(federation);
-					String idpMetadataFolder = appConfiguration.getShibboleth3IdpRootDir() + File.separator + Shibboleth3ConfService.SHIB3_IDP_METADATA_FOLDER + File.separator;
-					File metadataFile = new File(idpMetadataFolder + tr.getSpMetaDataFN());
-					
-					List<String> entityIdList = SAMLMetadataParser.getEntityIdFromMetadataFile(metadataFile);
-					Set<String> duplicatesSet = new TreeSet<String>(); 
-					Set<String> entityIdSet = new TreeSet<String>();
-
-					for (String entityId : entityIdList) {
-						if (!entityIdSet.add(entityId)) {
-							duplicatesSet.add(entityId);
-						}
-					}
-					
-					tr.setGluuEntityId(entityIdSet);
-					tr.setStatus(GluuStatus.ACTIVE);	
-					validationLog = tr.getValidationLog();
-					if(! duplicatesSet.isEmpty()){
-						validationLog.add("This metadata contains multiple instances of entityId: " + Arrays.toString(duplicatesSet.toArray()));
+		Snapshot snapshot = validationLatency.getSnapshot();
+		log.info("Validated '{}' metadata files. Queue depth: '{}', validation latency (ms) median: '{}', 95th percentile: '{}'",
+				batch.size(), getQueueDepth(), TimeUnit.NANOSECONDS.toMillis((long) snapshot.getMedian()),
+				TimeUnit.NANOSECONDS.toMillis((long) snapshot.get95thPercentile()));
+
+		return result;
+	}
+
+	private boolean validateMetadataFile(String metadataFN, String shib3IdpTempmetadataFolder, String shib3IdpMetadataFolder, Schema schema) {
+		boolean result = false;
+
+		File metadata = new File(shib3IdpTempmetadataFolder + metadataFN);
+		File target = new File(shib3IdpMetadataFolder + getTargetName(metadataFN));
+		GluuSAMLTrustRelationship tr = trustService.getTrustByUnpunctuatedInum(
+				metadataFN.split("-" + Shibboleth3ConfService.SHIB3_IDP_SP_METADATA_FILE)[0]);
+		if (tr == null) {
+			scheduleRetry(metadataFN);
+			return false;
+		}
+		tr = trustService.copyTrustRelationship(tr);
+		retryStates.remove(metadataFN);
+		queueSequences.remove(metadataFN);
+		tr.setValidationStatus(GluuValidationStatus.VALIDATION);
+		trustService.updateTrustRelationship(tr);
+
+		GluuErrorHandler errorHandler = null;
+		List<String> validationLog = null;
+		InputStream is = null;
+		try {
+			is = new FileInputStream(metadata);
+			if (schema == null) {
+				errorHandler = shibboleth3ConfService.validateMetadata(is);
+			} else {
+				errorHandler = shibboleth3ConfService.validateMetadata(is, schema);
+			}
+		} catch (Exception e) {
+			tr.setValidationStatus(GluuValidationStatus.VALIDATION_FAILED);
+			tr.setStatus(GluuStatus.INACTIVE);
+			validationLog = new ArrayList<String>();
+			validationLog.add(e.getMessage());
+			log.warn("Validation of " + tr.getInum() + " failed: " + e.getMessage() );
+			tr.setValidationLog(validationLog);
+			trustService.updateTrustRelationship(tr);
+
+			return false;
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+		if (errorHandler.isValid() && !metadataIndexService.isValid(metadata)) {
+			validationLog = new ArrayList<String>();
+			validationLog.add("Metadata is expired according to its validUntil attribute");
+			log.warn("Validation of " + tr.getInum() + " failed: metadata is expired");
+			tr.setValidationLog(validationLog);
+			tr.setValidationStatus(GluuValidationStatus.VALIDATION_FAILED);
+			tr.setStatus(GluuStatus.INACTIVE);
+			trustService.updateTrustRelationship(tr);
+
+			return false;
+		}
+		if (errorHandler.isValid()) {
+			tr.setValidationLog(errorHandler.getLog());
+			tr.setValidationStatus(GluuValidationStatus.VALIDATION_SUCCESS);
+			if (((!target.exists()) || target.delete()) && (!metadata.renameTo(target))) {
+				log.error("Failed to move metadata file to location:" + target.getAbsolutePath());
+				tr.setStatus(GluuStatus.INACTIVE);
+			} else {
+				metadataIndexService.invalidate(metadata);
+				metadataIndexService.invalidate(target);
+				tr.setSpMetaDataFN(target.getName());
+			}
+			boolean federation = shibboleth3ConfService.isFederation(tr);
+			tr.setFederation(federation);
+			String idpMetadataFolder = appConfiguration.getShibboleth3IdpRootDir() + File.separator
+					+ Shibboleth3ConfService.SHIB3_IDP_METADATA_FOLDER + File.separator;
+			File metadataFile = new File(idpMetadataFolder + tr.getSpMetaDataFN());
+			
+			
+			List<String> entityIdList = metadataIndexService.getEntityIds(metadataFile);
+			Set<String> entityIdSet = new TreeSet<String>();
+			Set<String> duplicatesSet = new TreeSet<String>(); 
+			if(entityIdList != null && ! entityIdList.isEmpty()){
+
+				for (String entityId : entityIdList) {
+					if (!entityIdSet.add(entityId)) {
+						duplicatesSet.add(entityId);
 					}
-					
+				}
+			}
+
+			
+			if(! duplicatesSet.isEmpty()){
+				validationLog = tr.getValidationLog();
+				if(validationLog != null){
+					validationLog = new LinkedList<String>(validationLog);
+				}else{
+					validationLog = new LinkedList<String>();
+				}
+				validationLog.add("This metadata contains multiple instances of entityId: " + Arrays.toString(duplicatesSet.toArray()));
+			}
+			tr.setValidationLog(validationLog);
+			tr.setGluuEntityId(entityIdSet);
+			tr.setStatus(GluuStatus.ACTIVE);
+
+			trustService.updateTrustRelationship(tr);
+			result = true;
+		} else if(appConfiguration.isIgnoreValidation() || errorHandler.isInternalError()){
+			tr.setValidationLog(new ArrayList<String>(new HashSet<String>(errorHandler.getLog())));
+			tr.setValidationStatus(GluuValidationStatus.VALIDATION_FAILED);
+			if( (( ! target.exists() ) ||  target.delete()) && ( ! metadata.renameTo(target) )){
+				log.error("Failed to move metadata file to location:" + target.getAbsolutePath());
+				tr.setStatus(GluuStatus.INACTIVE);
+			}else{
+				metadataIndexService.invalidate(metadata);
+				metadataIndexService.invalidate(target);
+				tr.setSpMetaDataFN(target.getName());
+			}
+			boolean federation = shibboleth3ConfService.isFederation(tr);
+			tr.setFederation(federation);
+			String idpMetadataFolder = appConfiguration.getShibboleth3IdpRootDir() + File.separator + Shibboleth3ConfService.SHIB3_IDP_METADATA_FOLDER + File.separator;
+			File metadataFile = new File(idpMetadataFolder + tr.getSpMetaDataFN());
+			
+			List<String> entityIdList = metadataIndexService.getEntityIds(metadataFile);
+			Set<String> duplicatesSet = new TreeSet<String>(); 
+			Set<String> entityIdSet = new TreeSet<String>();
+
+			for (String entityId : entityIdList) {
+				if (!entityIdSet.add(entityId)) {
+					duplicatesSet.add(entityId);
+				}
+			}
+			
+			tr.setGluuEntityId(entityIdSet);
+			tr.setStatus(GluuStatus.ACTIVE);	
+			validationLog = tr.getValidationLog();
+			if(! duplicatesSet.isEmpty()){
+				validationLog.add("This metadata contains multiple instances of entityId: " + Arrays.toString(duplicatesSet.toArray()));
+			}
+			
                                         if (errorHandler.isInternalError()) {
                                             validationLog = tr.getValidationLog();
                                             
@@ -279,17 +489,75 @@ public class MetadataValidationTimer {
                                         }
                                         
                                         trustService.updateTrustRelationship(tr);
-					result = true;
-				} else {
-					tr.setValidationLog(new ArrayList<String>(new HashSet<String>(errorHandler.getLog())));
-					tr.setValidationStatus(GluuValidationStatus.VALIDATION_FAILED);
-					tr.setStatus(GluuStatus.INACTIVE);
-					trustService.updateTrustRelationship(tr);
-				}
-			}
+			result = true;
+		} else {
+			tr.setValidationLog(new ArrayList<String>(new HashSet<String>(errorHandler.getLog())));
+			tr.setValidationStatus(GluuValidationStatus.VALIDATION_FAILED);
+			tr.setStatus(GluuStatus.INACTIVE);
+			trustService.updateTrustRelationship(tr);
 		}
 
+
 		return result;
 	}
 
+	/**
+	 * Get name of file in metadata folder. Temporary file name has random
+	 * suffix after it
+	 */
+	private String getTargetName(String metadataFN) {
+		return metadataFN.replaceAll(".{4}\\..{4}$", "");
+	}
+
+	private long getQueueSequence(String metadataFN) {
+		Long sequence = queueSequences.get(metadataFN);
+
+		return (sequence == null) ? 0 : sequence;
+	}
+
+	private void discardMetadataFile(String metadataFN, String shib3IdpTempmetadataFolder) {
+		log.debug("Metadata '{}' was superseded by newer download of the same trust relationship", metadataFN);
+		retryStates.remove(metadataFN);
+		queueSequences.remove(metadataFN);
+
+		File metadata = new File(shib3IdpTempmetadataFolder + metadataFN);
+		if (metadata.exists() && !metadata.delete()) {
+			log.warn("Failed to remove superseded metadata file '{}'", metadata.getAbsolutePath());
+		}
+	}
+
+	private void scheduleRetry(String metadataFN) {
+		RetryState retryState = retryStates.get(metadataFN);
+		int attempts = retryState == null ? 1 : retryState.attempts + 1;
+		long delay = Math.min(RETRY_BASE_DELAY * (1L << Math.min(attempts - 1, 16)), RETRY_MAX_DELAY);
+		log.debug("Trust relationship for metadata '{}' not found. Retry '{}' scheduled in '{}' ms", metadataFN, attempts, delay);
+
+		retryStates.put(metadataFN, new RetryState(attempts, System.currentTimeMillis() + delay));
+		queue(metadataFN);
+	}
+
+	private Schema getMetadataSchema() {
+		if (this.metadataSchema == null) {
+			try {
+				this.metadataSchema = shibboleth3ConfService.buildMetadataSchema();
+			} catch (Exception ex) {
+				log.error("Failed to build metadata schema", ex);
+			}
+		}
+
+		return this.metadataSchema;
+	}
+
+	private static class RetryState {
+
+		private final int attempts;
+		private final long nextAttemptTime;
+
+		public RetryState(int attempts, long nextAttemptTime) {
+			this.attempts = attempts;
+			this.nextAttemptTime = nextAttemptTime;
+		}
+
+	}
+
 }
@@ -49,6 +49,9 @@ public class OrganizationService extends org.xdi.service.OrganizationService {
 	@Inject
 	private AppConfiguration appConfiguration;
 
+	@Inject
+	private ImageCacheService imageCacheService;
+
 	/**
 	 * Update organization entry
 	 * 
@@ -57,6 +60,8 @@ public class OrganizationService extends org.xdi.service.OrganizationService {
 	 */
 	public void updateOrganization(GluuOrganization organization) {
 		ldapEntryManager.merge(organization);
+		// Logo or favicon might be changed
+		imageCacheService.invalidate();
 
 	}
 	
@@ -0,0 +1,159 @@
+/*
+ * oxTrust is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxtrust.ldap.service;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.gluu.persist.ldap.impl.LdapEntryManager;
+import org.gluu.persist.model.AttributeData;
+import org.gluu.site.ldap.persistence.annotation.LdapObjectClass;
+import org.slf4j.Logger;
+
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.SearchRequest;
+import com.unboundid.ldap.sdk.SearchResult;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.SearchResultListener;
+import com.unboundid.ldap.sdk.SearchResultReference;
+import com.unboundid.ldap.sdk.SearchScope;
+import com.unboundid.ldap.sdk.controls.SimplePagedResultsControl;
+
+/**
+ * Runs single LDAP paged search and hands every entry to caller as soon as it
+ * arrives, so result set is never held in memory. LDAP connection is held
+ * until search ends, so handler shouldn't wait for remote clients
+ */
+@Stateless
+@Named
+public class PagedSearchService implements Serializable {
+
+	private static final long serialVersionUID = -2436251371563129217L;
+
+	public static final int DEFAULT_PAGE_SIZE = 200;
+
+	@Inject
+	private Logger log;
+
+	@Inject
+	private LdapEntryManager ldapEntryManager;
+
+	/**
+	 * Search entries under base DN and map them to entry class one by one
+	 *
+	 * @param filter
+	 *            LDAP filter. It's combined with object classes of entry class
+	 * @return Number of entries passed to handler
+	 * @throws IOException
+	 *             First exception thrown by handler. Search is stopped after it
+	 */
+	public <T> long searchEntries(String baseDn, final Class<T> entryClass, String filter, final EntryHandler<T> entryHandler)
+			throws LDAPException, IOException {
+		Filter searchFilter = createSearchFilter(entryClass, filter);
+
+		final AtomicLong processed = new AtomicLong();
+		final IOException[] handlerException = new IOException[1];
+
+		SearchResultListener searchResultListener = new SearchResultListener() {
+
+			private static final long serialVersionUID = 6215749062812874513L;
+
+			@Override
+			public void searchEntryReturned(SearchResultEntry searchEntry) {
+				if (handlerException[0] != null) {
+					return;
+				}
+
+				List<AttributeData> attributeDataList = new ArrayList<AttributeData>();
+				for (Attribute attribute : searchEntry.getAttributes()) {
+					attributeDataList.add(new AttributeData(attribute.getName(), attribute.getValues()));
+				}
+
+				Map<String, List<AttributeData>> entriesAttributes = new HashMap<String, List<AttributeData>>();
+				entriesAttributes.put(searchEntry.getDN(), attributeDataList);
+				try {
+					entryHandler.handle(ldapEntryManager.createEntities(entryClass, entriesAttributes).get(0));
+					processed.incrementAndGet();
+				} catch (IOException ex) {
+					handlerException[0] = ex;
+				}
+			}
+
+			@Override
+			public void searchReferenceReturned(SearchResultReference searchReference) {
+			}
+		};
+
+		long startTime = System.currentTimeMillis();
+		LDAPConnection connection = ldapEntryManager.getOperationService().getConnection();
+		try {
+			ASN1OctetString cookie = null;
+			do {
+				SearchRequest searchRequest = new SearchRequest(searchResultListener, baseDn, SearchScope.SUB, searchFilter);
+				searchRequest.setControls(new SimplePagedResultsControl(DEFAULT_PAGE_SIZE, cookie));
+
+				SearchResult searchResult = connection.search(searchRequest);
+				if (handlerException[0] != null) {
+					throw handlerException[0];
+				}
+
+				cookie = null;
+				SimplePagedResultsControl responseControl = SimplePagedResultsControl.get(searchResult);
+				if ((responseControl != null) && responseControl.moreResultsToReturn()) {
+					cookie = responseControl.getCookie();
+				}
+			} while (cookie != null);
+		} finally {
+			ldapEntryManager.getOperationService().releaseConnection(connection);
+		}
+
+		log.debug("Streamed '{}' entries from '{}' in '{}' ms", processed.get(), baseDn, System.currentTimeMillis() - startTime);
+
+		return processed.get();
+	}
+
+	private Filter createSearchFilter(Class<?> entryClass, String filter) throws LDAPException {
+		List<Filter> filters = new ArrayList<Filter>();
+		LdapObjectClass ldapObjectClass = entryClass.getAnnotation(LdapObjectClass.class);
+		if (ldapObjectClass != null) {
+			for (String objectClass : ldapObjectClass.values()) {
+				if (!"top".equalsIgnoreCase(objectClass)) {
+					filters.add(Filter.createEqualityFilter("objectClass", objectClass));
+				}
+			}
+		}
+
+		if (filter != null) {
+			filters.add(Filter.create(filter));
+		}
+
+		return Filter.createANDFilter(filters);
+	}
+
+	/**
+	 * Receives entries of paged search
+	 */
+	public interface EntryHandler<T> {
+
+		void handle(T entry) throws IOException;
+
+	}
+
+}
@@ -15,6 +15,7 @@ import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.gluu.oxtrust.config.ConfigurationFactory;
+import org.gluu.oxtrust.service.PassportConfigurationHolder;
 import org.gluu.persist.exception.mapping.MappingException;
 import org.gluu.persist.ldap.impl.LdapEntryManager;
 import org.slf4j.Logger;
@@ -45,6 +46,9 @@ public class PassportService implements Serializable {
 	@Inject
 	private ConfigurationFactory configurationFactory;
 
+	@Inject
+	private PassportConfigurationHolder passportConfigurationHolder;
+
 	public boolean containsPassportConfiguration() {
 		String configurationDn = getConfigurationDn();
 		if (StringHelper.isEmpty(configurationDn)) {
@@ -90,6 +94,7 @@ public class PassportService implements Serializable {
 			ldapEntryManager.persist(ldapOxPassportConfiguration);
 		}
 
+		passportConfigurationHolder.invalidate();
 	}
 
 }
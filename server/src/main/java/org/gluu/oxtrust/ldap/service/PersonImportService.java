@@ -0,0 +1,239 @@
+/*
+ * oxTrust is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxtrust.ldap.service;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.gluu.oxtrust.model.GluuCustomAttribute;
+import org.gluu.oxtrust.model.GluuCustomPerson;
+import org.gluu.oxtrust.service.external.ExternalUpdateUserService;
+import org.slf4j.Logger;
+
+/**
+ * Adds imported persons in background. Inums are allocated for whole import
+ * up front and persons are written by fixed number of writer threads shared
+ * by all imports
+ */
+@ApplicationScoped
+@Named
+public class PersonImportService {
+
+	private static final int WRITER_THREADS = 4;
+
+	@Inject
+	private Logger log;
+
+	@Inject
+	private IPersonService personService;
+
+	@Inject
+	private ExternalUpdateUserService externalUpdateUserService;
+
+	private ExecutorService jobExecutor;
+	private ExecutorService writerExecutor;
+
+	@PostConstruct
+	public void init() {
+		this.jobExecutor = Executors.newCachedThreadPool(new ImportThreadFactory("person-import-job"));
+		this.writerExecutor = Executors.newFixedThreadPool(WRITER_THREADS, new ImportThreadFactory("person-import-writer"));
+	}
+
+	@PreDestroy
+	public void destroy() {
+		jobExecutor.shutdownNow();
+		writerExecutor.shutdownNow();
+	}
+
+	/**
+	 * Start import of persons
+	 *
+	 * @param persons
+	 *            Validated persons with default attributes
+	 * @return Job which can be polled for progress
+	 */
+	public PersonImportJob startImport(final List<GluuCustomPerson> persons) {
+		final PersonImportJob job = new PersonImportJob(persons.size());
+		log.info("Attempting to add {} persons", persons.size());
+
+		jobExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					runImport(job, persons);
+				} catch (Exception ex) {
+					log.error("Failed to import persons", ex);
+					job.setError(true);
+				} finally {
+					job.setFinished(true);
+				}
+			}
+		});
+
+		return job;
+	}
+
+	private void runImport(final PersonImportJob job, List<GluuCustomPerson> persons) throws InterruptedException {
+		long startTime = System.currentTimeMillis();
+
+		List<String> inums = personService.generateInumsForNewPersons(persons.size());
+
+		final CountDownLatch latch = new CountDownLatch(persons.size());
+		for (int i = 0; i < persons.size(); i++) {
+			final GluuCustomPerson person = persons.get(i);
+			final String inum = inums.get(i);
+			writerExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						if (addPerson(person, inum)) {
+							log.debug("Added new person: {}", person.getUid());
+							job.added();
+						} else {
+							job.failed(person.getUid());
+						}
+					} finally {
+						latch.countDown();
+					}
+				}
+			});
+		}
+
+		latch.await();
+
+		log.info("Added {} of {} persons in '{}' ms, failed: {}", job.getAdded(), job.getTotal(), System.currentTimeMillis() - startTime,
+				job.getFailedUids());
+	}
+
+	private boolean addPerson(GluuCustomPerson person, String inum) {
+		personService.addCustomObjectClass(person);
+
+		person.setDn(personService.getDnForPerson(inum));
+		person.setInum(inum);
+		person.setIname(personService.generateInameForNewPerson(person.getUid()));
+
+		List<GluuCustomAttribute> personAttributes = person.getCustomAttributes();
+		if (!personAttributes.contains(new GluuCustomAttribute("cn", ""))) {
+			List<GluuCustomAttribute> changedAttributes = new ArrayList<GluuCustomAttribute>();
+			changedAttributes.addAll(personAttributes);
+			changedAttributes.add(new GluuCustomAttribute("cn", person.getGivenName() + " " + person.getDisplayName()));
+			person.setCustomAttributes(changedAttributes);
+		} else {
+			person.setCommonName(person.getCommonName() + " " + person.getGivenName());
+		}
+
+		try {
+			boolean runScript = externalUpdateUserService.isEnabled();
+			if (runScript) {
+				externalUpdateUserService.executeExternalAddUserMethods(person);
+			}
+
+			personService.addPerson(person);
+
+			if (runScript) {
+				externalUpdateUserService.executeExternalPostAddUserMethods(person);
+			}
+		} catch (Exception ex) {
+			log.error("Failed to add new person {}", person.getUid(), ex);
+			return false;
+		}
+
+		return true;
+	}
+
+	public static class PersonImportJob implements Serializable {
+
+		private static final long serialVersionUID = -2945374383493781412L;
+
+		private final int total;
+		private final AtomicInteger added = new AtomicInteger();
+		private final List<String> failedUids = Collections.synchronizedList(new ArrayList<String>());
+
+		private volatile boolean error;
+		private volatile boolean finished;
+
+		public PersonImportJob(int total) {
+			this.total = total;
+		}
+
+		public int getTotal() {
+			return total;
+		}
+
+		public int getAdded() {
+			return added.get();
+		}
+
+		public int getFailed() {
+			return failedUids.size();
+		}
+
+		public List<String> getFailedUids() {
+			synchronized (failedUids) {
+				return new ArrayList<String>(failedUids);
+			}
+		}
+
+		public boolean isError() {
+			return error;
+		}
+
+		public void setError(boolean error) {
+			this.error = error;
+		}
+
+		public boolean isFinished() {
+			return finished;
+		}
+
+		public void setFinished(boolean finished) {
+			this.finished = finished;
+		}
+
+		private void added() {
+			added.incrementAndGet();
+		}
+
+		private void failed(String uid) {
+			failedUids.add(uid);
+		}
+
+	}
+
+	private static class ImportThreadFactory implements ThreadFactory {
+
+		private final String namePrefix;
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+		public ImportThreadFactory(String namePrefix) {
+			this.namePrefix = namePrefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, namePrefix + "-" + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+
+			return thread;
+		}
+
+	}
+
+}
@@ -14,8 +14,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.ejb.Stateless;
 import javax.inject.Inject;
@@ -29,6 +31,8 @@ import org.gluu.oxtrust.util.OxTrustConstants;
 import org.gluu.persist.exception.operation.DuplicateEntryException;
 import org.gluu.persist.ldap.impl.LdapEntryManager;
 import org.gluu.persist.model.AttributeData;
+import org.gluu.persist.model.ListViewResponse;
+import org.gluu.persist.model.SortOrder;
 import org.slf4j.Logger;
 import org.xdi.config.oxtrust.AppConfiguration;
 import org.xdi.util.ArrayHelper;
@@ -48,6 +52,15 @@ public class PersonService implements Serializable, IPersonService {
 
     private static final long serialVersionUID = 6685720517520443399L;
 
+    private static final int LOOKUP_FILTER_CHUNK_SIZE = 100;
+
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+
+    private static final int MIN_SUBSTRING_SEARCH_PATTERN_LENGTH = 3;
+
+    private static final String[] PERSON_LIST_VIEW_ATTRIBUTES = new String[] { OxTrustConstants.inum, OxTrustConstants.uid,
+            OxTrustConstants.displayName, OxTrustConstants.iname, OxTrustConstants.mail, OxTrustConstants.gluuStatus };
+
     @Inject
     private Logger log;
 
@@ -160,6 +173,43 @@ public class PersonService implements Serializable, IPersonService {
         return result;
     }
 
+    /* (non-Javadoc)
+     * @see org.gluu.oxtrust.ldap.service.IPersonService#searchPersons(java.lang.String, int, int)
+     */
+    @Override
+    public ListViewResponse<GluuCustomPerson> searchPersons(String pattern, int startIndex, int count) {
+        int pageSize = Math.max(1, Math.min(count, MAX_SEARCH_PAGE_SIZE));
+
+        return ldapEntryManager.findListViewResponse(getDnForPerson(null), GluuCustomPerson.class, createSearchFilter(pattern),
+                Math.max(1, startIndex), pageSize, pageSize, OxTrustConstants.uid, SortOrder.ASCENDING, PERSON_LIST_VIEW_ATTRIBUTES);
+    }
+
+    /**
+     * Short patterns match too many entries as substrings and can't use
+     * substring indexes. Search them as prefixes of attributes which are shown
+     * in list instead
+     */
+    private Filter createSearchFilter(String pattern) {
+        if (pattern.length() < MIN_SUBSTRING_SEARCH_PATTERN_LENGTH) {
+            Filter uidFilter = Filter.createSubstringFilter(OxTrustConstants.uid, pattern, null, null);
+            Filter mailFilter = Filter.createSubstringFilter(OxTrustConstants.mail, pattern, null, null);
+            Filter nameFilter = Filter.createSubstringFilter(OxTrustConstants.displayName, pattern, null, null);
+            Filter inameFilter = Filter.createSubstringFilter(OxTrustConstants.iname, pattern, null, null);
+
+            return Filter.createORFilter(uidFilter, mailFilter, nameFilter, inameFilter);
+        }
+
+        String[] targetArray = new String[] { pattern };
+        Filter uidFilter = Filter.createSubstringFilter(OxTrustConstants.uid, null, targetArray, null);
+        Filter mailFilter = Filter.createSubstringFilter(OxTrustConstants.mail, null, targetArray, null);
+        Filter nameFilter = Filter.createSubstringFilter(OxTrustConstants.displayName, null, targetArray, null);
+        Filter inameFilter = Filter.createSubstringFilter(OxTrustConstants.iname, null, targetArray, null);
+        Filter ppidFilter = Filter.createSubstringFilter(OxTrustConstants.ppid, null, targetArray, null);
+        Filter inumFilter = Filter.createSubstringFilter(OxTrustConstants.inum, null, targetArray, null);
+
+        return Filter.createORFilter(uidFilter, mailFilter, nameFilter, inameFilter, ppidFilter, inumFilter);
+    }
+
     /* (non-Javadoc)
      * @see org.gluu.oxtrust.ldap.service.IPersonService#findPersons(org.gluu.oxtrust.model.GluuCustomPerson, int)
      */
@@ -221,17 +271,7 @@ public class PersonService implements Serializable, IPersonService {
      */
     @Override
     public List<GluuCustomPerson> findPersonsByUids(List<String> uids, String[] returnAttributes) throws Exception {
-        List<Filter> uidFilters = new ArrayList<Filter>();
-        for (String uid : uids) {
-            uidFilters.add(Filter.createEqualityFilter(OxTrustConstants.uid, uid));
-        }
-
-        Filter filter = Filter.createORFilter(uidFilters);
-
-        List<GluuCustomPerson> result = ldapEntryManager
-                .findEntries(getDnForPerson(null), GluuCustomPerson.class, filter, returnAttributes);
-
-        return result;
+        return findPersonsByAttributeValues(OxTrustConstants.uid, uids, returnAttributes);
     }
     
     /* (non-Javadoc)
@@ -239,15 +279,32 @@ public class PersonService implements Serializable, IPersonService {
      */
     @Override
     public List<GluuCustomPerson> findPersonsByMailids(List<String> mailids, String[] returnAttributes) throws Exception {
-        List<Filter> mailidFilters = new ArrayList<Filter>();
-        for (String mailid : mailids) {
-        	mailidFilters.add(Filter.createEqualityFilter(OxTrustConstants.mail, mailid));
-        }
+        return findPersonsByAttributeValues(OxTrustConstants.mail, mailids, returnAttributes);
+    }
 
-        Filter filter = Filter.createORFilter(mailidFilters);
+    /**
+     * Find persons with any of specified attribute values. Values are checked
+     * in chunks to keep OR filters small for large lists (e.g. import)
+     */
+    private List<GluuCustomPerson> findPersonsByAttributeValues(String attributeName, List<String> values, String[] returnAttributes) {
+        List<GluuCustomPerson> result = new ArrayList<GluuCustomPerson>();
+        for (int start = 0; start < values.size(); start += LOOKUP_FILTER_CHUNK_SIZE) {
+            List<String> chunk = values.subList(start, Math.min(values.size(), start + LOOKUP_FILTER_CHUNK_SIZE));
+
+            List<Filter> filters = new ArrayList<Filter>(chunk.size());
+            for (String value : chunk) {
+                if (StringHelper.isNotEmpty(value)) {
+                    filters.add(Filter.createEqualityFilter(attributeName, value));
+                }
+            }
 
-        List<GluuCustomPerson> result = ldapEntryManager
-                .findEntries(getDnForPerson(null), GluuCustomPerson.class, filter, returnAttributes);
+            if (filters.isEmpty()) {
+                continue;
+            }
+
+            result.addAll(ldapEntryManager.findEntries(getDnForPerson(null), GluuCustomPerson.class, Filter.createORFilter(filters),
+                    returnAttributes));
+        }
 
         return result;
     }
@@ -356,6 +413,34 @@ public class PersonService implements Serializable, IPersonService {
         return newInum;
     }
 
+    /* (non-Javadoc)
+     * @see org.gluu.oxtrust.ldap.service.IPersonService#generateInumsForNewPersons(int)
+     */
+    @Override
+    public List<String> generateInumsForNewPersons(int count) {
+        Set<String> inums = new LinkedHashSet<String>();
+        while (inums.size() < count) {
+            Set<String> candidates = new LinkedHashSet<String>();
+            while (inums.size() + candidates.size() < count) {
+                String candidate = generateInumForNewPersonImpl();
+                if (!inums.contains(candidate)) {
+                    candidates.add(candidate);
+                }
+            }
+
+            // Drop candidates which are already in use
+            List<GluuCustomPerson> existingPersons = findPersonsByAttributeValues(OxTrustConstants.inum, new ArrayList<String>(candidates),
+                    new String[] { OxTrustConstants.inum });
+            for (GluuCustomPerson existingPerson : existingPersons) {
+                candidates.remove(existingPerson.getInum());
+            }
+
+            inums.addAll(candidates);
+        }
+
+        return new ArrayList<String>(inums);
+    }
+
     /**
      * Generate new inum for person
      *
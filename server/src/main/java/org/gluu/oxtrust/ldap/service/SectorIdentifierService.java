@@ -8,7 +8,6 @@ import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.gluu.oxtrust.model.GluuGroup;
-import org.gluu.oxtrust.model.OxAuthClient;
 import org.gluu.oxtrust.model.OxAuthSectorIdentifier;
 import org.gluu.oxtrust.util.OxTrustConstants;
 import org.gluu.persist.ldap.impl.LdapEntryManager;
@@ -151,16 +150,8 @@ public class SectorIdentifierService implements Serializable {
      * @param sectorIdentifier Sector identifier
      */
     public void removeSectorIdentifier(OxAuthSectorIdentifier sectorIdentifier) {
-        if (sectorIdentifier.getClientIds() != null) {
-            List<String> clientDNs = sectorIdentifier.getClientIds();
-
-            // clear references in Client entries
-            for (String clientDN : clientDNs) {
-                OxAuthClient client = clientService.getClientByDn(clientDN);
-                client.setSectorIdentifierUri(null);
-                clientService.updateClient(client);
-            }
-        }
+        // clear references in Client entries
+        clientService.removeSectorIdentifierUri(sectorIdentifier.getClientIds());
 
         ldapEntryManager.remove(sectorIdentifier);
     }
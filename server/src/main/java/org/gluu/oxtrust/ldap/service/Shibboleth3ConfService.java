@@ -13,14 +13,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Serializable;
-import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.ejb.Stateless;
 import javax.inject.Inject;
@@ -31,11 +32,15 @@ import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.httpclient.protocol.Protocol;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.SerializationException;
+import org.apache.commons.lang.SerializationUtils;
 import org.apache.velocity.VelocityContext;
 import org.gluu.oxtrust.config.ConfigurationFactory;
+import org.gluu.oxtrust.ldap.service.MetadataDownloadService.DownloadStatus;
 import org.gluu.oxtrust.model.GluuAppliance;
 import org.gluu.oxtrust.model.GluuCustomAttribute;
 import org.gluu.oxtrust.model.GluuMetadataSourceType;
@@ -64,8 +69,6 @@ import org.xdi.util.INumGenerator;
 import org.xdi.util.StringHelper;
 import org.xdi.util.Util;
 import org.xdi.util.exception.InvalidConfigurationException;
-import org.xdi.util.io.FileUploadWrapper;
-import org.xdi.util.io.HTTPFileDownloader;
 import org.xdi.util.security.StringEncrypter.EncryptionException;
 import org.xdi.xml.GluuErrorHandler;
 import org.xdi.xml.XMLValidator;
@@ -98,6 +101,9 @@ public class Shibboleth3ConfService implements Serializable {
 	private static final String SHIB3_IDP_ATTRIBUTE_FILTER_FILE = "attribute-filter.xml";
 	private static final String SHIB3_IDP_ATTRIBUTE_RESOLVER_FILE = "attribute-resolver.xml";
 	private static final String SHIB3_IDP_RELYING_PARTY_FILE = "relying-party.xml";
+	private static final String SHIB3_IDP_METADATA_PROVIDER_FRAGMENT = "metadata-provider.xml";
+	private static final String SHIB3_IDP_RELYING_PARTY_FRAGMENT = "relying-party-override.xml";
+	private static final String SHIB3_IDP_ATTRIBUTE_FILTER_FRAGMENT = "attribute-filter-policy.xml";
 	// private static final String SHIB3_IDP_PROFILE_HADLER = "handler.xml";
         private static final String SHIB3_IDP_CAS_PROTOCOL_FILE = "cas-protocol.xml";
 	public static final String SHIB3_IDP_IDP_METADATA_FILE = "idp-metadata.xml";
@@ -127,6 +133,12 @@ public class Shibboleth3ConfService implements Serializable {
 
 	public static final String SHIB3_IDP_SP_CERT_FILE = "spcert.crt";
 
+	/**
+	 * Returned instead of temporary file name when remote SP metadata wasn't
+	 * changed since last download
+	 */
+	public static final String SP_METADATA_NOT_MODIFIED = "not-modified";
+
 	@Inject
 	private AttributeService attributeService;
 
@@ -169,6 +181,15 @@ public class Shibboleth3ConfService implements Serializable {
 	@Inject
 	private TrustService trustService;
 
+	@Inject
+	private MetadataIndexService metadataIndexService;
+
+	@Inject
+	private MetadataDownloadService metadataDownloadService;
+
+	@Inject
+	private TrustConfFragmentService trustConfFragmentService;
+
 	/*
 	 * Generate relying-party.xml, attribute-filter.xml, attribute-resolver.xml
 	 */
@@ -198,6 +219,22 @@ public class Shibboleth3ConfService implements Serializable {
 
 		VelocityContext context = prepareVelocityContext(trustParams, attrParams, casParams, attrResolverParams, idpMetadataFolder);
 
+		// Render parts of trust relationships which were changed since previous run
+		Map<String, String> trustKeys = initTrustFragmentKeys(trustRelationships, trustParams, idpMetadataFolder);
+		List<String> metadataProviderFragments = trustConfFragmentService.generateFragments(SHIB3_IDP_METADATA_PROVIDER_FRAGMENT,
+				trustRelationships, trustKeys, context);
+		List<String> relyingPartyFragments = trustConfFragmentService.generateFragments(SHIB3_IDP_RELYING_PARTY_FRAGMENT,
+				trustRelationships, trustKeys, context);
+		List<String> attributeFilterFragments = trustConfFragmentService.generateFragments(SHIB3_IDP_ATTRIBUTE_FILTER_FRAGMENT,
+				trustRelationships, trustKeys, context);
+		if ((metadataProviderFragments == null) || (relyingPartyFragments == null) || (attributeFilterFragments == null)) {
+			return false;
+		}
+
+		trustParams.put("metadataProviderFragments", metadataProviderFragments);
+		trustParams.put("relyingPartyFragments", relyingPartyFragments);
+		trustParams.put("attributeFilterFragments", attributeFilterFragments);
+
 		// Generate metadata-providers.xml
 		String metadataProviders = templateService.generateConfFile(SHIB3_IDP_METADATA_PROVIDERS_FILE, context);
 		// Generate attribute-resolver.xml
@@ -222,17 +259,17 @@ public class Shibboleth3ConfService implements Serializable {
 		result = (metadataProviders != null) && (attributeFilter != null) && (attributeResolver != null) && (relyingParty != null)  && (casProtocol != null) && (shibConfig != null);
 
 		// Write metadata-providers.xml
-		result &= templateService.writeConfFile(idpConfFolder + SHIB3_IDP_METADATA_PROVIDERS_FILE, metadataProviders);
+		result &= templateService.writeConfFileIfChanged(idpConfFolder + SHIB3_IDP_METADATA_PROVIDERS_FILE, metadataProviders);
 		// Write attribute-resolver.xml
-		result &= templateService.writeConfFile(idpConfFolder + SHIB3_IDP_ATTRIBUTE_RESOLVER_FILE, attributeResolver);
+		result &= templateService.writeConfFileIfChanged(idpConfFolder + SHIB3_IDP_ATTRIBUTE_RESOLVER_FILE, attributeResolver);
 		// Write attribute-filter.xml
-		result &= templateService.writeConfFile(idpConfFolder + SHIB3_IDP_ATTRIBUTE_FILTER_FILE, attributeFilter);
+		result &= templateService.writeConfFileIfChanged(idpConfFolder + SHIB3_IDP_ATTRIBUTE_FILTER_FILE, attributeFilter);
 		// Write relying-party.xml
-		result &= templateService.writeConfFile(idpConfFolder + SHIB3_IDP_RELYING_PARTY_FILE, relyingParty);
+		result &= templateService.writeConfFileIfChanged(idpConfFolder + SHIB3_IDP_RELYING_PARTY_FILE, relyingParty);
 		// Write cas-protocol.xml
-		result &= templateService.writeConfFile(idpConfFolder + SHIB3_IDP_CAS_PROTOCOL_FILE, casProtocol);
+		result &= templateService.writeConfFileIfChanged(idpConfFolder + SHIB3_IDP_CAS_PROTOCOL_FILE, casProtocol);
 		// Write shibboleth2.xml
-		result &= templateService.writeConfFile(getSpShibboleth3FilePath(), shibConfig);
+		result &= templateService.writeConfFileIfChanged(getSpShibboleth3FilePath(), shibConfig);
 		// Write handler.xml
 		// result &= templateService.writeConfFile(idpConfFolder + SHIB3_IDP_PROFILE_HADLER, profileHandler);
 
@@ -324,7 +361,7 @@ public class Shibboleth3ConfService implements Serializable {
 				String idpMetadataFolder = getIdpMetadataDir();
 
 				File metadataFile = new File(idpMetadataFolder + trustRelationship.getSpMetaDataFN());
-				List<String> entityIds = SAMLMetadataParser.getEntityIdFromMetadataFile(metadataFile);
+				List<String> entityIds = metadataIndexService.getEntityIds(metadataFile);
 
 				// if for some reason metadata is corrupted or missing - mark trust relationship INACTIVE
 				// user will be able to fix this in UI
@@ -426,6 +463,52 @@ public class Shibboleth3ConfService implements Serializable {
 		return trustParams;
 	}
 
+	/*
+	 * Prepare keys of trust relationship configuration fragments. Key consists
+	 * of trust relationship revision, its id and entityIds in configuration
+	 * and metadata file hash
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<String, String> initTrustFragmentKeys(List<GluuSAMLTrustRelationship> trustRelationships, HashMap<String, Object> trustParams,
+			String idpMetadataFolder) {
+
+		Map<String, String> trustIds = (Map<String, String>) trustParams.get("trustIds");
+		Map<String, List<String>> trustEntityIds = (Map<String, List<String>>) trustParams.get("trustEntityIds");
+
+		Map<String, String> trustKeys = new HashMap<String, String>();
+		for (GluuSAMLTrustRelationship trustRelationship : trustRelationships) {
+
+			String inum = trustRelationship.getInum();
+
+			// Revision of trust relationship is hash of its state. Released attributes are transient
+			StringBuilder key = new StringBuilder();
+			try {
+				key.append(DigestUtils.sha256Hex(SerializationUtils.serialize(trustRelationship)));
+			} catch (SerializationException ex) {
+				log.warn("Failed to calculate revision of trust relationship '{}'", inum, ex);
+				continue;
+			}
+
+			if (trustRelationship.getReleasedCustomAttributes() != null) {
+				for (GluuCustomAttribute attribute : trustRelationship.getReleasedCustomAttributes()) {
+					key.append(',').append(attribute.getName());
+				}
+			}
+
+			key.append('|').append(trustIds.get(inum));
+			key.append('|').append(trustEntityIds.get(inum));
+			key.append('|').append(idpMetadataFolder);
+
+			if (StringHelper.isNotEmpty(trustRelationship.getSpMetaDataFN())) {
+				key.append('|').append(metadataIndexService.getHash(new File(idpMetadataFolder + trustRelationship.getSpMetaDataFN())));
+			}
+
+			trustKeys.put(inum, DigestUtils.sha256Hex(key.toString()));
+		}
+
+		return trustKeys;
+	}
+
 	private HashMap<String, Object> initAttributeParamMap(List<GluuSAMLTrustRelationship> trustRelationships) {
 
 		HashMap<String, Object> attrParams = new HashMap<String, Object>();
@@ -745,33 +828,47 @@ public class Shibboleth3ConfService implements Serializable {
 		}
 	}
 
-	public String saveSpMetadataFile(String uri, String spMetadataFileName) {
+	/**
+	 * Download SP metadata into temporary file for validation
+	 * 
+	 * @param validated
+	 *            True if current metadata file passed validation. Only then
+	 *            download can be conditional, otherwise metadata which failed
+	 *            or not finished validation is never downloaded again
+	 * @return Temporary file name, {@link #SP_METADATA_NOT_MODIFIED} if
+	 *         metadata wasn't changed since last download or null on failure
+	 */
+	public String saveSpMetadataFile(String uri, String spMetadataFileName, boolean validated) {
 
 		if (StringHelper.isEmpty(uri)) {
 			return null;
 		}
 
-		HTTPFileDownloader.setEasyhttps(new Protocol("https", new EasyCASSLProtocolSocketFactory(), 443));
-		String spMetadataFileContent = HTTPFileDownloader.getResource(uri, "application/xml, text/xml", null, null);
-
-		if (StringHelper.isEmpty(spMetadataFileContent)) {
-			return null;
+		if (appConfiguration.getShibboleth3IdpRootDir() == null) {
+			String errorMessage = "Failed to save SP meta-data file due to undefined IDP root folder";
+			log.error(errorMessage);
+			throw new InvalidConfigurationException(errorMessage);
 		}
 
-		// Save new file
-		ByteArrayInputStream is;
-		try {
-			byte[] spMetadataFileContentBytes = spMetadataFileContent.getBytes("UTF-8");
-			is = new ByteArrayInputStream(spMetadataFileContentBytes);
-		} catch (UnsupportedEncodingException ex) {
-			ex.printStackTrace();
+		String idpMetadataTempFolder = getIdpMetadataTempDir();
+		String tempFileName = getTempMetadataFilename(idpMetadataTempFolder, spMetadataFileName);
+		File spMetadataFile = new File(idpMetadataTempFolder + tempFileName);
+
+		// Validated metadata from previous download
+		File targetFile = new File(getIdpMetadataDir() + spMetadataFileName);
+		boolean conditional = validated && targetFile.exists();
+
+		DownloadStatus status = metadataDownloadService.download(uri, spMetadataFile, targetFile, conditional,
+				new Protocol("https", new EasyCASSLProtocolSocketFactory(), 443));
+		if (DownloadStatus.NOT_MODIFIED == status) {
+			return SP_METADATA_NOT_MODIFIED;
+		}
+		if (DownloadStatus.FAILED == status) {
+			FileUtils.deleteQuietly(spMetadataFile);
 			return null;
 		}
 
-		FileUploadWrapper tmpfileWrapper = new FileUploadWrapper();
-		tmpfileWrapper.setStream(is);
-
-		return saveSpMetadataFile(spMetadataFileName, tmpfileWrapper.getStream());
+		return tempFileName;
 	}
 
 	public String generateSpAttributeMapFile(GluuSAMLTrustRelationship trustRelationship) {
@@ -968,43 +1065,8 @@ public class Shibboleth3ConfService implements Serializable {
 		}
 
 		File spMetaDataFile = new File(getSpMetadataFilePath(spMetaDataFN));
-		InputStream is = null;
-		InputStreamReader isr = null;
-		Document xmlDocument = null;
-
-		try {
-			is = FileUtils.openInputStream(spMetaDataFile);
-			isr = new InputStreamReader(is, "UTF-8");
-			try {
-				xmlDocument = xmlService.getXmlDocument(new InputSource(isr));
-			} catch (Exception ex) {
-				log.error("Failed to parse metadata file '{}'", spMetaDataFile.getAbsolutePath(), ex);
-				ex.printStackTrace();
-			}
-		} catch (IOException ex) {
-			log.error("Failed to read metadata file '{}'", spMetaDataFile.getAbsolutePath(), ex);
-			ex.printStackTrace();
-		} finally {
-			IOUtils.closeQuietly(isr);
-			IOUtils.closeQuietly(is);
-		}
 
-		if (xmlDocument == null) {
-			return false;
-		}
-
-		XPathFactory factory = XPathFactory.newInstance();
-		XPath xPath = factory.newXPath();
-
-		String federationTag = null;
-		try {
-			federationTag = xPath.compile("count(//*[local-name() = 'EntitiesDescriptor'])").evaluate(xmlDocument);
-		} catch (XPathExpressionException ex) {
-			log.error("Failed to find IDP metadata file in relaying party file '{}'", spMetaDataFile.getAbsolutePath(), ex);
-			ex.printStackTrace();
-		}
-
-		return Integer.parseInt(federationTag) > 0;
+		return metadataIndexService.isFederation(spMetaDataFile);
 	}
 
 	public boolean generateIdpConfigurationFiles() {
@@ -1063,125 +1125,125 @@ public class Shibboleth3ConfService implements Serializable {
 	}
 
 	public void removeUnusedMetadata() {
+		removeUnusedFiles(true, false);
+	}
 
+	public void removeUnusedCredentials() {
+		removeUnusedFiles(false, true);
+	}
+
+	/**
+	 * Remove metadata and credentials files which are not referenced by any
+	 * trust relationship. Trust relationships are loaded and parsed once per
+	 * call
+	 */
+	public void removeUnusedMetadataAndCredentials() {
+		removeUnusedFiles(true, true);
+	}
+
+	private void removeUnusedFiles(boolean cleanMetadata, boolean cleanCredentials) {
 		if (appConfiguration.getShibboleth3IdpRootDir() == null) {
 			throw new InvalidConfigurationException("Failed to update configuration due to undefined IDP root folder");
 		}
 
-		File metadataDir = new File(getIdpMetadataDir());
+		long startTime = System.currentTimeMillis();
 
-		if (metadataDir.exists()) {
+		Set<String> usedMetadata = new HashSet<String>();
+		usedMetadata.add(SHIB3_IDP_IDP_METADATA_FILE);
+		usedMetadata.add(StringHelper.removePunctuation(appConfiguration.getOrgInum()) + "-idp-metadata.xml");
 
-			ArrayList<SubversionFile> obsoleteMetadata = new ArrayList<SubversionFile>();
+		Set<String> usedCredentials = new HashSet<String>();
+		Set<String> unparsedInums = new HashSet<String>();
 
-			for (File metadata : metadataDir.listFiles(new FileFilter() {
-				public boolean accept(File pathname) {
-					return pathname.isFile();
-				}
-			})) {
+		for (GluuSAMLTrustRelationship trust : trustService.getAllTrustRelationships()) {
+			if (StringHelper.isNotEmpty(trust.getSpMetaDataFN())) {
+				usedMetadata.add(trust.getSpMetaDataFN());
+			}
 
-				if (metadata.getName().equals(SHIB3_IDP_IDP_METADATA_FILE) || trustRelationExists(metadata.getName())) {
-					continue;
+			if (cleanCredentials) {
+				String inum = StringHelper.removePunctuation(trust.getInum());
+				try {
+					collectUsedCredentials(trust, inum, usedCredentials);
+				} catch (Exception ex) {
+					log.error("Failed to parse filters and profile configurations of TR '{}'. Keeping its credentials", trust.getInum(), ex);
+					unparsedInums.add(inum);
 				}
-
-				obsoleteMetadata.add(new SubversionFile(SHIB3_IDP + File.separator + SHIB3_IDP_METADATA_FOLDER, metadata.getAbsolutePath()));
 			}
+		}
 
-			// SubversionService.instance().commitShibboleth3ConfigurationFiles(organizationService.getOrganization(), new ArrayList<SubversionFile>(), obsoleteMetadata, "Removed Metadata files that are no longer used");
-
-			for (SubversionFile file : obsoleteMetadata) {
-				new File(file.getLocalFile()).delete();
+		List<File> obsoleteFiles = new ArrayList<File>();
+		if (cleanMetadata) {
+			for (File metadata : listFiles(new File(getIdpMetadataDir()))) {
+				if (!usedMetadata.contains(metadata.getName())) {
+					obsoleteFiles.add(metadata);
+				}
 			}
 		}
-	}
-
-	private boolean trustRelationExists(String metadataName) {
 
-		if (metadataName.equals(StringHelper.removePunctuation(appConfiguration.getOrgInum()) + "-idp-metadata.xml")) {
-			return true;
+		if (cleanCredentials) {
+			for (File credential : listFiles(new File(getIdpMetadataCredentialsDir()))) {
+				if (!usedCredentials.contains(credential.getName()) && !containsAny(credential.getName(), unparsedInums)) {
+					obsoleteFiles.add(credential);
+				}
+			}
 		}
 
-		for (GluuSAMLTrustRelationship trust : trustService.getAllTrustRelationships()) {
-			if (metadataName.equals(trust.getSpMetaDataFN())) {
-				return true;
+		// SubversionService.instance().commitShibboleth3ConfigurationFiles(organizationService.getOrganization(), new ArrayList<SubversionFile>(), obsoleteFiles, "Removed Metadata and Credentials files that are no longer used");
+
+		List<String> removedFiles = new ArrayList<String>();
+		for (File file : obsoleteFiles) {
+			if (file.delete()) {
+				removedFiles.add(file.getName());
+			} else {
+				log.warn("Failed to remove unused file '{}'", file.getAbsolutePath());
 			}
 		}
 
-		return false;
+		log.info("Removed '{}' unused metadata and credentials files in '{}' ms: {}", removedFiles.size(),
+				System.currentTimeMillis() - startTime, removedFiles);
 	}
 
-	public void removeUnusedCredentials() {
-
-		if (appConfiguration.getShibboleth3IdpRootDir() == null) {
-			throw new InvalidConfigurationException("Failed to update configuration due to undefined IDP root folder");
+	private void collectUsedCredentials(GluuSAMLTrustRelationship trust, String inum, Set<String> usedCredentials) throws Exception {
+		filterService.parseFilters(trust);
+		if (trust.getMetadataFilters().get("signatureValidation") != null) {
+			usedCredentials.add(inum);
 		}
 
-		File credentialsDir = new File(appConfiguration.getShibboleth3IdpRootDir() + File.separator + SHIB3_IDP_METADATA_CREDENTIALS_FOLDER);
-
-		if (credentialsDir.exists()) {
-
-			ArrayList<SubversionFile> obsoleteMetadata = new ArrayList<SubversionFile>();
-
-			for (File credential : credentialsDir.listFiles(new FileFilter() {
-				public boolean accept(File pathname) {
-					return pathname.isFile();
-				}
-			})) {
-
-				if (filterExists(credential.getName()) || profileCofigurationExists(credential.getName())) {
-					continue;
-				}
-
-				obsoleteMetadata.add(new SubversionFile(SHIB3_IDP + File.separator + SHIB3_IDP_METADATA_CREDENTIALS_FOLDER, credential.getAbsolutePath()));
+		profileConfigurationService.parseProfileConfigurations(trust);
+		Map<String, ProfileConfiguration> profileConfigurations = trust.getProfileConfigurations();
+		for (ProfileConfiguration profileConfiguration : profileConfigurations.values()) {
+			String certFileName = profileConfiguration.getProfileConfigurationCertFileName();
+			if ((certFileName == null) || !certFileName.contains(inum) || certFileName.equals(inum)) {
+				continue;
 			}
 
-			// SubversionService.instance().commitShibboleth3ConfigurationFiles(organizationService.getOrganization(), new ArrayList<SubversionFile>(), obsoleteMetadata, "Removed Credentials files that are no longer used");
-
-			for (SubversionFile file : obsoleteMetadata) {
-				new File(file.getLocalFile()).delete();
+			if (profileConfiguration == profileConfigurations.get(certFileName.replace(inum, ""))) {
+				usedCredentials.add(certFileName);
 			}
 		}
 	}
 
-	private boolean profileCofigurationExists(String credentialName) {
-
-		for (GluuSAMLTrustRelationship trust : trustService.getAllTrustRelationships()) {
-
-			if (credentialName.contains(StringHelper.removePunctuation(trust.getInum())) && !credentialName.equals(StringHelper.removePunctuation(trust.getInum()))) {
-
-				try {
-					profileConfigurationService.parseProfileConfigurations(trust);
-				} catch (Exception e) {
-					e.printStackTrace();
-					return false;
-				}
-
-				ProfileConfiguration profileConfiguration = trust.getProfileConfigurations().get(credentialName.replace(StringHelper.removePunctuation(trust.getInum()), ""));
+	private File[] listFiles(File dir) {
+		if (!dir.exists()) {
+			return new File[0];
+		}
 
-				if (profileConfiguration != null && credentialName.equals(profileConfiguration.getProfileConfigurationCertFileName())) {
-					return true;
-				}
+		File[] files = dir.listFiles(new FileFilter() {
+			public boolean accept(File pathname) {
+				return pathname.isFile();
 			}
-		}
+		});
 
-		return false;
+		return files == null ? new File[0] : files;
 	}
 
-	private boolean filterExists(String credentialName) {
-
-		for (GluuSAMLTrustRelationship trust : trustService.getAllTrustRelationships()) {
-			if (credentialName.equals(StringHelper.removePunctuation(trust.getInum()))) {
-				try {
-					filterService.parseFilters(trust);
-				} catch (Exception e) {
-					e.printStackTrace();
-					return false;
-				}
-				if (trust.getMetadataFilters().get("signatureValidation") != null) {
-					return true;
-				}
+	private boolean containsAny(String name, Set<String> parts) {
+		for (String part : parts) {
+			if (name.contains(part)) {
+				return true;
 			}
 		}
+
 		return false;
 	}
 
@@ -1193,7 +1255,7 @@ public class Shibboleth3ConfService implements Serializable {
 
 		String metadataFolder = getIdpMetadataDir();
 		File metadataFile = new File(metadataFolder + spMetaDataFN);
-		List<String> entityId = SAMLMetadataParser.getEntityIdFromMetadataFile(metadataFile);
+		List<String> entityId = metadataIndexService.getEntityIds(metadataFile);
 		return (entityId != null) && !entityId.isEmpty();
 	}
 
@@ -1268,26 +1330,35 @@ public class Shibboleth3ConfService implements Serializable {
 			return false;
 		}
 
-		String metadataFileContent = HTTPFileDownloader.getResource(spMetaDataURL, "application/xml, text/xml", null, null);
+		if (appConfiguration.getShibboleth3FederationRootDir() == null) {
+			throw new InvalidConfigurationException("Failed to save meta-data file due to undefined federation root folder");
+		}
+
+		String idpMetadataFolderName = getIdpMetadataDir();
+		File metadataFile = new File(idpMetadataFolderName + metadataFileName);
+		File downloadFile = new File(idpMetadataFolderName + metadataFileName + ".download");
 
-		if (StringHelper.isEmpty(metadataFileContent)) {
+		// Download into separate file to keep current metadata if download fails
+		DownloadStatus status = metadataDownloadService.download(spMetaDataURL, downloadFile, metadataFile, metadataFile.exists(),
+				new Protocol("https", new EasyCASSLProtocolSocketFactory(), 443));
+		if (DownloadStatus.NOT_MODIFIED == status) {
+			return true;
+		}
+		if (DownloadStatus.FAILED == status) {
+			FileUtils.deleteQuietly(downloadFile);
 			return false;
 		}
 
-		// Save new file
-		ByteArrayInputStream is;
 		try {
-			byte[] metadataFileContentBytes = metadataFileContent.getBytes("UTF-8");
-			is = new ByteArrayInputStream(metadataFileContentBytes);
-		} catch (UnsupportedEncodingException ex) {
-			ex.printStackTrace();
+			FileUtils.deleteQuietly(metadataFile);
+			FileUtils.moveFile(downloadFile, metadataFile);
+		} catch (IOException ex) {
+			log.error("Failed to write meta-data file '{}'", metadataFile, ex);
+			FileUtils.deleteQuietly(downloadFile);
 			return false;
 		}
 
-		FileUploadWrapper tmpfileWrapper = new FileUploadWrapper();
-		tmpfileWrapper.setStream(is);
-
-		return saveMetadataFile(metadataFileName, tmpfileWrapper.getStream());
+		return true;
 	}
 
 	/**
@@ -1375,23 +1446,36 @@ public class Shibboleth3ConfService implements Serializable {
          * @return GluuErrorHandler
 	 */
 	public GluuErrorHandler validateMetadata(InputStream stream) throws ParserConfigurationException, SAXException, IOException {
-                Schema schema;
-                try {
-                    String idpTemplatesLocation = configurationFactory.getIDPTemplatesLocation();
-                    // String schemaDir = OxTrustConfiguration.DIR + "shibboleth3" + File.separator + "idp" + File.separator + "schema" + File.separator;
-                    String schemaDir = idpTemplatesLocation + "shibboleth3" + File.separator + "idp" + File.separator + "schema" + File.separator;
-                    schema = SchemaBuilder.buildSchema(SchemaLanguage.XML, schemaDir);
-                } catch (Exception e) {
-                    // Schema build error 
-                    final List<String> validationLog = new ArrayList<String>();
-                    validationLog.add(GluuErrorHandler.SCHEMA_CREATING_ERROR_MESSAGE);
-                    validationLog.add(e.getMessage());
-                    // return internal error
-                    return new GluuErrorHandler(false, true, validationLog);
-                }
+		Schema schema;
+		try {
+			schema = buildMetadataSchema();
+		} catch (Exception e) {
+			// Schema build error
+			final List<String> validationLog = new ArrayList<String>();
+			validationLog.add(GluuErrorHandler.SCHEMA_CREATING_ERROR_MESSAGE);
+			validationLog.add(e.getMessage());
+			// return internal error
+			return new GluuErrorHandler(false, true, validationLog);
+		}
+
+		return validateMetadata(stream, schema);
+	}
+
+	/*
+	 * Validate metadata against prepared schema. Schema is thread safe and can be shared between validations
+	 */
+	public GluuErrorHandler validateMetadata(InputStream stream, Schema schema) throws ParserConfigurationException, SAXException, IOException {
 		return XMLValidator.validateMetadata(stream, schema);
 	}
 
+	public Schema buildMetadataSchema() throws Exception {
+		String idpTemplatesLocation = configurationFactory.getIDPTemplatesLocation();
+		// String schemaDir = OxTrustConfiguration.DIR + "shibboleth3" + File.separator + "idp" + File.separator + "schema" + File.separator;
+		String schemaDir = idpTemplatesLocation + "shibboleth3" + File.separator + "idp" + File.separator + "schema" + File.separator;
+
+		return SchemaBuilder.buildSchema(SchemaLanguage.XML, schemaDir);
+	}
+
 	public  boolean existsResourceUri(String URLName) {
 
 		try {
@@ -1496,7 +1580,6 @@ public class Shibboleth3ConfService implements Serializable {
 	 * @return
 	 */
 	public boolean isFederation(GluuSAMLTrustRelationship trustRelationship) {
-	    //TODO: optimize this method. should not take so long
 		return isFederationMetadata(trustRelationship.getSpMetaDataFN());
 	}
         
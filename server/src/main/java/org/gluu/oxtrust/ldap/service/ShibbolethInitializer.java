@@ -89,8 +89,7 @@ public class ShibbolethInitializer {
 			shibboleth3ConfService.generateMetadataFiles(gluuSP);
 			shibboleth3ConfService.generateConfigurationFiles(trustRelationships);
 
-			shibboleth3ConfService.removeUnusedCredentials();
-			shibboleth3ConfService.removeUnusedMetadata();
+			shibboleth3ConfService.removeUnusedMetadataAndCredentials();
 
 			if (servicesNeedRestarting) {
 				applianceService.restartServices();
@@ -7,18 +7,23 @@
 package org.gluu.oxtrust.ldap.service;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.io.StringWriter;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
 import org.apache.velocity.app.Velocity;
 import org.gluu.oxtrust.config.ConfigurationFactory;
@@ -45,6 +50,8 @@ public class TemplateService implements Serializable {
 	@Inject
 	private AppConfiguration appConfiguration;
 
+	private Map<String, ConfFileHash> confFileHashes = new ConcurrentHashMap<String, ConfFileHash>();
+
 	/*
 	 * Generate relying-party.xml using relying-party.xml.vm template
 	 */
@@ -60,6 +67,30 @@ public class TemplateService implements Serializable {
 		return sw.toString();
 	}
 
+	/*
+	 * Load template. Loaded template can be merged many times
+	 */
+	public Template getTemplate(String template) {
+		try {
+			return Velocity.getTemplate(template + ".vm", "UTF-8");
+		} catch (Exception ex) {
+			log.error("Failed to load velocity template '{}'", template, ex);
+			return null;
+		}
+	}
+
+	public String generateConfFile(Template template, VelocityContext context) {
+		StringWriter sw = new StringWriter();
+		try {
+			template.merge(context, sw);
+		} catch (Exception ex) {
+			log.error("Failed to merge velocity template '{}'", template.getName(), ex);
+			return null;
+		}
+
+		return sw.toString();
+	}
+
 	public boolean writeConfFile(String confFile, String conf) {
 		try {
 			FileUtils.writeStringToFile(new File(confFile), conf, "UTF-8");
@@ -72,6 +103,57 @@ public class TemplateService implements Serializable {
 		return true;
 	}
 
+	/*
+	 * Write configuration file only if it content differs from the file on
+	 * disk. It allows to avoid needless IDP configuration reloads
+	 */
+	public boolean writeConfFileIfChanged(String confFile, String conf) {
+		if (conf == null) {
+			return false;
+		}
+
+		File file = new File(confFile);
+		String confHash = DigestUtils.sha256Hex(conf);
+		if (confHash.equals(getConfFileHash(file))) {
+			log.debug("IDP configuration file '{}' is up to date", confFile);
+			return true;
+		}
+
+		boolean result = writeConfFile(confFile, conf);
+		if (result) {
+			confFileHashes.put(file.getAbsolutePath(), new ConfFileHash(confHash, file.lastModified(), file.length()));
+		}
+
+		return result;
+	}
+
+	private String getConfFileHash(File file) {
+		if (!file.isFile()) {
+			return null;
+		}
+
+		String path = file.getAbsolutePath();
+		ConfFileHash confFileHash = confFileHashes.get(path);
+		if ((confFileHash != null) && (confFileHash.lastModified == file.lastModified()) && (confFileHash.length == file.length())) {
+			return confFileHash.hash;
+		}
+
+		InputStream is = null;
+		try {
+			is = new FileInputStream(file);
+			confFileHash = new ConfFileHash(DigestUtils.sha256Hex(is), file.lastModified(), file.length());
+		} catch (IOException ex) {
+			log.error("Failed to calculate hash of IDP configuration file '{}'", path, ex);
+			return null;
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+
+		confFileHashes.put(path, confFileHash);
+
+		return confFileHash.hash;
+	}
+
 	/*
 	 * Load Velocity configuration from classpath
 	 */
@@ -99,10 +181,12 @@ public class TemplateService implements Serializable {
 						+ File.separator + "conf";
 				String folder7 = idpTemplatesLocation + "template"
 						+ File.separator + "shibboleth3";
+				String folder8 = idpTemplatesLocation + "shibboleth3"
+						+ File.separator + "idp" + File.separator + "TrustFragment";
 				properties.setProperty("file.resource.loader.path", folder1 + ", " + folder2 + ", " + folder3 + ", " + folder4 + ", "
-						+ folder5 + ", " + folder6  + ", " + folder7);
+						+ folder5 + ", " + folder6  + ", " + folder7 + ", " + folder8);
 				log.info("file.resource.loader.path = " + folder1 + ", " + folder2 + ", " + folder3 + ", " + folder4 + ", "
-						+ folder5 + ", " + folder6 + ", " + folder7);
+						+ folder5 + ", " + folder6 + ", " + folder7 + ", " + folder8);
 			}
 		} catch (IOException ex) {
 			log.error("Failed to load velocity.properties", ex);
@@ -124,4 +208,20 @@ public class TemplateService implements Serializable {
 		}
 	}
 
+	private static class ConfFileHash implements Serializable {
+
+		private static final long serialVersionUID = -2395405733467218323L;
+
+		private final String hash;
+		private final long lastModified;
+		private final long length;
+
+		public ConfFileHash(String hash, long lastModified, long length) {
+			this.hash = hash;
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+
+	}
+
 }
@@ -0,0 +1,117 @@
+/*
+ * oxTrust is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxtrust.ldap.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.gluu.oxtrust.model.GluuSAMLTrustRelationship;
+import org.slf4j.Logger;
+
+/**
+ * Keeps parts of IDP configuration files rendered for single trust
+ * relationship. Fragment is rendered again only after its template or key of
+ * trust relationship changes
+ */
+@ApplicationScoped
+@Named
+public class TrustConfFragmentService {
+
+	@Inject
+	private Logger log;
+
+	@Inject
+	private TemplateService templateService;
+
+	private Map<String, ConfFragment> fragments = new ConcurrentHashMap<String, ConfFragment>();
+
+	/**
+	 * Render fragment of every trust relationship
+	 *
+	 * @param fragmentTemplate
+	 *            Template which renders single trust relationship. It gets
+	 *            trust relationship in "trustRelationship" variable
+	 * @param trustKeys
+	 *            Key of every trust relationship by inum. It should change
+	 *            when anything fragment depends on changes. Fragments of trust
+	 *            relationships without key are always rendered
+	 * @param context
+	 *            Context shared by all trust relationships
+	 * @return Fragments in order of trust relationships or null on failure
+	 */
+	public List<String> generateFragments(String fragmentTemplate, List<GluuSAMLTrustRelationship> trustRelationships,
+			Map<String, String> trustKeys, VelocityContext context) {
+		Template template = templateService.getTemplate(fragmentTemplate);
+		if (template == null) {
+			return null;
+		}
+
+		int rendered = 0;
+		Set<String> fragmentIds = new HashSet<String>();
+		List<String> result = new ArrayList<String>(trustRelationships.size());
+		for (GluuSAMLTrustRelationship trustRelationship : trustRelationships) {
+			String fragmentId = fragmentTemplate + "#" + trustRelationship.getInum();
+			fragmentIds.add(fragmentId);
+
+			String trustKey = trustKeys.get(trustRelationship.getInum());
+			String key = (trustKey == null) ? null : template.getLastModified() + ":" + trustKey;
+
+			ConfFragment fragment = fragments.get(fragmentId);
+			if ((fragment == null) || (key == null) || !key.equals(fragment.key)) {
+				VelocityContext trustContext = new VelocityContext(context);
+				trustContext.put("trustRelationship", trustRelationship);
+
+				String conf = templateService.generateConfFile(template, trustContext);
+				if (conf == null) {
+					return null;
+				}
+
+				fragment = new ConfFragment(key, conf);
+				fragments.put(fragmentId, fragment);
+				rendered++;
+			}
+
+			result.add(fragment.conf);
+		}
+
+		// Forget fragments of removed trust relationships
+		for (Iterator<String> it = fragments.keySet().iterator(); it.hasNext();) {
+			String fragmentId = it.next();
+			if (fragmentId.startsWith(fragmentTemplate + "#") && !fragmentIds.contains(fragmentId)) {
+				it.remove();
+			}
+		}
+
+		log.debug("Rendered '{}' of '{}' fragments with template '{}'", rendered, trustRelationships.size(), fragmentTemplate);
+
+		return result;
+	}
+
+	private static class ConfFragment {
+
+		private final String key;
+		private final String conf;
+
+		public ConfFragment(String key, String conf) {
+			this.key = key;
+			this.conf = conf;
+		}
+
+	}
+
+}
@@ -0,0 +1,295 @@
+/*
+ * oxTrust is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxtrust.ldap.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.apache.commons.lang.SerializationUtils;
+import org.gluu.oxtrust.model.GluuSAMLTrustRelationship;
+import org.slf4j.Logger;
+import org.xdi.util.StringHelper;
+
+/**
+ * In-memory index of trust relationships by unpunctuated inum, DN and
+ * container federation. Changes update only keys of changed entry. Entries are
+ * shared with callers and should be treated as read-only. Callers which need
+ * to change entry should work on copy
+ */
+@ApplicationScoped
+@Named
+public class TrustIndexService {
+
+	private static final long DEFAULT_RECONCILE_INTERVAL = 5 * 60 * 1000L; // 5 minutes
+
+	@Inject
+	private Logger log;
+
+	private volatile Index index;
+
+	private final ReentrantLock loadLock = new ReentrantLock();
+
+	// Changes made while snapshot is loaded from LDAP. They are applied on top
+	// of loaded entries, because load might not see them
+	private List<Change> changesDuringLoad;
+
+	/**
+	 * Reload index from LDAP if it's missing or older than reconcile
+	 * interval. Only one caller loads at a time. Others keep using current
+	 * index or wait for the first one if there is no index yet
+	 */
+	public void reconcile(TrustRelationshipLoader loader) {
+		if (!isStale()) {
+			return;
+		}
+
+		if (this.snapshot == null) {
+			loadLock.lock();
+		} else if (!loadLock.tryLock()) {
+			return;
+		}
+
+		try {
+			if (!isStale()) {
+				return;
+			}
+
+			synchronized (this) {
+				this.changesDuringLoad = new ArrayList<Change>();
+			}
+
+			List<GluuSAMLTrustRelationship> trustRelationships = null;
+			try {
+				trustRelationships = loader.load();
+			} finally {
+				if (trustRelationships == null) {
+					synchronized (this) {
+						this.changesDuringLoad = null;
+					}
+				}
+			}
+
+			reload(trustRelationships);
+		} finally {
+			loadLock.unlock();
+		}
+	}
+
+	private boolean isStale() {
+		Index current = this.index;
+		return (current == null) || (System.currentTimeMillis() - current.loadedAt > DEFAULT_RECONCILE_INTERVAL);
+	}
+
+	private synchronized void reload(List<GluuSAMLTrustRelationship> trustRelationships) {
+		Index loaded = new Index(System.currentTimeMillis());
+		for (GluuSAMLTrustRelationship trustRelationship : trustRelationships) {
+			if (StringHelper.isNotEmpty(trustRelationship.getDn())) {
+				loaded.apply(new Change(normalizeDn(trustRelationship.getDn()), trustRelationship));
+			}
+		}
+
+		for (Change change : this.changesDuringLoad) {
+			loaded.apply(change);
+		}
+		log.debug("Trust relationships index reloaded. TR count: '{}', changes during load: '{}'", loaded.byDn.size(),
+				this.changesDuringLoad.size());
+
+		this.changesDuringLoad = null;
+		this.index = loaded;
+	}
+
+	public synchronized void put(GluuSAMLTrustRelationship trustRelationship) {
+		if (StringHelper.isEmpty(trustRelationship.getDn())) {
+			return;
+		}
+
+		// Caller keeps working with own instance after update
+		GluuSAMLTrustRelationship copy = (GluuSAMLTrustRelationship) SerializationUtils.clone(trustRelationship);
+		applyChange(new Change(normalizeDn(trustRelationship.getDn()), copy));
+	}
+
+	public synchronized void remove(GluuSAMLTrustRelationship trustRelationship) {
+		if (StringHelper.isEmpty(trustRelationship.getDn())) {
+			return;
+		}
+
+		applyChange(new Change(normalizeDn(trustRelationship.getDn()), null));
+	}
+
+	private void applyChange(Change change) {
+		if (this.changesDuringLoad != null) {
+			this.changesDuringLoad.add(change);
+		}
+
+		Index current = this.index;
+		if (current != null) {
+			current.apply(change);
+		}
+	}
+
+	/**
+	 * Returned entry is shared and should not be changed
+	 */
+	public GluuSAMLTrustRelationship getByUnpunctuatedInum(String unpunctuatedInum) {
+		Index current = this.index;
+		if ((current == null) || (unpunctuatedInum == null)) {
+			return null;
+		}
+
+		return current.byUnpunctuatedInum.get(unpunctuatedInum);
+	}
+
+	/**
+	 * Returned entry is shared and should not be changed
+	 */
+	public GluuSAMLTrustRelationship getByDn(String dn) {
+		Index current = this.index;
+		if ((current == null) || StringHelper.isEmpty(dn)) {
+			return null;
+		}
+
+		return current.byDn.get(normalizeDn(dn));
+	}
+
+	/**
+	 * Returned list can't be modified. Entries in it are shared and should not
+	 * be changed
+	 */
+	public List<GluuSAMLTrustRelationship> getByContainerFederation(String federationDn) {
+		Index current = this.index;
+		if ((current == null) || StringHelper.isEmpty(federationDn)) {
+			return Collections.emptyList();
+		}
+
+		List<GluuSAMLTrustRelationship> result = current.byContainerFederation.get(normalizeDn(federationDn));
+		if (result == null) {
+			return Collections.emptyList();
+		}
+
+		return result;
+	}
+
+	private static String normalizeDn(String dn) {
+		return dn.toLowerCase().replaceAll("\\s*,\\s*", ",");
+	}
+
+	/**
+	 * Loads all trust relationships from LDAP
+	 */
+	public interface TrustRelationshipLoader {
+
+		List<GluuSAMLTrustRelationship> load();
+
+	}
+
+	private static final class Change {
+
+		private final String dn;
+		private final GluuSAMLTrustRelationship trustRelationship;
+
+		private Change(String dn, GluuSAMLTrustRelationship trustRelationship) {
+			this.dn = dn;
+			this.trustRelationship = trustRelationship;
+		}
+
+	}
+
+	private static final class Index {
+
+		private final long loadedAt;
+
+		private final Map<String, GluuSAMLTrustRelationship> byDn = new ConcurrentHashMap<String, GluuSAMLTrustRelationship>();
+		private final Map<String, GluuSAMLTrustRelationship> byUnpunctuatedInum = new ConcurrentHashMap<String, GluuSAMLTrustRelationship>();
+		private final Map<String, List<GluuSAMLTrustRelationship>> byContainerFederation = new ConcurrentHashMap<String, List<GluuSAMLTrustRelationship>>();
+
+		private Index(long loadedAt) {
+			this.loadedAt = loadedAt;
+		}
+
+		/**
+		 * Replace entry with the same DN. Callers should be synchronized
+		 */
+		private void apply(Change change) {
+			GluuSAMLTrustRelationship previous;
+			if (change.trustRelationship == null) {
+				previous = byDn.remove(change.dn);
+			} else {
+				previous = byDn.put(change.dn, change.trustRelationship);
+			}
+
+			if (previous != null) {
+				removeKeys(change.dn, previous);
+			}
+
+			if (change.trustRelationship != null) {
+				addKeys(change.trustRelationship);
+			}
+		}
+
+		private void addKeys(GluuSAMLTrustRelationship trustRelationship) {
+			String inum = trustRelationship.getInum();
+			if (StringHelper.isNotEmpty(inum)) {
+				byUnpunctuatedInum.put(StringHelper.removePunctuation(inum), trustRelationship);
+			}
+
+			String containerFederation = trustRelationship.getGluuContainerFederation();
+			if (StringHelper.isNotEmpty(containerFederation)) {
+				String key = normalizeDn(containerFederation);
+				List<GluuSAMLTrustRelationship> values = new ArrayList<GluuSAMLTrustRelationship>();
+				List<GluuSAMLTrustRelationship> current = byContainerFederation.get(key);
+				if (current != null) {
+					values.addAll(current);
+				}
+				values.add(trustRelationship);
+
+				byContainerFederation.put(key, Collections.unmodifiableList(values));
+			}
+		}
+
+		private void removeKeys(String dn, GluuSAMLTrustRelationship trustRelationship) {
+			String inum = trustRelationship.getInum();
+			if (StringHelper.isNotEmpty(inum)) {
+				String key = StringHelper.removePunctuation(inum);
+				if (byUnpunctuatedInum.get(key) == trustRelationship) {
+					byUnpunctuatedInum.remove(key);
+				}
+			}
+
+			String containerFederation = trustRelationship.getGluuContainerFederation();
+			if (StringHelper.isNotEmpty(containerFederation)) {
+				String key = normalizeDn(containerFederation);
+				List<GluuSAMLTrustRelationship> current = byContainerFederation.get(key);
+				if (current == null) {
+					return;
+				}
+
+				List<GluuSAMLTrustRelationship> values = new ArrayList<GluuSAMLTrustRelationship>();
+				for (GluuSAMLTrustRelationship value : current) {
+					if (!dn.equals(normalizeDn(value.getDn()))) {
+						values.add(value);
+					}
+				}
+
+				if (values.isEmpty()) {
+					byContainerFederation.remove(key);
+				} else {
+					byContainerFederation.put(key, Collections.unmodifiableList(values));
+				}
+			}
+		}
+
+	}
+
+}
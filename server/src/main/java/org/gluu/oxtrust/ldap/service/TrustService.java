@@ -6,6 +6,7 @@
 
 package org.gluu.oxtrust.ldap.service;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -14,9 +15,13 @@ import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.apache.commons.lang.SerializationUtils;
 import org.apache.commons.lang.StringUtils;
 import org.gluu.jsf2.message.FacesMessages;
 import org.gluu.jsf2.model.RenderParameters;
+import org.gluu.oxtrust.ldap.service.ClusterWriteService.ClusterOperation;
+import org.gluu.oxtrust.ldap.service.PagedSearchService.EntryHandler;
+import org.gluu.oxtrust.ldap.service.TrustIndexService.TrustRelationshipLoader;
 import org.gluu.oxtrust.model.GluuAppliance;
 import org.gluu.oxtrust.model.GluuCustomAttribute;
 import org.gluu.oxtrust.model.GluuMetadataSourceType;
@@ -25,6 +30,8 @@ import org.gluu.oxtrust.model.OrganizationalUnit;
 import org.gluu.oxtrust.service.render.RenderService;
 import org.gluu.oxtrust.util.OxTrustConstants;
 import org.gluu.persist.ldap.impl.LdapEntryManager;
+import org.gluu.persist.model.ListViewResponse;
+import org.gluu.persist.model.SortOrder;
 import org.gluu.persist.model.base.GluuStatus;
 import org.gluu.persist.model.base.InumEntry;
 import org.slf4j.Logger;
@@ -38,6 +45,8 @@ import org.xdi.util.StringHelper;
 
 import org.gluu.search.filter.Filter;
 
+import com.unboundid.ldap.sdk.LDAPException;
+
 /**
  * Provides operations with trust relationships
  * 
@@ -81,88 +90,82 @@ public class TrustService implements Serializable {
     @Inject
     private RenderService renderService;
 
+	@Inject
+	private TrustIndexService trustIndexService;
+
+	@Inject
+	private ClusterWriteService clusterWriteService;
+
+	@Inject
+	private PagedSearchService pagedSearchService;
+
 	public static final String GENERATED_SSL_ARTIFACTS_DIR = "ssl";
 
 	public void addTrustRelationship(GluuSAMLTrustRelationship trustRelationship) {
 		log.info("Creating TR " + trustRelationship.getInum());
-		String[] clusterMembers = appConfiguration.getClusteredInums();
-		String applianceInum = appConfiguration.getApplianceInum();
-		if (clusterMembers == null || clusterMembers.length == 0) {
-			log.debug("there is no cluster configuration. Assuming standalone appliance.");
-			clusterMembers = new String[] { applianceInum };
-		}
-
-		String dn = trustRelationship.getDn();
-		for (String clusterMember : clusterMembers) {
-			String clusteredDN = StringHelper.replaceLast(dn, applianceInum, clusterMember);
-			trustRelationship.setDn(clusteredDN);
-			GluuSAMLTrustRelationship tr = new GluuSAMLTrustRelationship();
-			tr.setDn(trustRelationship.getDn());
-			if(! containsTrustRelationship(tr)){
-				log.debug("Adding TR" + clusteredDN);
-				OrganizationalUnit ou = new OrganizationalUnit();
-				ou.setDn(getDnForTrustRelationShip(null));
-		        if(! ldapEntryManager.contains(ou)){
-		            ldapEntryManager.persist(ou);
-		        }
-				ldapEntryManager.persist(trustRelationship);
-			}else{
-				ldapEntryManager.merge(trustRelationship);
+		addTrustRelationshipsOrganizationalUnit();
+		clusterWriteService.execute("persist", trustRelationship, new ClusterOperation<GluuSAMLTrustRelationship>() {
+			@Override
+			public void execute(GluuSAMLTrustRelationship entry) {
+				GluuSAMLTrustRelationship tr = new GluuSAMLTrustRelationship();
+				tr.setDn(entry.getDn());
+				if(! containsTrustRelationship(tr)){
+					log.debug("Adding TR" + entry.getDn());
+					ldapEntryManager.persist(entry);
+				}else{
+					ldapEntryManager.merge(entry);
+				}
 			}
-		}
-		trustRelationship.setDn(dn);
+		});
+		trustIndexService.put(trustRelationship);
 	}
 
 	public void updateTrustRelationship(GluuSAMLTrustRelationship trustRelationship) {
 		log.debug("Updating TR " + trustRelationship.getInum());
-		String[] clusterMembers = appConfiguration.getClusteredInums();
-		String applianceInum = appConfiguration.getApplianceInum();
-		if (clusterMembers == null || clusterMembers.length == 0) {
-			log.debug("there is no cluster configuration. Assuming standalone appliance.");
-			clusterMembers = new String[] { applianceInum };
-		}
-		String dn = trustRelationship.getDn();
-		for (String clusterMember : clusterMembers) {
-			String clusteredDN = StringHelper.replaceLast(dn, applianceInum, clusterMember);
-			trustRelationship.setDn(clusteredDN);
-			GluuSAMLTrustRelationship tr = new GluuSAMLTrustRelationship();
-			tr.setDn(trustRelationship.getDn());
-			if(containsTrustRelationship(tr)){
-				log.trace("Updating TR" + clusteredDN);
-				ldapEntryManager.merge(trustRelationship);
-			}else{
-			    OrganizationalUnit ou = new OrganizationalUnit();
-                ou.setDn(getDnForTrustRelationShip(null));
-                if(! ldapEntryManager.contains(ou)){
-                    ldapEntryManager.persist(ou);
-                }
-				ldapEntryManager.persist(trustRelationship);
+		addTrustRelationshipsOrganizationalUnit();
+		clusterWriteService.execute("merge", trustRelationship, new ClusterOperation<GluuSAMLTrustRelationship>() {
+			@Override
+			public void execute(GluuSAMLTrustRelationship entry) {
+				GluuSAMLTrustRelationship tr = new GluuSAMLTrustRelationship();
+				tr.setDn(entry.getDn());
+				if(containsTrustRelationship(tr)){
+					log.trace("Updating TR" + entry.getDn());
+					ldapEntryManager.merge(entry);
+				}else{
+					ldapEntryManager.persist(entry);
+				}
 			}
-		}
-		trustRelationship.setDn(dn);
+		});
+		trustIndexService.put(trustRelationship);
 	}
 
 	public void removeTrustRelationship(GluuSAMLTrustRelationship trustRelationship) {
 		log.info("Removing TR " + trustRelationship.getInum());
-		String[] clusterMembers = appConfiguration.getClusteredInums();
-		String applianceInum = appConfiguration.getApplianceInum();
-		if (clusterMembers == null || clusterMembers.length == 0) {
-			log.debug("there is no cluster configuration. Assuming standalone appliance.");
-			clusterMembers = new String[] { applianceInum };
-		}
-		String dn = trustRelationship.getDn();
-		for (String clusterMember : clusterMembers) {
-			String clusteredDN = StringHelper.replaceLast(dn, applianceInum, clusterMember);
-			trustRelationship.setDn(clusteredDN);
-			GluuSAMLTrustRelationship tr = new GluuSAMLTrustRelationship();
-			tr.setDn(trustRelationship.getDn());
-			if(containsTrustRelationship(tr)){
-				log.debug("Removing TR" + clusteredDN);
-				ldapEntryManager.remove(trustRelationship);
+		clusterWriteService.execute("remove", trustRelationship, new ClusterOperation<GluuSAMLTrustRelationship>() {
+			@Override
+			public void execute(GluuSAMLTrustRelationship entry) {
+				GluuSAMLTrustRelationship tr = new GluuSAMLTrustRelationship();
+				tr.setDn(entry.getDn());
+				if(containsTrustRelationship(tr)){
+					log.debug("Removing TR" + entry.getDn());
+					ldapEntryManager.remove(entry);
+				}
 			}
-		}
-		trustRelationship.setDn(dn);
+		});
+		trustIndexService.remove(trustRelationship);
+
+	}
 
+	/**
+	 * Create trust relationships branch before cluster members entries are
+	 * written concurrently
+	 */
+	private void addTrustRelationshipsOrganizationalUnit() {
+		OrganizationalUnit ou = new OrganizationalUnit();
+		ou.setDn(getDnForTrustRelationShip(null));
+		if(! ldapEntryManager.contains(ou)){
+			ldapEntryManager.persist(ou);
+		}
 	}
 
 	public GluuSAMLTrustRelationship getRelationshipByInum(String inum) {
@@ -184,6 +187,27 @@ public class TrustService implements Serializable {
 		return ldapEntryManager.findEntries(getDnForTrustRelationShip(null), GluuSAMLTrustRelationship.class, null);
 	}
 
+	/**
+	 * Get page of trust relationships ordered by inum
+	 * 
+	 * @param startIndex
+	 *            1-based index of first trust relationship
+	 * @param count
+	 *            Page size
+	 * @return Page of trust relationships
+	 */
+	public ListViewResponse<GluuSAMLTrustRelationship> getTrustRelationships(int startIndex, int count) {
+		return ldapEntryManager.findListViewResponse(getDnForTrustRelationShip(null), GluuSAMLTrustRelationship.class,
+				Filter.createPresenceFilter(OxTrustConstants.inum), startIndex, count, count, OxTrustConstants.inum, SortOrder.ASCENDING, null);
+	}
+
+	/**
+	 * Pass all trust relationships to handler as they arrive from LDAP
+	 */
+	public void streamTrustRelationships(EntryHandler<GluuSAMLTrustRelationship> entryHandler) throws LDAPException, IOException {
+		pagedSearchService.searchEntries(getDnForTrustRelationShip(null), GluuSAMLTrustRelationship.class, null, entryHandler);
+	}
+
 	public List<GluuSAMLTrustRelationship> getAllActiveTrustRelationships() {
 		GluuSAMLTrustRelationship trustRelationship = new GluuSAMLTrustRelationship();
 		trustRelationship.setBaseDn(getDnForTrustRelationShip(null));
@@ -385,28 +409,61 @@ public class TrustService implements Serializable {
 	// trustRelationship.setGluuTrustDeconstruction(gluuTrustDeconstruction);
 	// }
 
+	/**
+	 * Return federated trust relationships from index. They are shared and
+	 * should be copied with {@link #copyTrustRelationship} before change
+	 */
 	public List<GluuSAMLTrustRelationship> getDeconstructedTrustRelationships(GluuSAMLTrustRelationship trustRelationship) {
-		List<GluuSAMLTrustRelationship> result = new ArrayList<GluuSAMLTrustRelationship>();
-		for (GluuSAMLTrustRelationship trust : getAllTrustRelationships()) {
-			if (trustRelationship.equals(getTrustContainerFederation(trust))) {
-				result.add(trust);
-			}
-		}
-		return result;
+		return getTrustIndex().getByContainerFederation(trustRelationship.getDn());
 	}
 
+	/**
+	 * Return trust relationship from index. It's shared and should be copied
+	 * with {@link #copyTrustRelationship} before change
+	 */
 	public GluuSAMLTrustRelationship getTrustByUnpunctuatedInum(String unpunctuated) {
-		for (GluuSAMLTrustRelationship trust : getAllTrustRelationships()) {
-			if (StringHelper.removePunctuation(trust.getInum()).equals(unpunctuated)) {
-				return trust;
-			}
+		return getTrustIndex().getByUnpunctuatedInum(unpunctuated);
+	}
+
+	/**
+	 * Return container federation from index. It's shared and should be copied
+	 * with {@link #copyTrustRelationship} before change
+	 */
+	public GluuSAMLTrustRelationship getTrustContainerFederation(GluuSAMLTrustRelationship trustRelationship) {
+		return getTrustIndex().getByDn(trustRelationship.getGluuContainerFederation());
+	}
+
+	/**
+	 * Copy trust relationship returned from index before changing it
+	 * 
+	 * @param trustRelationship
+	 *            Trust relationship
+	 * @return Copy of trust relationship
+	 */
+	public GluuSAMLTrustRelationship copyTrustRelationship(GluuSAMLTrustRelationship trustRelationship) {
+		if (trustRelationship == null) {
+			return null;
 		}
-		return null;
+
+		return (GluuSAMLTrustRelationship) SerializationUtils.clone(trustRelationship);
+	}
+
+	/**
+	 * Return trust relationships index. Index is reconciled with LDAP
+	 * periodically to pick up changes made by other cluster members
+	 * 
+	 * @return Trust relationships index
+	 */
+	private TrustIndexService getTrustIndex() {
+		trustIndexService.reconcile(new TrustRelationshipLoader() {
+			@Override
+			public List<GluuSAMLTrustRelationship> load() {
+				return getAllTrustRelationships();
+			}
+		});
+
+		return trustIndexService;
 	}
-        
-        public GluuSAMLTrustRelationship getTrustContainerFederation(GluuSAMLTrustRelationship trustRelationship) {
-            return getRelationshipByDn(trustRelationship.getGluuContainerFederation());
-        }
 	
 	public List<GluuSAMLTrustRelationship> searchSAMLTrustRelationships(String pattern, int sizeLimit) {
 		String[] targetArray = new String[] { pattern };
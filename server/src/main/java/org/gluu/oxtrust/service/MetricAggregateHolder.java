@@ -0,0 +1,65 @@
+/*
+ * oxTrust is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxtrust.service;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Named;
+
+import org.xdi.model.metric.MetricType;
+
+/**
+ * Keeps per-day counter totals of completed days. Counters of completed day
+ * don't change, so they are computed from metric entries only once
+ */
+@ApplicationScoped
+@Named
+public class MetricAggregateHolder {
+
+	private Map<MetricType, Map<String, Long>> aggregates = new ConcurrentHashMap<MetricType, Map<String, Long>>();
+
+	/**
+	 * @param day
+	 *            Day in yyyy-MM-dd format
+	 * @return Total count or null if it's not computed yet
+	 */
+	public Long get(MetricType metricType, String day) {
+		Map<String, Long> dayAggregates = aggregates.get(metricType);
+		if (dayAggregates == null) {
+			return null;
+		}
+
+		return dayAggregates.get(day);
+	}
+
+	public void put(MetricType metricType, String day, long count) {
+		Map<String, Long> dayAggregates = aggregates.get(metricType);
+		if (dayAggregates == null) {
+			dayAggregates = new ConcurrentHashMap<String, Long>();
+			aggregates.put(metricType, dayAggregates);
+		}
+
+		dayAggregates.put(day, count);
+	}
+
+	/**
+	 * Remove totals of days before specified day
+	 */
+	public void removeBefore(String day) {
+		for (Map<String, Long> dayAggregates : aggregates.values()) {
+			for (Iterator<String> it = dayAggregates.keySet().iterator(); it.hasNext();) {
+				if (it.next().compareTo(day) < 0) {
+					it.remove();
+				}
+			}
+		}
+	}
+
+}
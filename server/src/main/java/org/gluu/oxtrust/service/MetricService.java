@@ -10,9 +10,11 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.ejb.Stateless;
 import javax.enterprise.inject.Instance;
@@ -32,6 +34,8 @@ import org.xdi.model.metric.counter.CounterMetricEntry;
 import org.xdi.model.metric.ldap.MetricEntry;
 import org.xdi.service.CacheService;
 
+import com.codahale.metrics.MetricRegistry;
+
 /**
  * Store and retrieve metric
  *
@@ -68,6 +72,9 @@ public class MetricService extends org.xdi.service.metric.MetricService {
 	@Inject
 	private AppConfiguration appConfiguration;
 
+	@Inject
+	private MetricAggregateHolder metricAggregateHolder;
+
     public void initTimer() {
     	initTimer(this.appConfiguration.getMetricReporterInterval());
     }
@@ -89,17 +96,50 @@ public class MetricService extends org.xdi.service.metric.MetricService {
 		return instance.get();
 	}
 
+	/**
+	 * Record duration of oxTrust operation in metric registry
+	 * 
+	 * @param name
+	 *            Timer name
+	 * @param duration
+	 *            Duration in milliseconds
+	 */
+	public void updateTimer(String name, long duration) {
+		MetricRegistry metricRegistry = getMetricRegistry();
+		if (metricRegistry == null) {
+			log.debug("Metric registry isn't initialized. Skipping timer '{}' update", name);
+			return;
+		}
+
+		metricRegistry.timer(MetricRegistry.name(MetricService.class, name)).update(duration, TimeUnit.MILLISECONDS);
+	}
+
 	public AuthenticationChartDto genereateAuthenticationChartDto(int countDays) {
 		String key = OxTrustConstants.CACHE_METRICS_KEY + "#home";
 		AuthenticationChartDto authenticationChartDto = (AuthenticationChartDto) cacheService.get(OxTrustConstants.CACHE_METRICS_NAME, key);
 		if (authenticationChartDto != null) {
 			return authenticationChartDto;
 		}
-		
-		Map<MetricType, List<? extends MetricEntry>> entries = findAuthenticationMetrics(-countDays);
+
+		List<String> days = getDays(countDays);
+		metricAggregateHolder.removeBefore(days.get(0));
+
+		// Only days without computed totals and current day need metric entries
+		int firstLoadedDay = days.size() - 1;
+		for (int i = 0; i < days.size() - 1; i++) {
+			if ((metricAggregateHolder.get(MetricType.OXAUTH_USER_AUTHENTICATION_SUCCESS, days.get(i)) == null)
+					|| (metricAggregateHolder.get(MetricType.OXAUTH_USER_AUTHENTICATION_FAILURES, days.get(i)) == null)) {
+				firstLoadedDay = i;
+				break;
+			}
+		}
+
+		// Load previous day too to get counter value before first loaded day
+		Map<MetricType, List<? extends MetricEntry>> entries = findAuthenticationMetrics(getDayStart(countDays - firstLoadedDay + 1));
 
 		String[] labels = new String[countDays];
-		Map<String, Long> successStats = calculateCounterStatistics(countDays, (List<CounterMetricEntry>) entries.get(MetricType.OXAUTH_USER_AUTHENTICATION_SUCCESS));
+		Map<String, Long> successStats = calculateCounterStatistics(days, firstLoadedDay, MetricType.OXAUTH_USER_AUTHENTICATION_SUCCESS,
+				(List<CounterMetricEntry>) entries.get(MetricType.OXAUTH_USER_AUTHENTICATION_SUCCESS));
 		labels = successStats.keySet().toArray(labels);
 
 		Long[] values = new Long[countDays];
@@ -110,7 +150,8 @@ public class MetricService extends org.xdi.service.metric.MetricService {
 		authenticationChartDto.setLabels(labels);
 		authenticationChartDto.setSuccess(values);
 
-		Map<String, Long> failureStats = calculateCounterStatistics(countDays, (List<CounterMetricEntry>) entries.get(MetricType.OXAUTH_USER_AUTHENTICATION_FAILURES));
+		Map<String, Long> failureStats = calculateCounterStatistics(days, firstLoadedDay, MetricType.OXAUTH_USER_AUTHENTICATION_FAILURES,
+				(List<CounterMetricEntry>) entries.get(MetricType.OXAUTH_USER_AUTHENTICATION_FAILURES));
 		values = new Long[countDays];
 		values = failureStats.values().toArray(values);
 		authenticationChartDto.setFailure(values);
@@ -120,16 +161,12 @@ public class MetricService extends org.xdi.service.metric.MetricService {
 		return authenticationChartDto;
 	}
 
-	private Map<MetricType, List<? extends MetricEntry>> findAuthenticationMetrics(int countDays) {
+	private Map<MetricType, List<? extends MetricEntry>> findAuthenticationMetrics(Date startDate) {
 		List<MetricType> metricTypes = new ArrayList<MetricType>();
 		metricTypes.add(MetricType.OXAUTH_USER_AUTHENTICATION_FAILURES);
 		metricTypes.add(MetricType.OXAUTH_USER_AUTHENTICATION_SUCCESS);
 
 		Date endDate = new Date();
-		Calendar calendar = Calendar.getInstance();
-		calendar.add(Calendar.DATE, countDays);
-
-		Date startDate = calendar.getTime();
 
 		Map<MetricType, List<? extends MetricEntry>> entries = findMetricEntry(ApplicationType.OX_AUTH, appConfiguration
 				.getApplianceInum(), metricTypes, startDate, endDate);
@@ -137,71 +174,83 @@ public class MetricService extends org.xdi.service.metric.MetricService {
 		return entries;
 	}
 
-	private Map<String, Long> calculateCounterStatistics(int countDays, List<CounterMetricEntry> metrics) {
-		// Prepare map with all dates
-		Map<String, Long> stats = new TreeMap<String, Long>();
+	/**
+	 * Get days from specified count of days ago to current day in ascending
+	 * order
+	 */
+	private List<String> getDays(int countDays) {
+		List<String> days = new ArrayList<String>();
 		Calendar calendar = Calendar.getInstance();
+		calendar.add(Calendar.DATE, -countDays);
 		for (int i = 0; i <= countDays; i++) {
-			String dateString = df.format(calendar.getTime());
-			stats.put(dateString, 0L);
-			calendar.add(Calendar.DATE, -1);
+			days.add(df.format(calendar.getTime()));
+			calendar.add(Calendar.DATE, 1);
 		}
 
-		if ((metrics == null) || (metrics.size() == 0)) {
-			return stats;
-		}
+		return days;
+	}
 
-		// Detect servers restart and readjust counts
-		// Server restart condition: previous entry CounterMetricEntry.CounterMetricEntry.count > current entry CounterMetricEntry.CounterMetricEntry.count
-		CounterMetricEntry prevMetric = null;
-		long prevDayCount = 0L;
-		long adjust = 0;
-		for (CounterMetricEntry metric : metrics) {
-			Date date = metric.getCreationDate();
-			calendar.setTime(date);
+	private Date getDayStart(int daysAgo) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.set(Calendar.HOUR_OF_DAY, 0);
+		calendar.set(Calendar.MINUTE, 0);
+		calendar.set(Calendar.SECOND, 0);
+		calendar.set(Calendar.MILLISECOND, 0);
+		calendar.add(Calendar.DATE, -daysAgo);
+
+		return calendar.getTime();
+	}
 
-			// Detect server restarts
-			if ((prevMetric != null) && (prevMetric.getMetricData().getCount() > metric.getMetricData().getCount() + adjust)) {
-				// Last count before server restart
-				long count = prevMetric.getMetricData().getCount();
+	private Map<String, Long> calculateCounterStatistics(List<String> days, int firstLoadedDay, MetricType metricType,
+			List<CounterMetricEntry> metrics) {
+		Map<String, Long> loadedStats = calculateDayCounts(metrics);
 
-				// Change adjust value
-				adjust = count;
+		// Take totals of completed days computed before and store new ones
+		Map<String, Long> stats = new TreeMap<String, Long>();
+		int currentDay = days.size() - 1;
+		for (int i = 0; i < days.size(); i++) {
+			String day = days.get(i);
+			Long count = (i < firstLoadedDay) ? metricAggregateHolder.get(metricType, day) : loadedStats.get(day);
+			if (count == null) {
+				count = 0L;
 			}
-			
-			long count = metric.getMetricData().getCount();
-			metric.getMetricData().setCount(count + adjust);
-			
-			prevMetric = metric;
+			if ((i >= firstLoadedDay) && (i < currentDay)) {
+				metricAggregateHolder.put(metricType, day, count);
+			}
+
+			stats.put(day, count);
 		}
 
-		// Iterate through ordered by MetricEntry.startDate list and just make value snapshot at the end of the day
-		int prevDay = -1;
-		prevMetric = null;
-		prevDayCount = 0L;
+		return stats;
+	}
+
+	private Map<String, Long> calculateDayCounts(List<CounterMetricEntry> metrics) {
+		Map<String, Long> stats = new HashMap<String, Long>();
+		if (metrics == null) {
+			return stats;
+		}
+
+		// Iterate through ordered by MetricEntry.startDate list and sum counter increments per day
+		// Server restart condition: previous entry CounterMetricEntry.count > current entry CounterMetricEntry.count
+		CounterMetricEntry prevMetric = null;
 		for (CounterMetricEntry metric : metrics) {
-			Date date = metric.getCreationDate();
-			calendar.setTime(date);
-
-			int currDay = calendar.get(Calendar.DAY_OF_MONTH);
-			if ((prevMetric != null) && (prevDay != currDay)) {
-				long count = prevMetric.getMetricData().getCount();
-				String dateString = df.format(prevMetric.getCreationDate());
-				stats.put(dateString, count - prevDayCount);
-				
-				// Show only difference, not total
-				prevDayCount = count;
+			long count = metric.getMetricData().getCount();
+
+			long increment;
+			if ((prevMetric == null) || (prevMetric.getMetricData().getCount() > count)) {
+				// Counter started from zero after server restart
+				increment = count;
+			} else {
+				increment = count - prevMetric.getMetricData().getCount();
 			}
-			
+
+			String dateString = df.format(metric.getCreationDate());
+			Long dayCount = stats.get(dateString);
+			stats.put(dateString, (dayCount == null) ? increment : dayCount + increment);
+
 			prevMetric = metric;
-			prevDay = currDay;
 		}
 
-		// Add last day statistic
-		long count = prevMetric.getMetricData().getCount();
-		String dateString = df.format(prevMetric.getCreationDate());
-		stats.put(dateString, count - prevDayCount);
-
 		return stats;
 	}
 
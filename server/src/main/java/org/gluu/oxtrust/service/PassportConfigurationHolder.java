@@ -0,0 +1,99 @@
+/*
+ * oxTrust is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxtrust.service;
+
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Named;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * Keeps serialized Passport configuration which Passport nodes poll. It's
+ * rendered again only after configuration entry update or when it's older
+ * than MAX_AGE, so changes made outside of oxTrust are picked up too
+ */
+@ApplicationScoped
+@Named
+public class PassportConfigurationHolder {
+
+	private static final long MAX_AGE = 5 * 60 * 1000L; // 5 minutes
+
+	private AtomicLong version = new AtomicLong();
+
+	private volatile PassportConfigurationDocument document;
+
+	/**
+	 * Get current document, rendering it if there is no valid one
+	 *
+	 * @param renderer
+	 *            Loads configuration and produces its JSON
+	 * @throws Exception
+	 *             If rendering fails
+	 */
+	public PassportConfigurationDocument getDocument(Callable<String> renderer) throws Exception {
+		PassportConfigurationDocument document = this.document;
+		if ((document != null) && (document.getVersion() == this.version.get())
+				&& (System.currentTimeMillis() - document.getCreationTime() < MAX_AGE)) {
+			return document;
+		}
+
+		long version = this.version.get();
+		document = new PassportConfigurationDocument(renderer.call(), version);
+
+		// Don't keep document loaded before concurrent update
+		if (version == this.version.get()) {
+			this.document = document;
+		}
+
+		return document;
+	}
+
+	/**
+	 * Drop current document. Should be called after configuration entry update
+	 */
+	public void invalidate() {
+		this.version.incrementAndGet();
+		this.document = null;
+	}
+
+	public static class PassportConfigurationDocument {
+
+		private final String body;
+		private final String etag;
+		private final long version;
+		private final long creationTime;
+
+		private PassportConfigurationDocument(String json, long version) throws UnsupportedEncodingException {
+			this.body = json;
+			this.etag = DigestUtils.md5Hex(json.getBytes("UTF-8"));
+			this.version = version;
+			this.creationTime = System.currentTimeMillis();
+		}
+
+		public String getBody() {
+			return body;
+		}
+
+		public String getEtag() {
+			return etag;
+		}
+
+		public long getVersion() {
+			return version;
+		}
+
+		public long getCreationTime() {
+			return creationTime;
+		}
+
+	}
+
+}
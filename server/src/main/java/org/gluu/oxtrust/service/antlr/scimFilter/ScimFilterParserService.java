@@ -5,6 +5,8 @@
  */
 package org.gluu.oxtrust.service.antlr.scimFilter;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import javax.inject.Inject;
@@ -31,6 +33,18 @@ import org.slf4j.Logger;
 @Named
 public class ScimFilterParserService {
 
+    private static final int PARSE_TREE_CACHE_SIZE=1000;
+
+    /**
+     * Bounded LRU cache of parse trees by filter text. Parse trees are only read after parsing, so they can be shared
+     */
+    private static final Map<String, ParseTree> parseTrees=Collections.synchronizedMap(new LinkedHashMap<String, ParseTree>(16, 0.75f, true){
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ParseTree> eldest) {
+            return size()>PARSE_TREE_CACHE_SIZE;
+        }
+    });
+
     @Inject
     private Logger log;
 
@@ -57,6 +71,23 @@ public class ScimFilterParserService {
 
     }
 
+    /**
+     * Same as {@link #getParseTree(String)} but reuses trees of filters parsed before
+     * @param filter Filter expression
+     * @return Parse tree
+     * @throws Exception If filter is not valid
+     */
+    public ParseTree getCachedParseTree(String filter) throws Exception {
+
+        ParseTree tree=parseTrees.get(filter);
+        if (tree==null) {
+            tree=getParseTree(filter);
+            parseTrees.put(filter, tree);
+        }
+        return tree;
+
+    }
+
     private void checkParsingErrors(ScimFilterErrorListener errorListener) throws SCIMException {
 
         String outputErr=errorListener.getOutput();
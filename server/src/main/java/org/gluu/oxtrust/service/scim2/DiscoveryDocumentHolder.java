@@ -0,0 +1,70 @@
+/*
+ * oxTrust is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2017, Gluu
+ */
+package org.gluu.oxtrust.service.scim2;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Named;
+import java.io.UnsupportedEncodingException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the rendered JSON of SCIM discovery documents (/Schemas, /ResourceTypes and /ServiceProviderConfig). Every
+ * document is stored along with the inputs it was rendered from, and it is rendered again only when these change (e.g.
+ * after extension attributes are modified)
+ */
+@ApplicationScoped
+@Named
+public class DiscoveryDocumentHolder {
+
+    private Map<String, DiscoveryDocument> documents=new ConcurrentHashMap<String, DiscoveryDocument>();
+
+    /**
+     * Returns the document stored under the key passed, rendering it if it was not rendered yet or if it was rendered
+     * from a different version of its inputs
+     * @param key Identifier of document
+     * @param version An object representing the inputs of the document. It has to implement equals meaningfully
+     * @param renderer Produces the JSON of the document
+     * @return Rendered document
+     * @throws Exception If rendering fails
+     */
+    public DiscoveryDocument getDocument(String key, Object version, Callable<String> renderer) throws Exception {
+
+        DiscoveryDocument document=documents.get(key);
+        if (document==null || !document.version.equals(version)) {
+            document=new DiscoveryDocument(renderer.call(), version);
+            documents.put(key, document);
+        }
+        return document;
+
+    }
+
+    public static class DiscoveryDocument {
+
+        private final byte[] body;
+        private final String etag;
+        private final Object version;
+
+        private DiscoveryDocument(String json, Object version) throws UnsupportedEncodingException {
+            this.body=json.getBytes("UTF-8");
+            this.etag=DigestUtils.md5Hex(body);
+            this.version=version;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * oxTrust is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2017, Gluu
+ */
+package org.gluu.oxtrust.service.scim2;
+
+import org.gluu.oxtrust.ldap.service.AttributeCatalog;
+import org.gluu.oxtrust.model.scim2.extensions.Extension;
+import org.gluu.oxtrust.model.scim2.extensions.ExtensionField;
+import org.xdi.model.GluuAttribute;
+import org.xdi.model.OxMultivalued;
+import org.xdi.model.ScimCustomAtribute;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Named;
+import java.util.*;
+
+import static org.gluu.oxtrust.model.scim2.Constants.*;
+
+/**
+ * Keeps the SCIM User extension built from the attribute catalog it was derived from. A new model is built only when
+ * the catalog is replaced, that is, after attributes change
+ */
+@ApplicationScoped
+@Named
+public class ExtensionModelHolder {
+
+    private volatile ExtensionModel model;
+
+    public ExtensionModel getModel(AttributeCatalog catalog) {
+
+        ExtensionModel current=model;
+        if (current==null || current.catalog!=catalog) {
+            current=new ExtensionModel(catalog);
+            model=current;
+        }
+        return current;
+
+    }
+
+    /**
+     * Immutable view of the extensions of User resource with fields indexed by their fully qualified name
+     * (urn:fieldName)
+     */
+    public static class ExtensionModel {
+
+        private final AttributeCatalog catalog;
+
+        private final List<Extension> userExtensions;
+        private final List<String> userExtensionUrns;
+        private final Map<String, Extension> extensionsByAttribute;
+        private final Map<String, ExtensionField> fieldsByAttribute;
+
+        private ExtensionModel(AttributeCatalog catalog) {
+
+            Map<String, ExtensionField> fields=new HashMap<String, ExtensionField>();
+
+            for (GluuAttribute attribute : catalog.getScimCustomAttributes()) {
+                if (attribute.getOxSCIMCustomAttribute().equals(ScimCustomAtribute.TRUE)) {
+                    //first non-null check is needed because certain entries do not have the multivalue attribute set
+                    boolean multi=attribute.getOxMultivaluedAttribute()!=null && attribute.getOxMultivaluedAttribute().equals(OxMultivalued.TRUE);
+
+                    ExtensionField field=new ExtensionField();
+                    field.setDescription(attribute.getDescription());
+                    field.setType(attribute.getDataType());
+                    field.setMultiValued(multi);
+                    field.setName(attribute.getName());
+
+                    fields.put(attribute.getName(), field);
+                }
+            }
+
+            Extension ext=new Extension(USER_EXT_SCHEMA_ID);
+            ext.setFields(Collections.unmodifiableMap(fields));
+            ext.setName(USER_EXT_SCHEMA_NAME);
+            ext.setDescription(USER_EXT_SCHEMA_DESCRIPTION);
+
+            Map<String, Extension> extensionsByAttribute=new HashMap<String, Extension>();
+            Map<String, ExtensionField> fieldsByAttribute=new HashMap<String, ExtensionField>();
+            for (ExtensionField field : fields.values()) {
+                String attribute=ext.getUrn() + ":" + field.getName();
+                extensionsByAttribute.put(attribute, ext);
+                fieldsByAttribute.put(attribute, field);
+            }
+
+            this.catalog=catalog;
+            this.userExtensions=Collections.singletonList(ext);
+            this.userExtensionUrns=Collections.singletonList(ext.getUrn());
+            this.extensionsByAttribute=Collections.unmodifiableMap(extensionsByAttribute);
+            this.fieldsByAttribute=Collections.unmodifiableMap(fieldsByAttribute);
+
+        }
+
+        public List<Extension> getUserExtensions() {
+            return userExtensions;
+        }
+
+        public List<String> getUserExtensionUrns() {
+            return userExtensionUrns;
+        }
+
+        public Extension getExtensionOfAttribute(String attribute) {
+            return extensionsByAttribute.get(attribute);
+        }
+
+        public ExtensionField getFieldOfAttribute(String attribute) {
+            return fieldsByAttribute.get(attribute);
+        }
+
+    }
+
+}
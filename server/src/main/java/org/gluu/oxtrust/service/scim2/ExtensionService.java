@@ -11,17 +11,12 @@ import org.gluu.oxtrust.model.scim2.extensions.Extension;
 import org.gluu.oxtrust.model.scim2.extensions.ExtensionField;
 import org.gluu.oxtrust.model.scim2.user.UserResource;
 import org.slf4j.Logger;
-import org.xdi.model.GluuAttribute;
-import org.xdi.model.OxMultivalued;
-import org.xdi.model.ScimCustomAtribute;
 
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.util.*;
 
-import static org.gluu.oxtrust.model.scim2.Constants.*;
-
 /**
  * Created by jgomer on 2017-09-29.
  */
@@ -35,37 +30,25 @@ public class ExtensionService {
     @Inject
     private AttributeService attrService;
 
+    @Inject
+    private ExtensionModelHolder extensionModelHolder;
+
+    private ExtensionModelHolder.ExtensionModel getUserExtensionModel() {
+        return extensionModelHolder.getModel(attrService.getAttributeCatalog());
+    }
+
+    /**
+     * Returns the extensions applicable to the resource class passed. The list returned is shared and must not be modified
+     * @param cls Class of a SCIM resource
+     * @return List of extensions (empty if the resource does not support extensions)
+     */
     public List<Extension> getResourceExtensions(Class<? extends BaseScimResource> cls){
 
-        List<Extension> list=new ArrayList<Extension>();
+        List<Extension> list=Collections.emptyList();
         try {
             //Currently support one extension only for User Resource
-            if (cls.equals(UserResource.class)) {
-
-                Map<String, ExtensionField> fields=new HashMap<String, ExtensionField>();
-
-                for (GluuAttribute attribute : attrService.getSCIMRelatedAttributes()) {
-                    if (attribute.getOxSCIMCustomAttribute().equals(ScimCustomAtribute.TRUE)) {
-                        //first non-null check is needed because certain entries do not have the multivalue attribute set
-                        boolean multi=attribute.getOxMultivaluedAttribute()!=null && attribute.getOxMultivaluedAttribute().equals(OxMultivalued.TRUE);
-
-                        ExtensionField field=new ExtensionField();
-                        field.setDescription(attribute.getDescription());
-                        field.setType(attribute.getDataType());
-                        field.setMultiValued(multi);
-                        field.setName(attribute.getName());
-
-                        fields.put(attribute.getName(), field);
-                    }
-                }
-
-                Extension ext=new Extension(USER_EXT_SCHEMA_ID);
-                ext.setFields(fields);
-                ext.setName(USER_EXT_SCHEMA_NAME);
-                ext.setDescription(USER_EXT_SCHEMA_DESCRIPTION);
-
-                list.add(ext);
-            }
+            if (cls.equals(UserResource.class))
+                list=getUserExtensionModel().getUserExtensions();
         }
         catch (Exception e){
             log.error("An error ocurred when building extension for {}", cls.getName());
@@ -78,9 +61,14 @@ public class ExtensionService {
     public List<String> getUrnsOfExtensions(Class<? extends BaseScimResource> cls){
 
         List<String> list=new ArrayList<String>();
-        for (Extension ext : getResourceExtensions(cls))
-            list.add(ext.getUrn());
-
+        try {
+            if (cls.equals(UserResource.class))
+                list.addAll(getUserExtensionModel().getUserExtensionUrns());
+        }
+        catch (Exception e){
+            log.error("An error ocurred when building extension for {}", cls.getName());
+            log.error(e.getMessage(), e);
+        }
         return list;
 
     }
@@ -138,21 +126,10 @@ public class ExtensionService {
 
     public Extension extensionOfAttribute(Class<? extends BaseScimResource> cls, String attribute){
 
-        List<Extension> extensions=getResourceExtensions(cls);
         Extension belong=null;
-
         try {
-            for (Extension ext : extensions) {
-                if (attribute.startsWith(ext.getUrn() + ":")){
-                    attribute=attribute.substring(ext.getUrn().length()+1);
-
-                    for (String fieldName : ext.getFields().keySet())
-                        if (attribute.equals(fieldName)) {
-                            belong = ext;
-                            break;
-                        }
-                }
-            }
+            if (cls.equals(UserResource.class))
+                belong=getUserExtensionModel().getExtensionOfAttribute(attribute);
         }
         catch (Exception e){
             log.error(e.getMessage(), e);
@@ -163,21 +140,10 @@ public class ExtensionService {
 
     public ExtensionField getFieldOfExtendedAttribute(Class<? extends BaseScimResource> cls, String attribute){
 
-        List<Extension> extensions=getResourceExtensions(cls);
         ExtensionField field=null;
-
         try {
-            for (Extension ext : extensions) {
-                if (attribute.startsWith(ext.getUrn() + ":")){
-                    attribute=attribute.substring(ext.getUrn().length()+1);
-
-                    for (ExtensionField f : ext.getFields().values())
-                        if (attribute.equals(f.getName())) {
-                            field = f;
-                            break;
-                        }
-                }
-            }
+            if (cls.equals(UserResource.class))
+                field=getUserExtensionModel().getFieldOfAttribute(attribute);
         }
         catch (Exception e){
             log.error(e.getMessage(), e);
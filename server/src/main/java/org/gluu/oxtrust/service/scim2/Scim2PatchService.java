@@ -29,6 +29,8 @@ import javax.inject.Named;
 import javax.lang.model.type.NullType;
 import javax.management.InvalidAttributeValueException;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.gluu.oxtrust.model.scim2.AttributeDefinition.Mutability.IMMUTABLE;
 import static org.gluu.oxtrust.model.scim2.AttributeDefinition.Mutability.READ_ONLY;
@@ -49,6 +51,108 @@ public class Scim2PatchService {
     @Inject
     private ExtensionService extService;
 
+    private static final ObjectMapper mapper=new ObjectMapper();
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE=new TypeReference<Map<String, Object>>(){};
+
+    /**
+     * Value selection filter of the form: value eq "..." (whitespace is skipped by the filter grammar, and strings are
+     * any run of characters between double quotes)
+     */
+    private static final Pattern VALUE_EQUALITY_FILTER=Pattern.compile("^[\\t ]*value[\\t ]+eq[\\t ]+\"([^\"]*)\"[\\t ]*$");
+
+    /**
+     * Applies a list of patch operations in sequence. Consecutive removals of items of the same multi-valued attribute
+     * selected by equality on "value" (e.g. members[value eq "..."]) are applied in a single pass using a hash set
+     * @param resource Resource to patch
+     * @param operations Patch operations
+     * @return Patched resource
+     * @throws Exception Upon patching error
+     */
+    public BaseScimResource applyPatchOperations(BaseScimResource resource, List<PatchOperation> operations) throws Exception{
+
+        int i=0;
+        while (i<operations.size()){
+            Pair<String, String> removal=getValueEqualityRemoval(resource.getClass(), operations.get(i));
+
+            if (removal==null) {
+                resource=applyPatchOperation(resource, operations.get(i));
+                i++;
+            }
+            else {
+                String attribute=removal.getFirst();
+                boolean caseExact=IntrospectUtil.getFieldAnnotation(attribute + ".value", resource.getClass(), Attribute.class).isCaseExact();
+
+                Set<String> values=new HashSet<String>();
+                for (; i<operations.size() && removal!=null && removal.getFirst().equals(attribute); i++) {
+                    values.add(caseExact ? removal.getSecond() : removal.getSecond().toLowerCase());
+                    removal= i+1<operations.size() ? getValueEqualityRemoval(resource.getClass(), operations.get(i+1)) : null;
+                }
+                resource=removeItemsByValue(resource, attribute, values, caseExact);
+            }
+        }
+        return resource;
+
+    }
+
+    /**
+     * Returns the attribute and value of a remove operation with path like attribute[value eq "..."] when "value" is a
+     * string sub-attribute of a complex multi-valued attribute. Otherwise null is returned
+     */
+    private Pair<String, String> getValueEqualityRemoval(Class<? extends BaseScimResource> cls, PatchOperation operation){
+
+        String path=operation.getPath();
+        if (!PatchOperationType.REMOVE.equals(operation.getType()) || StringUtils.isEmpty(path) || !path.endsWith("]"))
+            return null;
+
+        Pair<Boolean, String> pair=validateBracketedPath(path);
+        if (!pair.getFirst() || pair.getSecond()==null)
+            return null;
+
+        Matcher matcher=VALUE_EQUALITY_FILTER.matcher(pair.getSecond());
+        if (!matcher.matches())
+            return null;
+
+        String attribute=path.substring(0, path.indexOf("["));
+        Attribute attrAnnot=IntrospectUtil.getFieldAnnotation(attribute, cls, Attribute.class);
+        if (attrAnnot==null || attrAnnot.multiValueClass().equals(NullType.class) || !attrAnnot.type().equals(AttributeDefinition.Type.COMPLEX))
+            return null;
+
+        Attribute valueAnnot=IntrospectUtil.getFieldAnnotation(attribute + ".value", cls, Attribute.class);
+        if (valueAnnot==null || !(valueAnnot.type().equals(AttributeDefinition.Type.STRING) || valueAnnot.type().equals(AttributeDefinition.Type.REFERENCE)))
+            return null;
+
+        return new Pair<String, String>(attribute, matcher.group(1));
+
+    }
+
+    private BaseScimResource removeItemsByValue(BaseScimResource resource, String attribute, Set<String> values, boolean caseExact){
+
+        Class<? extends BaseScimResource> cls=resource.getClass();
+        Map<String, Object> resourceAsMap=mapper.convertValue(resource, MAP_TYPE);
+        Object colObject=resourceAsMap.get(attribute);
+
+        if (colObject==null)
+            log.info("removeItemsByValue. List of values for {} is empty. Operation has no effect", attribute);
+        else {
+            List<Map<String, Object>> list=new ArrayList<Map<String, Object>>();
+            for (Map<String, Object> item : (Collection<Map<String, Object>>) colObject) {
+                Object value=item.get("value");
+                String key= value==null ? null : (caseExact ? value.toString() : value.toString().toLowerCase());
+
+                if (key==null || !values.contains(key))
+                    list.add(item);
+            }
+            log.info("Removed {} entries of {} matching {} value selection filters", ((Collection) colObject).size() - list.size(),
+                    attribute, values.size());
+
+            resourceAsMap.put(attribute, list.size()==0 ? null : list);
+            resource=mapper.convertValue(resourceAsMap, cls);
+        }
+        return resource;
+
+    }
+
     public BaseScimResource applyPatchOperation(BaseScimResource resource, PatchOperation operation) throws Exception{
 
         BaseScimResource result=null;
@@ -123,7 +227,6 @@ public class Scim2PatchService {
         }
 
         //Try parse genericMap as an instance of the resource
-        ObjectMapper mapper = new ObjectMapper();
         BaseScimResource alter=opType.equals(PatchOperationType.REMOVE) ? resource : mapper.convertValue(genericMap, clazz);
         List<Extension> extensions=extService.getResourceExtensions(clazz);
 
@@ -147,9 +250,8 @@ public class Scim2PatchService {
             throws SCIMException, InvalidAttributeValueException {
 
         String path=operation.getPath();
-        ObjectMapper mapper=new ObjectMapper();
         Class<? extends BaseScimResource> cls=resource.getClass();
-        Map<String, Object> resourceAsMap=mapper.convertValue(resource, new TypeReference<Map<String, Object>>(){});
+        Map<String, Object> resourceAsMap=mapper.convertValue(resource, MAP_TYPE);
         List<Map<String, Object>> list;
 
         Attribute attrAnnot=IntrospectUtil.getFieldAnnotation(attribute, cls, Attribute.class);
@@ -169,13 +271,15 @@ public class Scim2PatchService {
         else{
             try {
                 valSelFilter = FilterUtil.preprocess(valSelFilter, cls);
-                ParseTree parseTree = filterService.getParseTree(valSelFilter);
+                ParseTree parseTree = filterService.getCachedParseTree(valSelFilter);
 
                 List<Integer> matchingIndexes=new ArrayList<Integer>();
                 for (int i=0;i<list.size();i++){
                     if (filterService.complexAttributeMatch(parseTree, list.get(i), attribute, cls))
-                        matchingIndexes.add(0, i);  //Important: add so that resulting list is reverse-ordered
+                        matchingIndexes.add(i);
                 }
+                //Important: reverse so that items are removed from the end
+                Collections.reverse(matchingIndexes);
 
                 if (subAttribute.length()>0 && matchingIndexes.size()>0 && operation.getType().equals(PatchOperationType.REMOVE)){
                     //per spec (section 3.5.2.2 RFC 7644) subAttribute must not be required or read-only
@@ -201,7 +305,8 @@ public class Scim2PatchService {
                         applyPartialUpdate(attribute, subAttribute, list, index, operation.getValue(), cls);
                 }
 
-                log.trace("New {} list is:\n{}", attribute, mapper.writeValueAsString(list));
+                if (log.isTraceEnabled())
+                    log.trace("New {} list is:\n{}", attribute, mapper.writeValueAsString(list));
                 resourceAsMap.put(attribute, list.size()==0 ? null : list);
                 resource=mapper.convertValue(resourceAsMap, cls);
             }
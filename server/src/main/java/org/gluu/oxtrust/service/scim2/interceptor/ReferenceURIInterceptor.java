@@ -5,6 +5,7 @@
  */
 package org.gluu.oxtrust.service.scim2.interceptor;
 
+import org.apache.commons.lang.StringUtils;
 import org.gluu.oxtrust.model.scim2.SearchRequest;
 import org.slf4j.Logger;
 
@@ -15,6 +16,11 @@ import javax.interceptor.Interceptor;
 import javax.interceptor.InvocationContext;
 import javax.ws.rs.QueryParam;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.gluu.oxtrust.model.scim2.Constants.*;
 
@@ -32,6 +38,13 @@ import static org.gluu.oxtrust.model.scim2.Constants.*;
 @Priority(Interceptor.Priority.APPLICATION+1)
 public class ReferenceURIInterceptor {
 
+    private static final String REF="$ref";
+
+    /**
+     * Positions of parameters to adjust, resolved once per intercepted method
+     */
+    private static final Map<Method, int[][]> adjustablePositions=new ConcurrentHashMap<Method, int[][]>();
+
     @Inject
     private Logger log;
 
@@ -39,21 +52,13 @@ public class ReferenceURIInterceptor {
     public Object manage(InvocationContext ctx) throws Exception {
 
         Object[] params=ctx.getParameters();
-        Annotation[][] annotations=ctx.getMethod().getParameterAnnotations();
-
-        for (int i = 0; i<annotations.length; i++){
-            //Iterate over annotations found at every parameter
-            for (Annotation annotation : annotations[i]) {
-                if (annotation instanceof QueryParam) {
-                    String paramName=((QueryParam)annotation).value();
-
-                    if ((paramName.equals(QUERY_PARAM_FILTER) || paramName.equals(QUERY_PARAM_ATTRIBUTES) ||
-                            paramName.equals(QUERY_PARAM_EXCLUDED_ATTRS))){
-                        log.trace("Removing '$' char (if any) from {} param", paramName);
-                        params[i]=dropDollar(params[i]);
-                    }
-                }
-            }
+        int[][] positions=getAdjustablePositions(ctx.getMethod());
+
+        for (int i : positions[0]){
+            log.trace("Removing '$' char (if any) from query param at position {}", i);
+            params[i]=dropDollar(params[i]);
+        }
+        for (int i : positions[1]){
             if (params[i]!=null && params[i] instanceof SearchRequest){
                 log.trace("Removing '$' char (if any) from SearchRequest object");
                 SearchRequest sr=(SearchRequest) params[i];
@@ -68,8 +73,56 @@ public class ReferenceURIInterceptor {
 
     }
 
+    /**
+     * Returns the positions of filter, attributes and excludedAttributes query params (first row) and the positions of
+     * parameters that may hold a SearchRequest (second row)
+     */
+    private static int[][] getAdjustablePositions(Method method){
+
+        int[][] positions=adjustablePositions.get(method);
+        if (positions==null) {
+            List<Integer> queryParams=new ArrayList<Integer>();
+            List<Integer> searchRequests=new ArrayList<Integer>();
+
+            Annotation[][] annotations=method.getParameterAnnotations();
+            Class<?>[] types=method.getParameterTypes();
+
+            for (int i = 0; i<annotations.length; i++){
+                //Iterate over annotations found at every parameter
+                for (Annotation annotation : annotations[i]) {
+                    if (annotation instanceof QueryParam) {
+                        String paramName=((QueryParam)annotation).value();
+
+                        if ((paramName.equals(QUERY_PARAM_FILTER) || paramName.equals(QUERY_PARAM_ATTRIBUTES) ||
+                                paramName.equals(QUERY_PARAM_EXCLUDED_ATTRS)))
+                            queryParams.add(i);
+                    }
+                }
+                if (types[i].isAssignableFrom(SearchRequest.class))
+                    searchRequests.add(i);
+            }
+            positions=new int[][]{toArray(queryParams), toArray(searchRequests)};
+            adjustablePositions.put(method, positions);
+        }
+        return positions;
+
+    }
+
+    private static int[] toArray(List<Integer> list){
+        int[] array=new int[list.size()];
+        for (int i=0; i<array.length; i++)
+            array[i]=list.get(i);
+        return array;
+    }
+
     private static String dropDollar(Object param){
-        return (param!=null && param instanceof String) ? param.toString().replaceAll("\\$ref", "ref") : null;
+
+        if (param!=null && param instanceof String){
+            String value=param.toString();
+            return value.indexOf(REF)<0 ? value : StringUtils.replace(value, REF, "ref");
+        }
+        return null;
+
     }
 
 }
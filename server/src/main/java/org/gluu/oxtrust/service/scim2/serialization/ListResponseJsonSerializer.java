@@ -9,7 +9,6 @@ import org.apache.logging.log4j.LogManager;
 import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.map.JsonSerializer;
-import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.SerializerProvider;
 import org.gluu.oxtrust.model.scim2.BaseScimResource;
 import org.gluu.oxtrust.model.scim2.ListResponse;
@@ -25,7 +24,6 @@ public class ListResponseJsonSerializer extends JsonSerializer<ListResponse> {
 
     private Logger log = LogManager.getLogger(getClass());
     private ScimResourceSerializer resourceSerializer;
-    private ObjectMapper mapper = new ObjectMapper();
 
     private String attributes;
     private String excludeAttributes;
@@ -49,6 +47,9 @@ public class ListResponseJsonSerializer extends JsonSerializer<ListResponse> {
         this.jsonResources=resources;
     }
 
+    /**
+     * Writes the list response to the generator passed. The provider is not used and may be null
+     */
     @Override
     public void serialize(ListResponse listResponse, JsonGenerator jGen, SerializerProvider provider) throws IOException {
 
@@ -70,8 +71,7 @@ public class ListResponseJsonSerializer extends JsonSerializer<ListResponse> {
 
                 if (listResponse.getResources().size()>0)
                     for (BaseScimResource resource : listResponse.getResources()) {
-                        JsonNode jsonResource = mapper.readTree(resourceSerializer.serialize(resource, attributes, excludeAttributes));
-                        jGen.writeTree(jsonResource);
+                        jGen.writeObject(resourceSerializer.serializeToMap(resource, attributes, excludeAttributes));
                     }
                 else
                 if (jsonResources != null)
@@ -5,9 +5,8 @@
  */
 package org.gluu.oxtrust.service.scim2.serialization;
 
-import org.codehaus.jackson.Version;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.map.ObjectMapper;
-import org.codehaus.jackson.map.module.SimpleModule;
 import org.codehaus.jackson.type.TypeReference;
 import org.gluu.oxtrust.model.scim2.BaseScimResource;
 import org.gluu.oxtrust.model.scim2.ListResponse;
@@ -20,6 +19,8 @@ import org.slf4j.Logger;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.*;
 
 /**
@@ -35,7 +36,13 @@ public class ScimResourceSerializer {
     @Inject
     private ExtensionService extService;
 
-    private ObjectMapper mapper=new ObjectMapper();
+    /**
+     * Mapper shared by all serializations. Attribute projection is applied to the generic map representation of
+     * resources, so no per-request mapper configuration is needed
+     */
+    private static final ObjectMapper mapper=new ObjectMapper();
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE=new TypeReference<Map<String, Object>>(){};
 
     private Set<String> expandAttributesPaths(String attributes, String defaultSchemaUrn, List<String> schemas, SortedSet<String> attribs) {
 
@@ -191,7 +198,15 @@ public class ScimResourceSerializer {
 
     }
 
-    public String serialize(BaseScimResource resource, String attributes, String exclusions) throws Exception{
+    /**
+     * Builds the generic representation of a resource containing only the attributes to be returned
+     * @param resource Resource to serialize
+     * @param attributes Attributes to include (as in "attributes" query param)
+     * @param exclusions Attributes to exclude (as in "excludedAttributes" query param)
+     * @return Map suitable for writing with any Jackson generator
+     * @throws Exception Upon conversion error
+     */
+    public Map<String, Object> serializeToMap(BaseScimResource resource, String attributes, String exclusions) throws Exception{
 
         SortedSet<String> include =new TreeSet<String>();
         Class<? extends BaseScimResource> resourceClass=resource.getClass();
@@ -199,12 +214,17 @@ public class ScimResourceSerializer {
         log.debug("serialize. Attributes to include: {}", include);
 
         //Do generic serialization. This works for any POJO (not only subclasses of BaseScimResource)
-        Map<String, Object> map = mapper.convertValue(resource, new TypeReference<Map<String, Object>>(){});
+        Map<String, Object> map = mapper.convertValue(resource, MAP_TYPE);
         //Using LinkedHashMap allows recursive routines to visit submaps in the same order as fields appear in java classes
         LinkedHashMap<String, Object> newMap=new LinkedHashMap<String, Object>();
         traverse("", map, newMap, include);
 
-        String result=mapper.writeValueAsString(newMap);
+        return newMap;
+    }
+
+    public String serialize(BaseScimResource resource, String attributes, String exclusions) throws Exception{
+
+        String result=mapper.writeValueAsString(serializeToMap(resource, attributes, exclusions));
         log.debug("serialize. Output is {}", result);
 
         return result;
@@ -214,14 +234,38 @@ public class ScimResourceSerializer {
         return serialize(resource, null, null);
     }
 
-    public ObjectMapper getListResponseMapper(){
+    /**
+     * Serializes a list response with default returnability of resources
+     * @param listResponse A ListResponse object
+     * @return Json string
+     * @throws IOException Upon serialization error
+     */
+    public String serializeListResponse(ListResponse listResponse) throws IOException{
+        return serializeListResponse(listResponse, new ListResponseJsonSerializer(this));
+    }
 
-        ObjectMapper mapper = new ObjectMapper();
-        SimpleModule module=new SimpleModule("ListResponseModule", Version.unknownVersion());
-        module.addSerializer(ListResponse.class, new ListResponseJsonSerializer(this));
-        mapper.registerModule(module);
+    /**
+     * Serializes a list response using the serializer passed. The serializer carries the per-request settings (attributes
+     * to include or exclude) and writes directly to a generator of the shared mapper
+     * @param listResponse A ListResponse object
+     * @param serializer A ListResponseJsonSerializer instance
+     * @return Json string
+     * @throws IOException Upon serialization error
+     */
+    public String serializeListResponse(ListResponse listResponse, ListResponseJsonSerializer serializer) throws IOException{
+
+        StringWriter writer=new StringWriter();
+        JsonGenerator jGen=mapper.getJsonFactory().createJsonGenerator(writer);
+        try {
+            //ListResponseJsonSerializer writes everything through jGen and never uses the provider. The mapper's own
+            //provider is only a blueprint in Jackson 1.9, so none is passed
+            serializer.serialize(listResponse, jGen, null);
+        }
+        finally {
+            jGen.close();
+        }
+        return writer.toString();
 
-        return mapper;
     }
 
 }
@@ -6,11 +6,7 @@
 
 package org.gluu.oxtrust.servlet;
 
-import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.util.Date;
 
 import javax.inject.Inject;
 import javax.servlet.ServletException;
@@ -19,17 +15,14 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
-import org.gluu.oxtrust.ldap.service.ImageService;
+import org.gluu.oxtrust.ldap.service.ImageCacheService;
+import org.gluu.oxtrust.ldap.service.ImageCacheService.CachedImage;
 import org.gluu.oxtrust.ldap.service.OrganizationService;
 import org.gluu.oxtrust.model.GluuOrganization;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xdi.model.GluuImage;
-import org.xdi.util.io.DownloadWrapper;
+import org.xdi.util.StringHelper;
 import org.xdi.util.io.FileDownloader;
-import org.xdi.util.io.FileDownloader.ContentDisposition;
 
 @WebServlet(urlPatterns = "/servlet/favicon")
 public class FaviconImageServlet extends HttpServlet {
@@ -38,7 +31,7 @@ public class FaviconImageServlet extends HttpServlet {
 	private OrganizationService organizationService;
 	
 	@Inject
-	private ImageService imageService;
+	private ImageCacheService imageCacheService;
 
 	private static final long serialVersionUID = 5445488800130871634L;
 
@@ -55,85 +48,44 @@ public class FaviconImageServlet extends HttpServlet {
 			log.error("an Error Occured", ex);
 		}
 
-		GluuImage image = null;
-		if ("true".equals(preview)) {
-			image = imageService.getGluuImageFromXML(organization.getTempFaviconImage());
-			if (image != null) {
-				image.setStoreTemporary(true);
-			}
-
-		}
-
-		if (!"true".equals(preview) || image == null) {
-			image = imageService.getGluuImageFromXML(organization.getFaviconImage());
-		}
-
-		if (image != null) {
-			image.setLogo(false);
-		}
-		OutputStream os = null;
-		InputStream is = null;
+		CachedImage image = null;
 		try {
-			DownloadWrapper downloadWrapper = null;
-
-			// Send customized organization logo
-			if (image != null) {
-				File file = null;
-				try {
-					file = imageService.getSourceFile(image);
-				} catch (Exception ex) {
-					log.error("an Error Occured", ex);
-
-				}
-				try {
-					is = FileUtils.openInputStream(file);
-					if (is != null && file != null) {
-						downloadWrapper = new DownloadWrapper(is, image.getSourceName(), image.getSourceContentType(),
-								image.getCreationDate(), (int) file.length());
-					}
-				} catch (IOException ex) {
-					log.error("Organization favicon image doesn't exist", ex);
-					FileDownloader.sendError(response);
-					return;
-				}
-			} else {
-				// If customized logo doesn't exist then send default
-				// organization logo
-				String defaultFaviconFileName = "/WEB-INF/static/images/favicon_ic.ico";
-				is = getServletContext().getResourceAsStream(defaultFaviconFileName);
-				if (is == null) {
-					log.error("Default organization favicon image doesn't exist");
-					FileDownloader.sendError(response);
-					return;
-				}
+			if ("true".equals(preview)) {
+				image = imageCacheService.getImage(organization.getTempFaviconImage(), false, true);
+			}
 
-				// Calculate default logo size
-				long contentLength;
-				try {
-					contentLength = is.skip(Long.MAX_VALUE);
-				} catch (IOException ex) {
-					log.error("Failed to calculate default organization favicon image size", ex);
+			if (!"true".equals(preview) || image == null) {
+				image = imageCacheService.getImage(organization.getFaviconImage(), false, false);
+				if ((image == null) && StringHelper.isNotEmpty(organization.getFaviconImage())) {
+					log.error("Organization favicon image doesn't exist");
 					FileDownloader.sendError(response);
 					return;
-				} finally {
-					IOUtils.closeQuietly(is);
 				}
-
-				is = getServletContext().getResourceAsStream(defaultFaviconFileName);
-				downloadWrapper = new DownloadWrapper(is, "favicon_ic.ico", "image/x-icon", new Date(), (int) contentLength);
 			}
+		} catch (Exception ex) {
+			log.error("Organization favicon image doesn't exist", ex);
+			FileDownloader.sendError(response);
+			return;
+		}
 
-			try {
-				int logoSize = FileDownloader.writeOutput(downloadWrapper, ContentDisposition.INLINE, response);
-				response.getOutputStream().flush();
-				log.debug("Successfully send organization favicon with size", logoSize);
-			} catch (IOException ex) {
-				log.error("Failed to send organization favicon", ex);
+		if (image == null) {
+			// If customized logo doesn't exist then send default
+			// organization logo
+			image = imageCacheService.getDefaultImage(getServletContext(), "/WEB-INF/static/images/favicon_ic.ico", "favicon_ic.ico",
+					"image/x-icon");
+			if (image == null) {
+				log.error("Default organization favicon image doesn't exist");
 				FileDownloader.sendError(response);
+				return;
 			}
-		} finally {
-			IOUtils.closeQuietly(is);
-			IOUtils.closeQuietly(os);
+		}
+
+		try {
+			imageCacheService.sendImage(image, httpServletRequest, response);
+			log.debug("Successfully send organization favicon with size {}", image.getSize());
+		} catch (IOException ex) {
+			log.error("Failed to send organization favicon", ex);
+			FileDownloader.sendError(response);
 		}
 	}
 }
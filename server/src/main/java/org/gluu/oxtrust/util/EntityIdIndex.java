@@ -0,0 +1,94 @@
+/*
+ * oxTrust is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxtrust.util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.xdi.util.StringHelper;
+
+/**
+ * Entity IDs of federation sorted ignoring case. Lower case forms are computed
+ * once, so filtering doesn't convert every entity ID on each request
+ */
+public class EntityIdIndex implements Serializable {
+
+	private static final long serialVersionUID = -2178540318364931876L;
+
+	private final List<String> entityIds;
+	private final String[] lowerCaseEntityIds;
+	private final Set<String> entityIdSet;
+
+	public EntityIdIndex(Collection<String> entityIds) {
+		Set<String> entityIdSet = new HashSet<String>();
+		List<String[]> entries = new ArrayList<String[]>();
+		if (entityIds != null) {
+			for (String entityId : entityIds) {
+				if ((entityId != null) && entityIdSet.add(entityId)) {
+					entries.add(new String[] { entityId.toLowerCase(), entityId });
+				}
+			}
+		}
+
+		Collections.sort(entries, new Comparator<String[]>() {
+			@Override
+			public int compare(String[] entry1, String[] entry2) {
+				int result = entry1[0].compareTo(entry2[0]);
+				return (result == 0) ? entry1[1].compareTo(entry2[1]) : result;
+			}
+		});
+
+		String[] sortedEntityIds = new String[entries.size()];
+		this.lowerCaseEntityIds = new String[entries.size()];
+		for (int i = 0; i < entries.size(); i++) {
+			this.lowerCaseEntityIds[i] = entries.get(i)[0];
+			sortedEntityIds[i] = entries.get(i)[1];
+		}
+
+		this.entityIds = Collections.unmodifiableList(Arrays.asList(sortedEntityIds));
+		this.entityIdSet = entityIdSet;
+	}
+
+	public boolean contains(String entityId) {
+		return entityIdSet.contains(entityId);
+	}
+
+	public List<String> getAll() {
+		return entityIds;
+	}
+
+	/**
+	 * Find entity IDs which contain pattern ignoring case
+	 *
+	 * @param pattern
+	 *            Pattern. All entity IDs are returned if it's empty
+	 * @return Entity IDs in index order
+	 */
+	public List<String> find(String pattern) {
+		if (StringHelper.isEmpty(pattern)) {
+			return entityIds;
+		}
+
+		String lowerCasePattern = pattern.toLowerCase();
+		List<String> result = new ArrayList<String>();
+		for (int i = 0; i < lowerCaseEntityIds.length; i++) {
+			if (lowerCaseEntityIds[i].contains(lowerCasePattern)) {
+				result.add(entityIds.get(i));
+			}
+		}
+
+		return result;
+	}
+
+}
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -12,12 +13,18 @@ import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 import org.gluu.oxtrust.exception.UmaProtectionException;
 import org.gluu.oxtrust.ldap.service.PassportService;
 import org.gluu.oxtrust.model.passport.PassportConfigResponse;
+import org.gluu.oxtrust.service.PassportConfigurationHolder;
+import org.gluu.oxtrust.service.PassportConfigurationHolder.PassportConfigurationDocument;
 import org.gluu.oxtrust.service.uma.PassportUmaProtectionService;
 import org.gluu.oxtrust.service.uma.UmaPermissionService;
 import org.slf4j.Logger;
@@ -53,14 +60,46 @@ public class PassportRestWebService {
 	@Inject
 	private JsonService jsonService;
 
+	@Inject
+	private PassportConfigurationHolder passportConfigurationHolder;
+
 	@GET
 	@Produces({ MediaType.APPLICATION_JSON })
-	public Response getPassportConfig(@HeaderParam("Authorization") String authorization) {
+	public Response getPassportConfig(@HeaderParam("Authorization") String authorization, @Context Request request) {
 		Response authorizationResponse = processAuthorization(authorization);
 		if (authorizationResponse != null) {
 			return authorizationResponse;
 		}
 
+		PassportConfigurationDocument document;
+		try {
+			document = passportConfigurationHolder.getDocument(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return preparePassportConfig();
+				}
+			});
+		} catch (Exception ex) {
+			log.error("Failed to prepare passport configuration", ex);
+			return getErrorResponse(Response.Status.INTERNAL_SERVER_ERROR, "Failed to prepare configuration");
+		}
+
+		// Passport nodes which already have current configuration get 304
+		// without body
+		CacheControl cacheControl = new CacheControl();
+		cacheControl.setNoCache(true);
+		cacheControl.setPrivate(true);
+
+		EntityTag etag = new EntityTag(document.getEtag());
+		Response.ResponseBuilder builder = request.evaluatePreconditions(etag);
+		if (builder == null) {
+			builder = Response.status(Response.Status.OK).entity(document.getBody());
+		}
+
+		return builder.tag(etag).cacheControl(cacheControl).build();
+	}
+
+	private String preparePassportConfig() throws IOException {
 		PassportConfigResponse passportConfigResponse = new PassportConfigResponse();
 		
 		Map <String,Map> strategies = new HashMap <String,Map>();
@@ -81,14 +120,7 @@ public class PassportRestWebService {
 		}
 		passportConfigResponse.setPassportStrategies(strategies);
 
-		String passportConfigResponseJson;
-		try {
-			passportConfigResponseJson = jsonService.objectToPerttyJson(passportConfigResponse);
-		} catch (IOException ex) {
-			return getErrorResponse(Response.Status.INTERNAL_SERVER_ERROR, "Failed to prepare configuration");
-		}
-
-		return Response.status(Response.Status.OK).entity(passportConfigResponseJson).build();
+		return jsonService.objectToPerttyJson(passportConfigResponse);
 	}
 
 	protected Response processAuthorization(String authorization) {
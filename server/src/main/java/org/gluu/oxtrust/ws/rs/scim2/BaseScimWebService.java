@@ -11,17 +11,17 @@ import static org.gluu.oxtrust.model.scim2.Constants.SEARCH_REQUEST_SCHEMA_ID;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.net.URI;
 import java.util.Date;
 import java.util.List;
 
 import javax.inject.Inject;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 import org.apache.commons.lang.StringUtils;
-import org.codehaus.jackson.Version;
-import org.codehaus.jackson.map.ObjectMapper;
-import org.codehaus.jackson.map.module.SimpleModule;
 import org.gluu.oxtrust.model.exception.SCIMException;
 import org.gluu.oxtrust.model.scim2.BaseScimResource;
 import org.gluu.oxtrust.model.scim2.ErrorResponse;
@@ -37,6 +37,8 @@ import org.gluu.oxtrust.model.scim2.util.IntrospectUtil;
 import org.gluu.oxtrust.model.scim2.util.ResourceValidator;
 import org.gluu.oxtrust.model.scim2.util.ScimResourceUtil;
 import org.gluu.oxtrust.service.external.ExternalScimService;
+import org.gluu.oxtrust.service.scim2.DiscoveryDocumentHolder;
+import org.gluu.oxtrust.service.scim2.DiscoveryDocumentHolder.DiscoveryDocument;
 import org.gluu.oxtrust.service.scim2.ExtensionService;
 import org.gluu.oxtrust.service.scim2.serialization.ListResponseJsonSerializer;
 import org.gluu.oxtrust.service.scim2.serialization.ScimResourceSerializer;
@@ -68,6 +70,9 @@ public class BaseScimWebService {
     @Inject
     ExternalScimService externalScimService;
 
+    @Inject
+    DiscoveryDocumentHolder discoveryDocumentHolder;
+
     public static final String SEARCH_SUFFIX = ".search";
 
     String endpointUrl;
@@ -107,6 +112,24 @@ public class BaseScimWebService {
         return (values==null || values.size()==0) ? null : values.get(0);
     }
 
+    /**
+     * Builds a response for a pre-rendered discovery document. Returns 304 if the client already has the current version
+     * of the document
+     */
+    Response getDiscoveryDocumentResponse(Request request, DiscoveryDocument document, URI location){
+
+        EntityTag etag=new EntityTag(document.getEtag());
+        Response.ResponseBuilder builder=request.evaluatePreconditions(etag);
+        if (builder==null)
+            builder=Response.ok(document.getBody());
+
+        if (location!=null)
+            builder.location(location);
+
+        return builder.tag(etag).build();
+
+    }
+
     protected boolean isAttributeRecognized(Class<? extends BaseScimResource> cls, String attribute){
 
         boolean valid;
@@ -199,12 +222,8 @@ public class BaseScimWebService {
         ListResponse listResponse = new ListResponse(startIndex, resources.size(), total);
         listResponse.setResources(resources);
 
-        ObjectMapper mapper = new ObjectMapper();
-        SimpleModule module = new SimpleModule("ListResponseModule", Version.unknownVersion());
-        module.addSerializer(ListResponse.class, new ListResponseJsonSerializer(resourceSerializer, attrsList, excludedAttrsList, ignoreResults));
-        mapper.registerModule(module);
-
-        return mapper.writeValueAsString(listResponse);
+        return resourceSerializer.serializeListResponse(listResponse,
+                new ListResponseJsonSerializer(resourceSerializer, attrsList, excludedAttrsList, ignoreResults));
 
     }
 
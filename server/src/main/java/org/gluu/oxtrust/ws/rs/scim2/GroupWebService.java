@@ -43,7 +43,6 @@ import org.gluu.oxtrust.model.scim2.ErrorScimType;
 import org.gluu.oxtrust.model.scim2.ListResponse;
 import org.gluu.oxtrust.model.scim2.SearchRequest;
 import org.gluu.oxtrust.model.scim2.group.GroupResource;
-import org.gluu.oxtrust.model.scim2.patch.PatchOperation;
 import org.gluu.oxtrust.model.scim2.patch.PatchRequest;
 import org.gluu.oxtrust.service.scim2.Scim2GroupService;
 import org.gluu.oxtrust.service.scim2.Scim2PatchService;
@@ -316,8 +315,7 @@ public class GroupWebService extends BaseScimWebService implements IGroupWebServ
             scim2GroupService.transferAttributesToGroupResource(gluuGroup, group, endpointUrl, usersUrl);
 
             //Apply patches one by one in sequence
-            for (PatchOperation po : request.getOperations())
-                group=(GroupResource) scim2PatchService.applyPatchOperation(group, po);
+            group=(GroupResource) scim2PatchService.applyPatchOperations(group, request.getOperations());
 
             //Throws exception if final representation does not pass overall validation
             log.debug("patchGroup. Revising final resource representation still passes validations");
@@ -18,17 +18,22 @@ import org.gluu.oxtrust.model.scim2.Meta;
 import org.gluu.oxtrust.model.scim2.user.UserResource;
 import org.gluu.oxtrust.model.scim2.util.ScimResourceUtil;
 import org.gluu.oxtrust.service.scim2.ExtensionService;
+import org.gluu.oxtrust.service.scim2.DiscoveryDocumentHolder.DiscoveryDocument;
 import org.gluu.oxtrust.service.scim2.interceptor.RejectFilterParam;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import static org.gluu.oxtrust.model.scim2.Constants.*;
 
@@ -46,6 +51,8 @@ public class ResourceTypeWS extends BaseScimWebService {
     private static final String GROUP_SUFFIX="Group";
     private static final String FIDO_SUFFIX="FidoDevice";
 
+    private static final String DOCUMENT_KEY="ResourceTypes";
+
     @Inject
     private UserWebService userService;
 
@@ -62,16 +69,21 @@ public class ResourceTypeWS extends BaseScimWebService {
     @Produces(MEDIA_TYPE_SCIM_JSON + UTF8_CHARSET_FRAGMENT)
     @HeaderParam("Accept") @DefaultValue(MEDIA_TYPE_SCIM_JSON)
     @RejectFilterParam
-    public Response serve() {
+    public Response serve(@Context Request request) {
 
         try {
-            ListResponse listResponse = new ListResponse(1, 3, 3);
-            listResponse.addResource(getUserResourceType());
-            listResponse.addResource(getGroupResourceType());
-            listResponse.addResource(getFidoDeviceResourceType());
-
-            String json = resourceSerializer.getListResponseMapper().writeValueAsString(listResponse);
-            return Response.ok(json).location(new URI(endpointUrl)).build();
+            DiscoveryDocument document=discoveryDocumentHolder.getDocument(DOCUMENT_KEY, getDocumentsVersion(), new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    ListResponse listResponse = new ListResponse(1, 3, 3);
+                    listResponse.addResource(getUserResourceType());
+                    listResponse.addResource(getGroupResourceType());
+                    listResponse.addResource(getFidoDeviceResourceType());
+
+                    return resourceSerializer.serializeListResponse(listResponse);
+                }
+            });
+            return getDiscoveryDocumentResponse(request, document, new URI(endpointUrl));
         }
         catch (Exception e){
             log.error(e.getMessage(), e);
@@ -85,11 +97,17 @@ public class ResourceTypeWS extends BaseScimWebService {
     @Produces(MEDIA_TYPE_SCIM_JSON + UTF8_CHARSET_FRAGMENT)
     @HeaderParam("Accept") @DefaultValue(MEDIA_TYPE_SCIM_JSON)
     @RejectFilterParam
-    public Response userResourceType() {
+    public Response userResourceType(@Context Request request) {
 
         try {
+            DiscoveryDocument document=discoveryDocumentHolder.getDocument(DOCUMENT_KEY + "/" + USER_SUFFIX, getDocumentsVersion(), new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return resourceSerializer.serialize(getUserResourceType());
+                }
+            });
             URI uri=new URI(getResourceLocation(USER_SUFFIX));
-            return Response.ok(resourceSerializer.serialize(getUserResourceType())).location(uri).build();
+            return getDiscoveryDocumentResponse(request, document, uri);
         }
         catch (Exception e){
             log.error("Failure at userResourceType method", e);
@@ -103,11 +121,17 @@ public class ResourceTypeWS extends BaseScimWebService {
     @Produces(MEDIA_TYPE_SCIM_JSON + UTF8_CHARSET_FRAGMENT)
     @HeaderParam("Accept") @DefaultValue(MEDIA_TYPE_SCIM_JSON)
     @RejectFilterParam
-    public Response groupResourceType() {
+    public Response groupResourceType(@Context Request request) {
 
         try {
+            DiscoveryDocument document=discoveryDocumentHolder.getDocument(DOCUMENT_KEY + "/" + GROUP_SUFFIX, getDocumentsVersion(), new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return resourceSerializer.serialize(getGroupResourceType());
+                }
+            });
             URI uri=new URI(getResourceLocation(GROUP_SUFFIX));
-            return Response.ok(resourceSerializer.serialize(getGroupResourceType())).location(uri).build();
+            return getDiscoveryDocumentResponse(request, document, uri);
         }
         catch (Exception e){
             log.error("Failure at groupResourceType method", e);
@@ -121,10 +145,16 @@ public class ResourceTypeWS extends BaseScimWebService {
     @Produces(MEDIA_TYPE_SCIM_JSON + UTF8_CHARSET_FRAGMENT)
     @HeaderParam("Accept") @DefaultValue(MEDIA_TYPE_SCIM_JSON)
     @RejectFilterParam
-    public Response fidoResourceType() {
+    public Response fidoResourceType(@Context Request request) {
         try {
+            DiscoveryDocument document=discoveryDocumentHolder.getDocument(DOCUMENT_KEY + "/" + FIDO_SUFFIX, getDocumentsVersion(), new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return resourceSerializer.serialize(getFidoDeviceResourceType());
+                }
+            });
             URI uri=new URI(getResourceLocation(FIDO_SUFFIX));
-            return Response.ok(resourceSerializer.serialize(getFidoDeviceResourceType())).location(uri).build();
+            return getDiscoveryDocumentResponse(request, document, uri);
         }
         catch (Exception e){
             log.error("Failure at fidoResourceType method", e);
@@ -187,6 +217,13 @@ public class ResourceTypeWS extends BaseScimWebService {
         return fidoRT;
     }
 
+    /**
+     * Inputs resource type documents are rendered from: the endpoint and the extensions of User resource
+     */
+    private Object getDocumentsVersion(){
+        return Arrays.asList(endpointUrl, extService.getResourceExtensions(UserResource.class));
+    }
+
     private String getResourceLocation(String suffix){
         return endpointUrl + "/" + suffix;
     }
@@ -10,6 +10,8 @@ import javax.annotation.PostConstruct;
 import javax.inject.Named;
 import javax.lang.model.type.NullType;
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 import com.wordnik.swagger.annotations.Api;
@@ -28,11 +30,13 @@ import org.gluu.oxtrust.model.scim2.provider.schema.SchemaAttribute;
 import org.gluu.oxtrust.model.scim2.provider.schema.SchemaResource;
 import org.gluu.oxtrust.model.scim2.util.IntrospectUtil;
 import org.gluu.oxtrust.model.scim2.util.ScimResourceUtil;
+import org.gluu.oxtrust.service.scim2.DiscoveryDocumentHolder.DiscoveryDocument;
 import org.gluu.oxtrust.service.scim2.interceptor.RejectFilterParam;
 
 import java.lang.reflect.Field;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 import static org.gluu.oxtrust.model.scim2.Constants.*;
 
@@ -47,24 +51,34 @@ import static org.gluu.oxtrust.model.scim2.Constants.*;
 @Api(value = "/v2/Schemas", description = "SCIM 2.0 Schema Endpoint (https://tools.ietf.org/html/rfc7643#section-4)")
 public class SchemaWebService extends BaseScimWebService {
 
+    private static final String DOCUMENT_KEY="Schemas";
+
     private Map<String, Class<? extends BaseScimResource>> resourceSchemas;
 
+    //Inputs the schema documents are rendered from: endpoint and extensions of every resource
+    private List<Object> documentsVersion;
+
     @GET
     @Produces(MEDIA_TYPE_SCIM_JSON + UTF8_CHARSET_FRAGMENT)
     @HeaderParam("Accept") @DefaultValue(MEDIA_TYPE_SCIM_JSON)
     @RejectFilterParam
-    public Response serve(){
+    public Response serve(@Context Request request){
 
         Response response;
         try {
-            int total = resourceSchemas.size();
-            ListResponse listResponse = new ListResponse(1, total, total);
-
-            for (String urn : resourceSchemas.keySet()){
-                listResponse.addResource(getSchemaInstance(resourceSchemas.get(urn), urn));
-            }
-            String json=resourceSerializer.getListResponseMapper().writeValueAsString(listResponse);
-            response=Response.ok(json).location(new URI(endpointUrl)).build();
+            DiscoveryDocument document=discoveryDocumentHolder.getDocument(DOCUMENT_KEY, documentsVersion, new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    int total = resourceSchemas.size();
+                    ListResponse listResponse = new ListResponse(1, total, total);
+
+                    for (String urn : resourceSchemas.keySet()){
+                        listResponse.addResource(getSchemaInstance(resourceSchemas.get(urn), urn));
+                    }
+                    return resourceSerializer.serializeListResponse(listResponse);
+                }
+            });
+            response=getDiscoveryDocumentResponse(request, document, new URI(endpointUrl));
         }
         catch (Exception e){
             log.error("Failure at serve method", e);
@@ -78,20 +92,25 @@ public class SchemaWebService extends BaseScimWebService {
     @Produces(MEDIA_TYPE_SCIM_JSON + UTF8_CHARSET_FRAGMENT)
     @HeaderParam("Accept") @DefaultValue(MEDIA_TYPE_SCIM_JSON)
     @RejectFilterParam
-    public Response getSchemaById(@PathParam("schemaUrn") String urn){
+    public Response getSchemaById(@PathParam("schemaUrn") final String urn, @Context Request request){
 
         Response response;
         try {
-            Class<? extends BaseScimResource> cls = resourceSchemas.get(urn);
+            final Class<? extends BaseScimResource> cls = resourceSchemas.get(urn);
 
             if (cls==null){
                 log.info("Schema urn {} not recognized", urn);
                 response=Response.status(Response.Status.NOT_FOUND).build();
             }
             else {
-                String json=resourceSerializer.serialize(getSchemaInstance(cls, urn));
+                DiscoveryDocument document=discoveryDocumentHolder.getDocument(DOCUMENT_KEY + "/" + urn, documentsVersion, new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return resourceSerializer.serialize(getSchemaInstance(cls, urn));
+                    }
+                });
                 URI location = new URI(endpointUrl + "/" + urn);
-                response = Response.ok(json).location(location).build();
+                response = getDiscoveryDocumentResponse(request, document, location);
             }
         }
         catch (Exception e){
@@ -108,14 +127,18 @@ public class SchemaWebService extends BaseScimWebService {
 
         List<Class<? extends BaseScimResource>> excludedResources=Arrays.asList(SchemaResource.class, ResourceType.class, ServiceProviderConfig.class);
         resourceSchemas=new HashMap<String, Class<? extends BaseScimResource>>();
+        documentsVersion=new ArrayList<Object>();
+        documentsVersion.add(endpointUrl);
 
         //Fill map with urn vs. resource
         for (Class<? extends BaseScimResource> cls : IntrospectUtil.allAttrs.keySet()){
             if (!excludedResources.contains(cls)) {
                 resourceSchemas.put(ScimResourceUtil.getDefaultSchemaUrn(cls), cls);
 
-                for (Extension extension : extService.getResourceExtensions(cls))
+                List<Extension> extensions=extService.getResourceExtensions(cls);
+                for (Extension extension : extensions)
                     resourceSchemas.put(extension.getUrn(), cls);
+                documentsVersion.add(extensions);
             }
         }
 
@@ -139,6 +162,7 @@ public class SchemaWebService extends BaseScimWebService {
             resource.setMeta(meta);
 
             List<SchemaAttribute> attribs=new ArrayList<SchemaAttribute>();
+            Map<String, SchemaAttribute> attribsByPath=new HashMap<String, SchemaAttribute>();
             //paths are, happily alphabetically sorted :)
             for (String path : IntrospectUtil.allAttrs.get(clazz)){
                 SchemaAttribute schAttr=new SchemaAttribute();
@@ -164,15 +188,12 @@ public class SchemaWebService extends BaseScimWebService {
                     if (attrAnnot.type().equals(AttributeDefinition.Type.COMPLEX))
                         schAttr.setSubAttributes(new ArrayList<SchemaAttribute>());
 
-                    List<SchemaAttribute> list=attribs;     //root list
-                    String parts[]=path.split("\\.");
-
-                    for (int i=0;i<parts.length-1;i++) {    //skip last part (real attribute name)
-                        int j = list.indexOf(new SchemaAttribute(parts[i]));
-                        list = list.get(j).getSubAttributes();
-                    }
+                    //parent attributes are visited before their sub-attributes
+                    int i=path.lastIndexOf(".");
+                    List<SchemaAttribute> list= i==-1 ? attribs : attribsByPath.get(path.substring(0, i)).getSubAttributes();
 
                     list.add(schAttr);
+                    attribsByPath.put(path, schAttr);
                 }
             }
             resource.setAttributes(attribs);
@@ -8,9 +8,7 @@ package org.gluu.oxtrust.ws.rs.scim2;
 import com.wordnik.swagger.annotations.ApiOperation;
 import com.wordnik.swagger.annotations.ApiParam;
 import org.codehaus.jackson.JsonNode;
-import org.codehaus.jackson.Version;
 import org.codehaus.jackson.map.ObjectMapper;
-import org.codehaus.jackson.map.module.SimpleModule;
 import org.gluu.oxtrust.model.scim2.ListResponse;
 import org.gluu.oxtrust.model.scim2.SearchRequest;
 import org.gluu.oxtrust.model.scim2.fido.FidoDeviceResource;
@@ -56,7 +54,7 @@ public class SearchResourcesWebService extends BaseScimWebService {
     @Inject
     private FidoDeviceWebService fidoWS;
 
-    private ObjectMapper mapper=null;
+    private static final ObjectMapper mapper=new ObjectMapper();
 
     private int NUM_RESOURCE_TYPES;
 
@@ -92,14 +90,9 @@ public class SearchResourcesWebService extends BaseScimWebService {
                 if (resources.size() > 0)
                     custSerializer.setJsonResources(resources);
 
-                ObjectMapper objmapper = new ObjectMapper();
-                SimpleModule module = new SimpleModule("ListResponseModule", Version.unknownVersion());
-                module.addSerializer(ListResponse.class, custSerializer);
-                objmapper.registerModule(module);
-
                 //Provide to constructor original start index, and totals calculated in computeResults call
                 ListResponse listResponse = new ListResponse(searchReq.getStartIndex(), totals.getFirst(), totals.getSecond());
-                String json = objmapper.writeValueAsString(listResponse);
+                String json = resourceSerializer.serializeListResponse(listResponse, custSerializer);
                 response = Response.ok(json).location(new URI(endpointUrl)).build();
             }
             catch (Exception e){
@@ -248,7 +241,6 @@ public class SearchResourcesWebService extends BaseScimWebService {
     public void setup(){
         //Do not use getClass() here... a typical weld issue...
         endpointUrl=appConfiguration.getBaseEndpoint() + SearchResourcesWebService.class.getAnnotation(Path.class).value();
-        mapper=new ObjectMapper();
 
         //Do not alter the order of appearance
         resourceClasses=new Class[]{UserResource.class, GroupResource.class, FidoDeviceResource.class};
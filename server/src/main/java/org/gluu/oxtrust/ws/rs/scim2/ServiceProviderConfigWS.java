@@ -7,6 +7,7 @@
 package org.gluu.oxtrust.ws.rs.scim2;
 
 import java.util.*;
+import java.util.concurrent.Callable;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Named;
@@ -15,12 +16,15 @@ import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 import org.gluu.oxtrust.model.scim2.provider.config.AuthenticationScheme;
 import org.gluu.oxtrust.model.scim2.provider.config.ServiceProviderConfig;
 import org.gluu.oxtrust.model.scim2.Meta;
 import org.gluu.oxtrust.model.scim2.util.ScimResourceUtil;
+import org.gluu.oxtrust.service.scim2.DiscoveryDocumentHolder.DiscoveryDocument;
 import org.gluu.oxtrust.service.scim2.interceptor.RejectFilterParam;
 
 import static org.gluu.oxtrust.model.scim2.Constants.*;
@@ -33,26 +37,37 @@ import static org.gluu.oxtrust.model.scim2.Constants.*;
 @Path("/scim/v2/ServiceProviderConfig")
 public class ServiceProviderConfigWS extends BaseScimWebService {
 
+    private static final String DOCUMENT_KEY="ServiceProviderConfig";
+
     @GET
     @Produces(MEDIA_TYPE_SCIM_JSON + UTF8_CHARSET_FRAGMENT)
     @HeaderParam("Accept") @DefaultValue(MEDIA_TYPE_SCIM_JSON)
     @RejectFilterParam
-    public Response serve(){
+    public Response serve(@Context Request request){
 
         try {
-            ServiceProviderConfig serviceProviderConfig = new ServiceProviderConfig();
-            serviceProviderConfig.getFilter().setMaxResults(appConfiguration.getScimProperties().getMaxCount());
+            final int maxCount = getMaxCount();
+            final boolean onTestMode = appConfiguration.isScimTestMode();
+
+            DiscoveryDocument document=discoveryDocumentHolder.getDocument(DOCUMENT_KEY,
+                    Arrays.asList(endpointUrl, maxCount, onTestMode), new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    ServiceProviderConfig serviceProviderConfig = new ServiceProviderConfig();
+                    serviceProviderConfig.getFilter().setMaxResults(maxCount);
 
-            Meta meta = new Meta();
-            meta.setLocation(endpointUrl);
-            meta.setResourceType(ScimResourceUtil.getType(serviceProviderConfig.getClass()));
-            serviceProviderConfig.setMeta(meta);
+                    Meta meta = new Meta();
+                    meta.setLocation(endpointUrl);
+                    meta.setResourceType(ScimResourceUtil.getType(serviceProviderConfig.getClass()));
+                    serviceProviderConfig.setMeta(meta);
 
-            boolean onTestMode = appConfiguration.isScimTestMode();
-            serviceProviderConfig.setAuthenticationSchemes(Arrays.asList(
-                    AuthenticationScheme.createOAuth2(onTestMode), AuthenticationScheme.createUma(!onTestMode)));
+                    serviceProviderConfig.setAuthenticationSchemes(Arrays.asList(
+                            AuthenticationScheme.createOAuth2(onTestMode), AuthenticationScheme.createUma(!onTestMode)));
 
-            return Response.ok(resourceSerializer.serialize(serviceProviderConfig)).build();
+                    return resourceSerializer.serialize(serviceProviderConfig);
+                }
+            });
+            return getDiscoveryDocumentResponse(request, document, null);
         }
         catch (Exception e){
             log.error(e.getMessage(), e);
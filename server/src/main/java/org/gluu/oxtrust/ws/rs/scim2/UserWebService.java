@@ -43,7 +43,6 @@ import org.gluu.oxtrust.model.scim2.BaseScimResource;
 import org.gluu.oxtrust.model.scim2.ErrorScimType;
 import org.gluu.oxtrust.model.scim2.ListResponse;
 import org.gluu.oxtrust.model.scim2.SearchRequest;
-import org.gluu.oxtrust.model.scim2.patch.PatchOperation;
 import org.gluu.oxtrust.model.scim2.patch.PatchRequest;
 import org.gluu.oxtrust.model.scim2.user.UserResource;
 import org.gluu.oxtrust.model.scim2.util.ScimResourceUtil;
@@ -313,8 +312,7 @@ public class UserWebService extends BaseScimWebService implements IUserWebServic
             scim2UserService.transferAttributesToUserResource(person, user, endpointUrl);
 
             //Apply patches one by one in sequence
-            for (PatchOperation po : request.getOperations())
-                user=(UserResource) scim2PatchService.applyPatchOperation(user, po);
+            user=(UserResource) scim2PatchService.applyPatchOperations(user, request.getOperations());
 
             //Throws exception if final representation does not pass overall validation
             log.debug("patchUser. Revising final resource representation still passes validations");
@@ -0,0 +1,85 @@
+/*
+ * oxTrust is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxtrust.service.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+import javax.inject.Inject;
+
+import org.gluu.oxtrust.action.test.BaseTest;
+import org.gluu.oxtrust.model.AuthenticationChartDto;
+import org.gluu.oxtrust.service.MetricAggregateHolder;
+import org.gluu.oxtrust.service.MetricService;
+import org.gluu.oxtrust.util.OxTrustConstants;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.xdi.model.metric.MetricType;
+import org.xdi.service.CacheService;
+
+/**
+ * Checks that per-day authentication totals of completed days are computed
+ * once and reused by next chart generation
+ */
+public class MetricServiceTest extends BaseTest {
+
+	private static final int COUNT_DAYS = 7;
+
+	@Inject
+	private MetricService metricService;
+
+	@Inject
+	private MetricAggregateHolder metricAggregateHolder;
+
+	@Inject
+	private CacheService cacheService;
+
+	@BeforeMethod
+	public void clearChart() {
+		cacheService.removeAll(OxTrustConstants.CACHE_METRICS_NAME);
+		metricAggregateHolder.removeBefore("9999-12-31");
+	}
+
+	@Test
+	public void testCompletedDaysStored() {
+		AuthenticationChartDto chart = metricService.genereateAuthenticationChartDto(COUNT_DAYS);
+		String[] labels = chart.getLabels();
+		int currentDay = labels.length - 1;
+
+		for (int i = 0; i < currentDay; i++) {
+			assertEquals(metricAggregateHolder.get(MetricType.OXAUTH_USER_AUTHENTICATION_SUCCESS, labels[i]), chart.getSuccess()[i]);
+			assertEquals(metricAggregateHolder.get(MetricType.OXAUTH_USER_AUTHENTICATION_FAILURES, labels[i]), chart.getFailure()[i]);
+		}
+
+		// Counters of current day still change
+		assertNull(metricAggregateHolder.get(MetricType.OXAUTH_USER_AUTHENTICATION_SUCCESS, labels[currentDay]));
+		assertNull(metricAggregateHolder.get(MetricType.OXAUTH_USER_AUTHENTICATION_FAILURES, labels[currentDay]));
+	}
+
+	@Test
+	public void testStoredTotalsReuse() {
+		String[] labels = metricService.genereateAuthenticationChartDto(COUNT_DAYS).getLabels();
+		int currentDay = labels.length - 1;
+
+		// Replace computed totals with values metric entries can't produce
+		cacheService.removeAll(OxTrustConstants.CACHE_METRICS_NAME);
+		for (int i = 0; i < currentDay; i++) {
+			metricAggregateHolder.put(MetricType.OXAUTH_USER_AUTHENTICATION_SUCCESS, labels[i], 1000000 + i);
+			metricAggregateHolder.put(MetricType.OXAUTH_USER_AUTHENTICATION_FAILURES, labels[i], 2000000 + i);
+		}
+
+		AuthenticationChartDto chart = metricService.genereateAuthenticationChartDto(COUNT_DAYS);
+		assertEquals(chart.getLabels(), labels);
+		for (int i = 0; i < currentDay; i++) {
+			assertEquals(chart.getSuccess()[i], Long.valueOf(1000000 + i));
+			assertEquals(chart.getFailure()[i], Long.valueOf(2000000 + i));
+		}
+		assertNotNull(chart.getSuccess()[currentDay]);
+	}
+
+}
@@ -0,0 +1,120 @@
+/*
+ * oxTrust is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxtrust.service.test;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.inject.Inject;
+
+import org.gluu.oxtrust.action.test.BaseTest;
+import org.gluu.oxtrust.model.scim2.BaseScimResource;
+import org.gluu.oxtrust.model.scim2.group.GroupResource;
+import org.gluu.oxtrust.model.scim2.group.Member;
+import org.gluu.oxtrust.model.scim2.patch.PatchOperation;
+import org.gluu.oxtrust.service.scim2.Scim2PatchService;
+import org.testng.annotations.Test;
+
+/**
+ * Checks that batched removals of members[value eq "..."] give same result as
+ * applying every operation with value selection filter one by one
+ */
+public class Scim2PatchServiceTest extends BaseTest {
+
+	@Inject
+	private Scim2PatchService scim2PatchService;
+
+	@Test
+	public void testMixedCaseValueRemoval() throws Exception {
+		List<PatchOperation> operations = Arrays.asList(
+				createRemoveOperation("members[value eq \"aBc-1\"]"),
+				createRemoveOperation("members[value eq \"DEF-2\"]"));
+
+		Set<String> values = assertSamePatchResult(createGroup("ABC-1", "def-2", "ghi-3"), operations);
+		assertEquals(values, new TreeSet<String>(Arrays.asList("ghi-3")));
+	}
+
+	@Test
+	public void testNonConsecutiveValueRemoval() throws Exception {
+		List<PatchOperation> operations = Arrays.asList(
+				createRemoveOperation("members[value eq \"abc-1\"]"),
+				createRemoveOperation("externalId"),
+				createRemoveOperation("members[value eq \"ghi-3\"]"),
+				createRemoveOperation("members[value eq \"def-2\"]"));
+
+		Set<String> values = assertSamePatchResult(createGroup("abc-1", "def-2", "ghi-3", "jkl-4"), operations);
+		assertEquals(values, new TreeSet<String>(Arrays.asList("jkl-4")));
+	}
+
+	@Test
+	public void testNonMatchingValueRemoval() throws Exception {
+		List<PatchOperation> operations = Arrays.asList(
+				createRemoveOperation("members[value eq \"xyz-9\"]"),
+				createRemoveOperation("members[value eq \"abc\"]"),
+				createRemoveOperation("members[value eq \"def-2\"]"));
+
+		Set<String> values = assertSamePatchResult(createGroup("abc-1", "def-2"), operations);
+		assertEquals(values, new TreeSet<String>(Arrays.asList("abc-1")));
+	}
+
+	private Set<String> assertSamePatchResult(GroupResource group, List<PatchOperation> operations) throws Exception {
+		BaseScimResource expected = group;
+		for (PatchOperation operation : operations) {
+			expected = scim2PatchService.applyPatchOperation(expected, operation);
+		}
+
+		BaseScimResource actual = scim2PatchService.applyPatchOperations(group, operations);
+
+		Set<String> expectedValues = getMemberValues((GroupResource) expected);
+		assertEquals(getMemberValues((GroupResource) actual), expectedValues);
+		assertEquals(actual.getExternalId(), expected.getExternalId());
+
+		return expectedValues;
+	}
+
+	private GroupResource createGroup(String... memberValues) {
+		Set<Member> members = new HashSet<Member>();
+		for (String memberValue : memberValues) {
+			Member member = new Member();
+			member.setValue(memberValue);
+			member.setDisplay("Member " + memberValue);
+			members.add(member);
+		}
+
+		GroupResource group = new GroupResource();
+		group.setDisplayName("Test group");
+		group.setExternalId("test-group");
+		group.setMembers(members);
+
+		return group;
+	}
+
+	private PatchOperation createRemoveOperation(String path) {
+		PatchOperation operation = new PatchOperation();
+		operation.setOperation("remove");
+		operation.setPath(path);
+
+		return operation;
+	}
+
+	private Set<String> getMemberValues(GroupResource group) {
+		Set<String> values = new TreeSet<String>();
+		if (group.getMembers() != null) {
+			for (Member member : group.getMembers()) {
+				values.add(member.getValue());
+			}
+		}
+
+		return values;
+	}
+
+}